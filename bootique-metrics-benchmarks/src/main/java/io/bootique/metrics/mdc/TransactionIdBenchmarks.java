@@ -0,0 +1,103 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs transaction ID benchmarks in a matrix of thread counts (1 to 64) and thread types (platform and virtual),
+ * reporting throughput and allocation rate for each combination. Usage:
+ * <pre>
+ * mvn clean package -Pbenchmarks
+ * java -jar bootique-metrics-benchmarks/target/benchmarks.jar [benchmark_regex]
+ * </pre>
+ * For a single ad-hoc run with a specific configuration, use the standard JMH launcher:
+ * <pre>
+ * java -cp bootique-metrics-benchmarks/target/benchmarks.jar org.openjdk.jmh.Main -t 16 -prof gc \
+ *   -jvmArgsAppend -Djmh.executor=VIRTUAL TransactionIdGeneratorBenchmark
+ * </pre>
+ */
+public class TransactionIdBenchmarks {
+
+    static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    // values of the JMH "jmh.executor" property
+    static final String[] EXECUTORS = {"PLATFORM", "VIRTUAL"};
+
+    static final String DEFAULT_INCLUDE = TransactionIdBenchmarks.class.getPackageName() + ".*Benchmark";
+
+    public static void main(String[] args) throws RunnerException {
+
+        String include = args.length > 0 ? args[0] : DEFAULT_INCLUDE;
+        List<String> report = new ArrayList<>();
+
+        for (String executor : EXECUTORS) {
+            for (int threads : THREADS) {
+
+                Options options = new OptionsBuilder()
+                        .include(include)
+                        .threads(threads)
+                        .jvmArgsAppend("-Djmh.executor=" + executor)
+                        .addProfiler(GCProfiler.class)
+                        .build();
+
+                appendReport(report, executor, threads, new Runner(options).run());
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-60s %-9s %7s %14s %14s %12s%n", "Benchmark", "Executor", "Threads", "ops/us", "alloc MB/sec", "alloc B/op");
+        report.forEach(System.out::println);
+    }
+
+    private static void appendReport(List<String> report, String executor, int threads, Collection<RunResult> results) {
+        for (RunResult rr : results) {
+
+            Result<?> primary = rr.getPrimaryResult();
+            Result<?> allocRate = rr.getSecondaryResults().get("gc.alloc.rate");
+            Result<?> allocRateNorm = rr.getSecondaryResults().get("gc.alloc.rate.norm");
+
+            // strip the package, leaving "Class.method"
+            String benchmark = rr.getParams().getBenchmark();
+            StringBuilder label = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+            for (String key : rr.getParams().getParamsKeys()) {
+                label.append(' ').append(key).append('=').append(rr.getParams().getParam(key));
+            }
+
+            report.add(String.format("%-60s %-9s %7d %14.3f %14.3f %12.3f",
+                    label,
+                    executor,
+                    threads,
+                    primary.getScore(),
+                    allocRate != null ? allocRate.getScore() : Double.NaN,
+                    allocRateNorm != null ? allocRateNorm.getScore() : Double.NaN));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of the {@link TransactionIdGenerator} implementations with a single generator shared between
+ * all benchmark threads, which is how the generator is used in the app. The number of threads and the thread type are
+ * set by the runner (see {@link TransactionIdBenchmarks}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionIdGeneratorBenchmark {
+
+    static final int BLOCK_SIZE = 1024;
+
+    @Param({"unsafe", "safe", "striped", "adaptive", "virtual", "long", "time"})
+    public String generator;
+
+    private TransactionIdGenerator idGenerator;
+
+    @Setup
+    public void setup() {
+        this.idGenerator = createGenerator(generator);
+    }
+
+    @Benchmark
+    public String nextId() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    public TransactionId nextTransactionId() {
+        return idGenerator.nextTransactionId();
+    }
+
+    @Benchmark
+    public int nextId_CharArray(Buffers buffers) {
+        return idGenerator.nextId(buffers.chars, 0);
+    }
+
+    @Benchmark
+    public int nextId_DirectByteBuffer(Buffers buffers) {
+        buffers.bytes.clear();
+        return idGenerator.nextId(buffers.bytes);
+    }
+
+    static TransactionIdGenerator createGenerator(String type) {
+        switch (type) {
+            case "unsafe":
+                // note that the counter of this generator may overflow during a long benchmark run. This doesn't
+                // affect the measurement
+                return new UnsafeTransactionIdGenerator(Integer.MIN_VALUE);
+            case "safe":
+                return new SafeTransactionIdGenerator();
+            case "striped":
+                return new StripedTransactionIdGenerator(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+            case "adaptive":
+                // same as the MetricsModule default
+                return new AdaptiveStripedTransactionIdGenerator();
+            case "virtual":
+                return new VirtualThreadTransactionIdGenerator();
+            case "long":
+                return new LongTransactionIdGenerator();
+            case "time":
+                return new TimeOrderedTransactionIdGenerator(1);
+            default:
+                throw new IllegalArgumentException("Unknown generator type: " + type);
+        }
+    }
+
+    @Benchmark
+    public int nextId_Block(Buffers buffers) {
+        TransactionIdBlock block = buffers.block;
+        if (block == null || block.remaining() == 0) {
+            block = buffers.block = idGenerator.reserveIds(BLOCK_SIZE);
+        }
+
+        return block.nextId(buffers.chars, 0);
+    }
+
+    // per-thread reusable buffers, like the ones kept by a log encoder or an HTTP header writer
+    @State(Scope.Thread)
+    public static class Buffers {
+        final char[] chars = new char[64];
+        final ByteBuffer bytes = ByteBuffer.allocateDirect(64);
+        TransactionIdBlock block;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link MetricFilter} that matches metric names against one or more glob patterns. In a pattern, "*" matches any
+ * sequence of chars (including dots), and "?" matches any single char. Matching is done without regular expressions.
+ *
+ * @since 4.0
+ */
+public class GlobMetricFilter implements MetricFilter {
+
+    private final String[] patterns;
+
+    protected GlobMetricFilter(String[] patterns) {
+        this.patterns = patterns;
+    }
+
+    /**
+     * Creates a filter that matches a name if any of the patterns match. A null or empty list of patterns matches all
+     * names.
+     */
+    public static MetricFilter of(List<String> patterns) {
+        return patterns == null || patterns.isEmpty()
+                ? MetricFilter.ALL
+                : new GlobMetricFilter(patterns.stream().map(Objects::requireNonNull).toArray(String[]::new));
+    }
+
+    /**
+     * Returns true if the name matches the glob pattern.
+     */
+    public static boolean matches(String pattern, String name) {
+
+        int p = 0;
+        int n = 0;
+
+        // backtracking positions for the last "*"
+        int starP = -1;
+        int starN = 0;
+
+        while (n < name.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == name.charAt(n))) {
+                p++;
+                n++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                starP = p++;
+                starN = n;
+            } else if (starP >= 0) {
+                p = starP + 1;
+                n = ++starN;
+            } else {
+                return false;
+            }
+        }
+
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+
+        return p == pattern.length();
+    }
+
+    @Override
+    public boolean matches(String name, Metric metric) {
+        for (String p : patterns) {
+            if (matches(p, name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -19,10 +19,21 @@
 
 package io.bootique.metrics;
 
+import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
 import io.bootique.annotation.BQConfig;
 import io.bootique.annotation.BQConfigProperty;
+import io.bootique.metrics.history.MetricsHistory;
+import io.bootique.metrics.history.MetricsHistoryFactory;
+import io.bootique.metrics.mdc.AdaptiveStripedTransactionIdGeneratorFactory;
+import io.bootique.metrics.mdc.TransactionIdGenerator;
+import io.bootique.metrics.mdc.TransactionIdGeneratorFactory;
 import io.bootique.metrics.reporter.ReporterFactory;
+import io.bootique.metrics.reporter.ReporterScheduler;
+import io.bootique.metrics.reporter.ReporterSchedulerFactory;
+import io.bootique.metrics.reservoir.ReservoirFactory;
+import io.bootique.metrics.reservoir.ReservoirMetricRegistry;
 
 import java.util.List;
 
@@ -30,18 +41,103 @@ import java.util.List;
 public class MetricRegistryFactory {
 
     private List<ReporterFactory> reporters;
+    private ReporterSchedulerFactory reporterScheduler;
+    private MetricsHistoryFactory history;
+    private List<ReservoirFactory> reservoirs;
+    private TransactionIdGeneratorFactory transactionId;
 
+    /**
+     * Creates a registry, starting all the configured reporters. If there are any, they run on a new scheduler with
+     * daemon threads that is not shut down explicitly. Use {@link #create(ReporterScheduler)} to control the
+     * scheduler lifecycle.
+     */
     public MetricRegistry create() {
+        return reporters != null && !reporters.isEmpty()
+                ? create(createReporterScheduler())
+                : createRegistry();
+    }
+
+    /**
+     * Creates a registry, starting all the configured reporters on the provided shared scheduler.
+     *
+     * @since 4.0
+     */
+    public MetricRegistry create(ReporterScheduler scheduler) {
 
-        MetricRegistry registry = new MetricRegistry();
+        MetricRegistry registry = createRegistry();
 
         if (reporters != null) {
-            reporters.forEach(r -> r.createAndStart(registry));
+            reporters.forEach(r -> r.createAndStart(registry, scheduler));
         }
 
         return registry;
     }
 
+    protected MetricRegistry createRegistry() {
+        return reservoirs != null && !reservoirs.isEmpty()
+                ? new ReservoirMetricRegistry(reservoirs)
+                : new MetricRegistry();
+    }
+
+    /**
+     * @since 4.0
+     */
+    public ReporterScheduler createReporterScheduler() {
+        return getReporterScheduler().createScheduler();
+    }
+
+    /**
+     * Creates and starts metrics history if it is configured. Otherwise, returns a disabled history instance that
+     * records nothing.
+     *
+     * @since 4.0
+     */
+    public MetricsHistory createMetricsHistory(MetricRegistry registry, ReporterScheduler scheduler) {
+        return history != null
+                ? history.createAndStart(registry, scheduler)
+                : new MetricsHistory(registry, MetricFilter.ALL, 0, 0, scheduler.getExecutor(), false);
+    }
+
+    /**
+     * @since 4.0
+     */
+    public TransactionIdGenerator createTransactionIdGenerator() {
+        return getTransactionId().createGenerator();
+    }
+
+    /**
+     * Creates a transaction ID generator, registering its self-metrics (if it provides any) with the provided
+     * registry under the "bq.Metrics.TransactionId." prefix.
+     *
+     * @since 4.0
+     */
+    public TransactionIdGenerator createTransactionIdGenerator(MetricRegistry registry) {
+        TransactionIdGenerator generator = createTransactionIdGenerator();
+
+        if (generator instanceof MetricSet metrics) {
+            registry.registerAll(transactionIdMetricsPrefix(), metrics);
+        }
+
+        return generator;
+    }
+
+    /**
+     * Returns a name prefix of the transaction ID generator metrics.
+     *
+     * @since 4.0
+     */
+    public static String transactionIdMetricsPrefix() {
+        return MetricNaming.forModule(MetricsModule.class).name("TransactionId");
+    }
+
+    TransactionIdGeneratorFactory getTransactionId() {
+        return transactionId != null ? transactionId : new AdaptiveStripedTransactionIdGeneratorFactory();
+    }
+
+    ReporterSchedulerFactory getReporterScheduler() {
+        return reporterScheduler != null ? reporterScheduler : new ReporterSchedulerFactory();
+    }
+
     List<ReporterFactory> getReporters() {
         return reporters;
     }
@@ -50,4 +146,39 @@ public class MetricRegistryFactory {
     public void setReporters(List<ReporterFactory> reporters) {
         this.reporters = reporters;
     }
+
+    /**
+     * @since 4.0
+     */
+    @BQConfigProperty("Configures a scheduler shared by all reporters. By default, a single thread is used.")
+    public void setReporterScheduler(ReporterSchedulerFactory reporterScheduler) {
+        this.reporterScheduler = reporterScheduler;
+    }
+
+    /**
+     * @since 4.0
+     */
+    @BQConfigProperty("Configures optional in-process history of the metrics, that can be queried at runtime via " +
+            "injectable MetricsHistory.")
+    public void setHistory(MetricsHistoryFactory history) {
+        this.history = history;
+    }
+
+    /**
+     * @since 4.0
+     */
+    @BQConfigProperty("An ordered list of histogram and timer reservoirs, each applied to the metrics matching its " +
+            "name patterns. The first matching reservoir wins. The metrics not matching any of them use the default " +
+            "'exponentially-decaying' reservoir.")
+    public void setReservoirs(List<ReservoirFactory> reservoirs) {
+        this.reservoirs = reservoirs;
+    }
+
+    /**
+     * @since 4.0
+     */
+    @BQConfigProperty("Configures transaction ID generator used to correlate log messages. The default is 'adaptive'.")
+    public void setTransactionId(TransactionIdGeneratorFactory transactionId) {
+        this.transactionId = transactionId;
+    }
 }
@@ -20,6 +20,7 @@
 package io.bootique.metrics;
 
 import com.codahale.metrics.MetricRegistry;
+import io.bootique.metrics.reporter.ReporterScheduler;
 import jakarta.inject.Inject;
 import jakarta.inject.Provider;
 
@@ -27,14 +28,25 @@ import jakarta.inject.Provider;
 public class MetricRegistryProvider implements Provider<MetricRegistry> {
 
     private MetricRegistryFactory metricRegistryFactory;
+    private ReporterScheduler reporterScheduler;
 
-    @Inject
     public MetricRegistryProvider(MetricRegistryFactory metricRegistryFactory) {
+        this(metricRegistryFactory, null);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Inject
+    public MetricRegistryProvider(MetricRegistryFactory metricRegistryFactory, ReporterScheduler reporterScheduler) {
         this.metricRegistryFactory = metricRegistryFactory;
+        this.reporterScheduler = reporterScheduler;
     }
 
     @Override
     public MetricRegistry get() {
-        return metricRegistryFactory.create();
+        return reporterScheduler != null
+                ? metricRegistryFactory.create(reporterScheduler)
+                : metricRegistryFactory.create();
     }
 }
@@ -0,0 +1,51 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import io.bootique.metrics.history.MetricsHistory;
+import io.bootique.metrics.reporter.ReporterScheduler;
+import jakarta.inject.Inject;
+import jakarta.inject.Provider;
+
+/**
+ * @since 4.0
+ */
+public class MetricsHistoryProvider implements Provider<MetricsHistory> {
+
+    private final MetricRegistryFactory metricRegistryFactory;
+    private final MetricRegistry metricRegistry;
+    private final ReporterScheduler reporterScheduler;
+
+    @Inject
+    public MetricsHistoryProvider(
+            MetricRegistryFactory metricRegistryFactory,
+            MetricRegistry metricRegistry,
+            ReporterScheduler reporterScheduler) {
+
+        this.metricRegistryFactory = metricRegistryFactory;
+        this.metricRegistry = metricRegistry;
+        this.reporterScheduler = reporterScheduler;
+    }
+
+    @Override
+    public MetricsHistory get() {
+        return metricRegistryFactory.createMetricsHistory(metricRegistry, reporterScheduler);
+    }
+}
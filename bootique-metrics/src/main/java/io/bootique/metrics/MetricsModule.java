@@ -25,14 +25,28 @@ import io.bootique.ModuleCrate;
 import io.bootique.config.ConfigurationFactory;
 import io.bootique.di.Binder;
 import io.bootique.di.Provides;
-import io.bootique.metrics.mdc.StripedTransactionIdGenerator;
+import io.bootique.metrics.history.MetricsHistory;
 import io.bootique.metrics.mdc.TransactionIdGenerator;
+import io.bootique.metrics.reporter.ReporterScheduler;
+import io.bootique.shutdown.ShutdownManager;
 import jakarta.inject.Singleton;
 
 public class MetricsModule implements BQModule {
 
     private static final String CONFIG_PREFIX = "metrics";
 
+    /**
+     * Returns an instance of {@link MetricsModuleExtender} used by downstream modules to load custom extensions for
+     * the MetricsModule. Should be invoked from a downstream Module's "configure" method.
+     *
+     * @param binder DI binder passed to the Module that invokes this method.
+     * @return an instance of {@link MetricsModuleExtender} that can be used to load MetricsModule custom extensions.
+     * @since 4.0
+     */
+    public static MetricsModuleExtender extend(Binder binder) {
+        return new MetricsModuleExtender(binder);
+    }
+
     @Override
     public ModuleCrate crate() {
         return ModuleCrate.of(this)
@@ -43,8 +57,17 @@ public class MetricsModule implements BQModule {
 
     @Override
     public void configure(Binder binder) {
+        extend(binder).initAllExtensions();
+
         // eager-load the registry. Otherwise, it may never start...
         binder.bind(MetricRegistry.class).toProvider(MetricRegistryProvider.class).initOnStartup();
+        binder.bind(MetricsHistory.class).toProvider(MetricsHistoryProvider.class).initOnStartup();
+    }
+
+    @Provides
+    @Singleton
+    ReporterScheduler provideReporterScheduler(MetricRegistryFactory factory, ShutdownManager shutdownManager) {
+        return shutdownManager.onShutdown(factory.createReporterScheduler(), ReporterScheduler::shutdown);
     }
 
     @Provides
@@ -55,15 +78,7 @@ public class MetricsModule implements BQModule {
 
     @Provides
     @Singleton
-    TransactionIdGenerator provideTransactionIdGenerator() {
-
-        int cpus = Runtime.getRuntime().availableProcessors();
-        if (cpus < 1) {
-            cpus = 1;
-        } else if (cpus > 4) {
-            cpus = 4;
-        }
-
-        return new StripedTransactionIdGenerator(cpus);
+    TransactionIdGenerator provideTransactionIdGenerator(MetricRegistryFactory factory, MetricRegistry registry) {
+        return factory.createTransactionIdGenerator(registry);
     }
 }
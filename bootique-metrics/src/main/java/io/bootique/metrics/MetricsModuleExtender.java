@@ -0,0 +1,65 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics;
+
+import io.bootique.ModuleExtender;
+import io.bootique.di.Binder;
+import io.bootique.di.Key;
+import io.bootique.metrics.mdc.MDCExecutorService;
+import io.bootique.metrics.mdc.MDCScheduledExecutorService;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * @since 4.0
+ */
+public class MetricsModuleExtender extends ModuleExtender<MetricsModuleExtender> {
+
+    public MetricsModuleExtender(Binder binder) {
+        super(binder);
+    }
+
+    @Override
+    public MetricsModuleExtender initAllExtensions() {
+        return this;
+    }
+
+    /**
+     * Decorates an executor bound in DI under the specified key, so that the tasks submitted to it would run with the
+     * transaction ID of the submitting thread.
+     *
+     * @return this extender instance.
+     */
+    public MetricsModuleExtender propagateTransactionId(Key<ExecutorService> executorKey) {
+        binder.decorate(executorKey).before(MDCExecutorService.class);
+        return this;
+    }
+
+    /**
+     * Decorates a scheduled executor bound in DI under the specified key, so that the tasks submitted to it or
+     * scheduled with it would run with the transaction ID of the submitting thread.
+     *
+     * @return this extender instance.
+     */
+    public MetricsModuleExtender propagateTransactionIdScheduled(Key<ScheduledExecutorService> executorKey) {
+        binder.decorate(executorKey).before(MDCScheduledExecutorService.class);
+        return this;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits written by {@link BitWriter} from a region of a (possibly memory-mapped) buffer using absolute gets,
+ * so the buffer position is not affected.
+ *
+ * @since 4.0
+ */
+final class BitReader {
+
+    private final ByteBuffer buffer;
+    private final long start;
+    private final long end;
+    private long bit;
+
+    BitReader(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.start = (long) offset << 3;
+        this.end = (long) (offset + length) << 3;
+        this.bit = start;
+    }
+
+    boolean readBit() {
+        checkAvailable(1);
+        int b = buffer.get((int) (bit >>> 3));
+        boolean result = (b & (0x80 >>> (bit & 7))) != 0;
+        bit++;
+        return result;
+    }
+
+    long readBits(int count) {
+        checkAvailable(count);
+
+        long value = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            int available = 8 - (int) (bit & 7);
+            int take = Math.min(available, remaining);
+            int b = buffer.get((int) (bit >>> 3)) & 0xFF;
+            int chunk = (b >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bit += take;
+            remaining -= take;
+        }
+
+        return value;
+    }
+
+    long bitsRead() {
+        return bit - start;
+    }
+
+    private void checkAvailable(int count) {
+        if (bit + count > end) {
+            throw new IllegalStateException("Reading past the end of a bit stream");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import java.util.Arrays;
+
+/**
+ * A reusable growable buffer of bits, written most significant bit first.
+ *
+ * @since 4.0
+ */
+final class BitWriter {
+
+    private byte[] bytes;
+    private long bits;
+
+    BitWriter(int initialBytes) {
+        this.bytes = new byte[Math.max(initialBytes, 16)];
+    }
+
+    void reset() {
+        Arrays.fill(bytes, 0, byteSize(), (byte) 0);
+        bits = 0;
+    }
+
+    void writeBit(boolean bit) {
+        ensureCapacity(1);
+        if (bit) {
+            bytes[(int) (bits >>> 3)] |= (byte) (0x80 >>> (bits & 7));
+        }
+        bits++;
+    }
+
+    /**
+     * Writes "count" low bits of the value, starting with the most significant one.
+     */
+    void writeBits(long value, int count) {
+        ensureCapacity(count);
+
+        int remaining = count;
+        while (remaining > 0) {
+            int free = 8 - (int) (bits & 7);
+            int take = Math.min(free, remaining);
+            int chunk = (int) (value >>> (remaining - take)) & ((1 << take) - 1);
+            bytes[(int) (bits >>> 3)] |= (byte) (chunk << (free - take));
+            bits += take;
+            remaining -= take;
+        }
+    }
+
+    long bitSize() {
+        return bits;
+    }
+
+    /**
+     * Returns the number of bytes taken by the written bits, with the last byte padded with zeros.
+     */
+    int byteSize() {
+        return (int) ((bits + 7) >>> 3);
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    private void ensureCapacity(int moreBits) {
+        int needed = (int) ((bits + moreBits + 7) >>> 3);
+        if (needed > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads metrics history from a directory of compressed segment files written by {@link FileTsdbReporter}. Segment
+ * files are memory-mapped for reading, and only the segments overlapping with the requested time range are decoded.
+ * Can be used while the reporter is appending to the directory, or offline (e.g. to analyze the files copied from
+ * another node).
+ *
+ * @since 4.0
+ */
+public class FileTsdb {
+
+    static final String SEGMENT_PREFIX = "metrics-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+
+    public FileTsdb(Path directory) {
+        this.directory = Objects.requireNonNull(directory);
+    }
+
+    static Path segmentPath(Path directory, long start) {
+        return directory.resolve(SEGMENT_PREFIX + start + SEGMENT_SUFFIX);
+    }
+
+    // returns segment start time encoded in the file name, or -1 if this is not a segment file
+    static long segmentStart(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(name, SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns segment files in the directory, ordered from the oldest to the newest.
+     */
+    public List<Path> getSegments() {
+
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path f : files) {
+                if (segmentStart(f) >= 0) {
+                    segments.add(f);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error listing metrics segments in " + directory, e);
+        }
+
+        segments.sort(Comparator.comparingLong(FileTsdb::segmentStart));
+        return segments;
+    }
+
+    /**
+     * Returns the names of all series stored in the directory.
+     */
+    public Set<String> getSeriesNames() {
+        Set<String> names = new TreeSet<>();
+        for (Path s : getSegments()) {
+            GorillaSegmentReader reader = openReader(s);
+            reader.read((t, v, c) -> {
+            });
+            names.addAll(reader.getSeriesNames());
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the values of the series recorded within the specified period before now. Missing values (e.g. when a
+     * metric was temporarily removed from the registry) are skipped.
+     */
+    public HistorySeries query(String series, Duration lookback) {
+        return query(series, System.currentTimeMillis() - lookback.toMillis(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the values of the series recorded between the two timestamps (inclusive) in milliseconds since epoch.
+     * Missing values are skipped.
+     */
+    public HistorySeries query(String series, long fromMillis, long toMillis) {
+
+        Collector collector = new Collector(series, fromMillis, toMillis);
+
+        List<Path> segments = getSegments();
+        int len = segments.size();
+        for (int i = 0; i < len; i++) {
+
+            // a segment ends where the next one starts
+            long start = segmentStart(segments.get(i));
+            long end = i + 1 < len ? segmentStart(segments.get(i + 1)) : Long.MAX_VALUE;
+            if (start > toMillis || end <= fromMillis) {
+                continue;
+            }
+
+            GorillaSegmentReader reader = openReader(segments.get(i));
+            collector.startSegment();
+            reader.read((timestamp, values, seriesCount) -> {
+                collector.resolveSeries(reader.getSeriesNames());
+                collector.collect(timestamp, values, seriesCount);
+            });
+        }
+
+        return new HistorySeries(series, collector.timestamps, collector.values, collector.size);
+    }
+
+    private GorillaSegmentReader openReader(Path segment) {
+        try {
+            return GorillaSegmentReader.open(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening metrics segment " + segment, e);
+        }
+    }
+
+    private static class Collector {
+
+        final String series;
+        final long from;
+        final long to;
+
+        // series ids are assigned per segment
+        int seriesId;
+        int namesChecked;
+        long[] timestamps;
+        double[] values;
+        int size;
+
+        Collector(String series, long from, long to) {
+            this.series = series;
+            this.from = from;
+            this.to = to;
+            this.timestamps = new long[16];
+            this.values = new double[16];
+        }
+
+        void startSegment() {
+            seriesId = -1;
+            namesChecked = 0;
+        }
+
+        // series may be defined in the middle of a segment, so only checking the names added since the last tick
+        void resolveSeries(List<String> names) {
+            int len = names.size();
+            while (seriesId < 0 && namesChecked < len) {
+                if (series.equals(names.get(namesChecked))) {
+                    seriesId = namesChecked;
+                }
+                namesChecked++;
+            }
+        }
+
+        void collect(long timestamp, double[] tickValues, int seriesCount) {
+            if (seriesId < 0 || timestamp < from || timestamp > to) {
+                return;
+            }
+
+            double value = tickValues[seriesId];
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+}
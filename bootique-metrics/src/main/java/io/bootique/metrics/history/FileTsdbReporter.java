@@ -0,0 +1,223 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reporter that appends registry snapshots to compressed segment files in a local directory, keeping days of
+ * metrics history on each node at the cost of a few bytes per sample. Timestamps are stored as delta-of-deltas and
+ * values are XOR-ed with the previous value of the same series (see {@link GorillaSegmentWriter}), so a regular
+ * snapshot of a value that didn't change takes about a bit. Series are named the same way as in
+ * {@link MetricsHistory}. A new segment is started at every "segment duration" boundary, and the segments that
+ * ended before the retention period are deleted. The history can be read with {@link #getTsdb()}, or offline with
+ * a {@link FileTsdb} pointed to the same directory.
+ *
+ * @since 4.0
+ */
+public class FileTsdbReporter extends ScheduledReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTsdbReporter.class);
+
+    private final FileTsdb tsdb;
+    private final long segmentMillis;
+    private final long retentionMillis;
+    private final int maxSeries;
+    private final boolean fsync;
+    private final SeriesRecorder recorder;
+
+    // only accessed by the reporting thread
+    private GorillaSegmentWriter writer;
+    private long segmentEnd;
+    private boolean seriesOverflowReported;
+
+    public FileTsdbReporter(
+            MetricRegistry registry,
+            MetricFilter filter,
+            Path directory,
+            Duration segmentDuration,
+            Duration retention,
+            int maxSeries,
+            boolean fsync,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        super(registry, "metrics-file-tsdb", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, executor, shutdownExecutorOnStop);
+
+        this.segmentMillis = segmentDuration.toMillis();
+        this.retentionMillis = retention.toMillis();
+        if (segmentMillis <= 0 || retentionMillis <= 0 || maxSeries <= 0) {
+            throw new IllegalArgumentException("Segment duration, retention and max series must be positive");
+        }
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error creating metrics directory " + directory, e);
+        }
+
+        this.tsdb = new FileTsdb(directory);
+        this.maxSeries = maxSeries;
+        this.fsync = fsync;
+        this.recorder = new SeriesRecorder(filter) {
+            @Override
+            protected int seriesId(String name) {
+                int id = writer.seriesId(name);
+                if (id < 0 && !seriesOverflowReported) {
+                    seriesOverflowReported = true;
+                    LOGGER.warn("Reached the max number of series in a segment ({}). Ignoring '{}' and other new series",
+                            FileTsdbReporter.this.maxSeries,
+                            name);
+                }
+                return id;
+            }
+
+            @Override
+            protected void record(int seriesId, double value) {
+                writer.record(seriesId, value);
+            }
+        };
+    }
+
+    /**
+     * Returns a reader of the history written by this reporter.
+     */
+    public FileTsdb getTsdb() {
+        return tsdb;
+    }
+
+    @Override
+    public synchronized void report(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+
+        long timestamp = currentTimeMillis();
+
+        try {
+            if (writer == null || timestamp >= segmentEnd) {
+                rollSegment(timestamp);
+            }
+
+            writer.beginTick();
+            recorder.recordAll(gauges, counters, histograms, meters, timers, convertRate(1.));
+            writer.endTick(timestamp);
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("Error writing metrics segment. Will start a new segment on the next report", e);
+            closeSegment();
+        }
+    }
+
+    // overridden in tests to simulate the passage of time
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            synchronized (this) {
+                closeSegment();
+            }
+        }
+    }
+
+    private void rollSegment(long timestamp) throws IOException {
+        closeSegment();
+
+        // segments are aligned to the segment duration boundaries, but are named after their actual start time
+        segmentEnd = (timestamp / segmentMillis + 1) * segmentMillis;
+        writer = createSegment(timestamp);
+        recorder.clearIds();
+        seriesOverflowReported = false;
+
+        deleteExpiredSegments(timestamp - retentionMillis);
+    }
+
+    private GorillaSegmentWriter createSegment(long timestamp) throws IOException {
+
+        // a segment with the same start may exist if the app was restarted within the same millisecond, or the clock
+        // went backwards
+        for (long start = timestamp; ; start++) {
+            try {
+                return GorillaSegmentWriter.create(
+                        FileTsdb.segmentPath(tsdb.getDirectory(), start),
+                        start,
+                        maxSeries,
+                        fsync);
+            } catch (FileAlreadyExistsException e) {
+                // try the next millisecond
+            }
+        }
+    }
+
+    private void deleteExpiredSegments(long cutoff) {
+
+        // a segment has expired when the next segment had started before the cutoff
+        List<Path> segments = tsdb.getSegments();
+        int len = segments.size();
+        for (int i = 0; i < len - 1; i++) {
+            if (FileTsdb.segmentStart(segments.get(i + 1)) > cutoff) {
+                break;
+            }
+
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                LOGGER.warn("Error deleting expired metrics segment {}", segments.get(i), e);
+            }
+        }
+    }
+
+    private void closeSegment() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing metrics segment", e);
+            }
+
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes a segment file produced by {@link GorillaSegmentWriter}. The file is memory-mapped, so decoding doesn't
+ * copy file contents to the heap. A segment that is still being appended to is read up to its last complete tick.
+ *
+ * @since 4.0
+ */
+final class GorillaSegmentReader {
+
+    /**
+     * A callback receiving decoded ticks. The values array is reused between ticks.
+     */
+    @FunctionalInterface
+    interface TickVisitor {
+        void visit(long timestamp, double[] values, int seriesCount);
+    }
+
+    private final ByteBuffer buffer;
+    private final long start;
+    private final List<String> seriesNames;
+
+    private double[] values;
+    private long[] previous;
+    private int[] leadingZeros;
+    private int[] trailingZeros;
+    private boolean[] started;
+
+    private long previousTimestamp;
+    private long previousDelta;
+
+    private GorillaSegmentReader(ByteBuffer buffer, long start) {
+        this.buffer = buffer;
+        this.start = start;
+        this.seriesNames = new ArrayList<>();
+        this.values = new double[64];
+        this.previous = new long[64];
+        this.leadingZeros = new int[64];
+        this.trailingZeros = new int[64];
+        this.started = new boolean[64];
+        this.previousTimestamp = start;
+    }
+
+    static GorillaSegmentReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < GorillaSegmentWriter.HEADER_SIZE
+                    || buffer.getInt(0) != GorillaSegmentWriter.MAGIC) {
+                throw new IOException("Not a metrics segment file: " + path);
+            }
+
+            byte version = buffer.get(Integer.BYTES);
+            if (version != GorillaSegmentWriter.VERSION) {
+                throw new IOException("Unsupported segment version " + version + ": " + path);
+            }
+
+            return new GorillaSegmentReader(buffer, buffer.getLong(Integer.BYTES + 1));
+        }
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the names of the series, indexed by series id. Complete only after {@link #read(TickVisitor)}.
+     */
+    List<String> getSeriesNames() {
+        return seriesNames;
+    }
+
+    /**
+     * Decodes all complete ticks in the segment, passing them to the visitor. Reading stops at the first truncated
+     * or unknown record, as it marks the end of the data written before the writer was stopped.
+     */
+    void read(TickVisitor visitor) {
+
+        int offset = GorillaSegmentWriter.HEADER_SIZE;
+        int limit = buffer.limit();
+
+        while (offset < limit) {
+            byte type = buffer.get(offset++);
+
+            // anything else (e.g. a zero-filled tail left by a crash) is not data
+            if (type != GorillaSegmentWriter.SERIES_RECORD && type != GorillaSegmentWriter.TICK_RECORD) {
+                return;
+            }
+
+            // a partially written record will have its length prefix or its body cut short
+            long lengthAndOffset = getVarInt(offset, limit);
+            if (lengthAndOffset < 0) {
+                return;
+            }
+
+            int length = (int) (lengthAndOffset >>> 32);
+            offset = (int) lengthAndOffset;
+            if (length > limit - offset) {
+                return;
+            }
+
+            switch (type) {
+                case GorillaSegmentWriter.SERIES_RECORD:
+                    byte[] name = new byte[length];
+                    buffer.get(offset, name);
+                    addSeries(new String(name, StandardCharsets.UTF_8));
+                    break;
+                case GorillaSegmentWriter.TICK_RECORD:
+                    BitReader bits = new BitReader(buffer, offset, length);
+                    long timestamp = decodeTimestamp(bits);
+                    int seriesCount = seriesNames.size();
+                    for (int i = 0; i < seriesCount; i++) {
+                        values[i] = Double.longBitsToDouble(decodeValue(bits, i));
+                    }
+                    visitor.visit(timestamp, values, seriesCount);
+                    break;
+            }
+
+            offset += length;
+        }
+    }
+
+    private void addSeries(String name) {
+        int id = seriesNames.size();
+        seriesNames.add(name);
+
+        if (id >= values.length) {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            leadingZeros = Arrays.copyOf(leadingZeros, capacity);
+            trailingZeros = Arrays.copyOf(trailingZeros, capacity);
+            started = Arrays.copyOf(started, capacity);
+        }
+    }
+
+    private long decodeTimestamp(BitReader bits) {
+
+        long dod;
+        if (!bits.readBit()) {
+            dod = 0;
+        } else if (!bits.readBit()) {
+            dod = bits.readBits(7) - 63;
+        } else if (!bits.readBit()) {
+            dod = bits.readBits(9) - 255;
+        } else if (!bits.readBit()) {
+            dod = bits.readBits(12) - 2047;
+        } else {
+            dod = bits.readBits(64);
+        }
+
+        previousDelta += dod;
+        previousTimestamp += previousDelta;
+        return previousTimestamp;
+    }
+
+    private long decodeValue(BitReader bits, int series) {
+
+        if (!started[series]) {
+            started[series] = true;
+            leadingZeros[series] = -1;
+            return previous[series] = bits.readBits(64);
+        }
+
+        if (!bits.readBit()) {
+            return previous[series];
+        }
+
+        long xor;
+        if (!bits.readBit()) {
+            int leading = leadingZeros[series];
+            int trailing = trailingZeros[series];
+            xor = bits.readBits(64 - leading - trailing) << trailing;
+        } else {
+            int leading = (int) bits.readBits(5);
+            int meaningful = (int) bits.readBits(6);
+            if (meaningful == 0) {
+                meaningful = 64;
+            }
+
+            int trailing = 64 - leading - meaningful;
+            xor = bits.readBits(meaningful) << trailing;
+            leadingZeros[series] = leading;
+            trailingZeros[series] = trailing;
+        }
+
+        return previous[series] ^= xor;
+    }
+
+    // returns the value in the high int and the offset after the value in the low int, or -1 if the value is cut short
+    private long getVarInt(int offset, int limit) {
+        int value = 0;
+        int shift = 0;
+        int i = offset;
+        while (i < limit && shift < 32) {
+            byte b = buffer.get(i++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return ((long) value << 32) | i;
+            }
+            shift += 7;
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends metric snapshots to a single segment file, compressing them with the scheme from the Facebook "Gorilla"
+ * paper. A segment starts with a header (magic, version, segment start time), followed by a sequence of records.
+ * A "series" record defines the next series id by name. A "tick" record is a length-prefixed bit stream that holds
+ * the snapshot timestamp as a delta-of-delta from the previous tick, followed by a value for each series defined so
+ * far, XOR-ed with the previous value of the same series. A series that didn't change costs a single bit, and a
+ * regular tick - a single bit of timestamp. Each tick is written with a single append, so a segment that was cut
+ * short by a crash is readable up to the last complete tick. Not thread-safe.
+ *
+ * @since 4.0
+ */
+final class GorillaSegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x42515453; // "BQTS"
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES;
+
+    static final byte SERIES_RECORD = 1;
+    static final byte TICK_RECORD = 2;
+
+    private final FileChannel channel;
+    private final long start;
+    private final int maxSeries;
+    private final boolean fsync;
+    private final BitWriter bits;
+    private final Map<String, Integer> seriesIds;
+
+    // pending series definitions and the framed tick record
+    private ByteBuffer frame;
+
+    private int seriesCount;
+    private double[] current;
+    private long[] previous;
+    private int[] leadingZeros;
+    private int[] trailingZeros;
+    private boolean[] started;
+
+    private long previousTimestamp;
+    private long previousDelta;
+    private long size;
+
+    private GorillaSegmentWriter(FileChannel channel, long start, int maxSeries, boolean fsync) {
+        this.channel = channel;
+        this.start = start;
+        this.maxSeries = maxSeries;
+        this.fsync = fsync;
+        this.bits = new BitWriter(1024);
+        this.seriesIds = new HashMap<>();
+        this.frame = ByteBuffer.allocate(1024);
+
+        int initialSeries = Math.min(64, maxSeries);
+        this.current = new double[initialSeries];
+        this.previous = new long[initialSeries];
+        this.leadingZeros = new int[initialSeries];
+        this.trailingZeros = new int[initialSeries];
+        this.started = new boolean[initialSeries];
+
+        this.previousTimestamp = start;
+    }
+
+    /**
+     * Creates a new segment file, failing if it already exists.
+     */
+    static GorillaSegmentWriter create(Path path, long start, int maxSeries, boolean fsync) throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        GorillaSegmentWriter writer = new GorillaSegmentWriter(channel, start, maxSeries, fsync);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).put(VERSION).putLong(start).flip();
+            writer.write(header);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        return writer;
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int getSeriesCount() {
+        return seriesCount;
+    }
+
+    /**
+     * Returns an id of the named series within this segment, defining a new series if needed. Returns -1 if the max
+     * number of series is reached.
+     */
+    int seriesId(String name) {
+
+        Integer existing = seriesIds.get(name);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (seriesCount >= maxSeries) {
+            return -1;
+        }
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        ensureFrameCapacity(1 + 5 + nameBytes.length);
+        frame.put(SERIES_RECORD);
+        putVarInt(frame, nameBytes.length);
+        frame.put(nameBytes);
+
+        int id = seriesCount++;
+        ensureSeriesCapacity(seriesCount);
+        current[id] = Double.NaN;
+        seriesIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Starts a new tick, resetting the values of all series to NaN.
+     */
+    void beginTick() {
+        Arrays.fill(current, 0, seriesCount, Double.NaN);
+    }
+
+    void record(int seriesId, double value) {
+        current[seriesId] = value;
+    }
+
+    /**
+     * Encodes the values recorded since {@link #beginTick()} and appends them to the segment file together with any
+     * pending series definitions.
+     */
+    void endTick(long timestamp) throws IOException {
+
+        bits.reset();
+        encodeTimestamp(timestamp);
+        for (int i = 0; i < seriesCount; i++) {
+            encodeValue(i, Double.doubleToRawLongBits(current[i]));
+        }
+
+        int payloadSize = bits.byteSize();
+        ensureFrameCapacity(1 + 5 + payloadSize);
+        frame.put(TICK_RECORD);
+        putVarInt(frame, payloadSize);
+        frame.put(bits.array(), 0, payloadSize);
+
+        frame.flip();
+        try {
+            write(frame);
+        } finally {
+            frame.clear();
+        }
+
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void encodeTimestamp(long timestamp) {
+
+        long delta = timestamp - previousTimestamp;
+        long dod = delta - previousDelta;
+        previousTimestamp = timestamp;
+        previousDelta = delta;
+
+        if (dod == 0) {
+            bits.writeBit(false);
+        } else if (dod >= -63 && dod <= 64) {
+            bits.writeBits(0b10, 2);
+            bits.writeBits(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            bits.writeBits(0b110, 3);
+            bits.writeBits(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            bits.writeBits(0b1110, 4);
+            bits.writeBits(dod + 2047, 12);
+        } else {
+            bits.writeBits(0b1111, 4);
+            bits.writeBits(dod, 64);
+        }
+    }
+
+    private void encodeValue(int series, long value) {
+
+        // the first value of a series is stored as is
+        if (!started[series]) {
+            started[series] = true;
+            previous[series] = value;
+            leadingZeros[series] = -1;
+            bits.writeBits(value, 64);
+            return;
+        }
+
+        long xor = value ^ previous[series];
+        previous[series] = value;
+
+        if (xor == 0) {
+            bits.writeBit(false);
+            return;
+        }
+
+        bits.writeBit(true);
+
+        // leading zeros count is stored in 5 bits
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+
+        int previousLeading = leadingZeros[series];
+        int previousTrailing = trailingZeros[series];
+
+        // reuse the previous meaningful bits window if the new bits fit into it
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            bits.writeBit(false);
+            bits.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            bits.writeBit(true);
+            bits.writeBits(leading, 5);
+
+            // 64 meaningful bits are stored as 0, as there's never 0 meaningful bits
+            bits.writeBits(meaningful & 0x3F, 6);
+            bits.writeBits(xor >>> trailing, meaningful);
+            leadingZeros[series] = leading;
+            trailingZeros[series] = trailing;
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+    }
+
+    private void ensureFrameCapacity(int moreBytes) {
+        if (frame.remaining() < moreBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(frame.capacity() * 2, frame.position() + moreBytes));
+            frame.flip();
+            larger.put(frame);
+            frame = larger;
+        }
+    }
+
+    private void ensureSeriesCapacity(int count) {
+        if (count > current.length) {
+            int capacity = Math.min(Math.max(count, current.length * 2), maxSeries);
+            current = Arrays.copyOf(current, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            leadingZeros = Arrays.copyOf(leadingZeros, capacity);
+            trailingZeros = Arrays.copyOf(trailingZeros, capacity);
+            started = Arrays.copyOf(started, capacity);
+        }
+    }
+
+    static void putVarInt(ByteBuffer buffer, int value) {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+}
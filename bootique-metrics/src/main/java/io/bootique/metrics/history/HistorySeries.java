@@ -0,0 +1,76 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+/**
+ * A sequence of timestamped values of a single series returned by a {@link MetricsHistory} or a {@link FileTsdb}
+ * query, ordered from the oldest to the newest.
+ *
+ * @since 4.0
+ */
+public final class HistorySeries {
+
+    private final String name;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int size;
+
+    HistorySeries(String name, long[] timestamps, double[] values, int size) {
+        this.name = name;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a timestamp of the sample at the specified position in milliseconds since epoch.
+     */
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return timestamps[i];
+    }
+
+    public double getValue(int i) {
+        checkIndex(i);
+        return values[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index " + i + " is out of bounds for size " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HistorySeries{" + name + ", size=" + size + "}";
+    }
+}
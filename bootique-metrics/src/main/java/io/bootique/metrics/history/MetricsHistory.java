@@ -0,0 +1,254 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process history of the registry metrics, that periodically snapshots selected metrics to a fixed-size off-heap
+ * ring buffer, and allows to query recent values of each series (e.g. "the last 15 minutes of X"). Each snapshot is a
+ * row with a timestamp followed by a fixed number of double slots, one per series, so the memory footprint is
+ * determined by the configured capacity and the max number of series, and doesn't grow or create garbage over time.
+ * <p>
+ * Series are created for the metrics as they appear in the registry. Gauges and counters produce a series named
+ * after the metric. Meters produce "[name].count" and "[name].m1_rate" series, histograms - "[name].count",
+ * "[name].p50", "[name].p99" and "[name].max", and timers - all of the above (with durations in milliseconds).
+ * Once the max number of series is reached, new metrics are ignored.
+ *
+ * @since 4.0
+ */
+public class MetricsHistory extends ScheduledReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsHistory.class);
+
+    private static final int TIMESTAMP_BYTES = Long.BYTES;
+
+    private final SeriesRecorder recorder;
+    private final int capacity;
+    private final int maxSeries;
+    private final int rowSize;
+    private final ByteBuffer rows;
+
+    private final ReentrantReadWriteLock lock;
+
+    // guarded by the lock
+    private final Map<String, Integer> seriesSlots;
+    private final long[] seriesFirstRow;
+    private int seriesCount;
+    private long rowsWritten;
+    private int valuesOffset;
+    private boolean seriesOverflowReported;
+
+    public MetricsHistory(
+            MetricRegistry registry,
+            MetricFilter filter,
+            int capacity,
+            int maxSeries,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        super(registry, "metrics-history", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, executor, shutdownExecutorOnStop);
+
+        if (capacity < 0 || maxSeries < 0) {
+            throw new IllegalArgumentException("Capacity and max series must not be negative");
+        }
+
+        this.recorder = new SeriesRecorder(filter) {
+            @Override
+            protected int seriesId(String name) {
+                return createSeries(name);
+            }
+
+            @Override
+            protected void record(int seriesId, double value) {
+                rows.putDouble(valuesOffset + Double.BYTES * seriesId, value);
+            }
+        };
+
+        this.capacity = capacity;
+        this.maxSeries = maxSeries;
+        this.rowSize = TIMESTAMP_BYTES + Double.BYTES * maxSeries;
+
+        long bytes = (long) rowSize * capacity;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("History is too large: " + bytes + " bytes. Reduce capacity or max series");
+        }
+
+        this.rows = ByteBuffer.allocateDirect((int) bytes);
+        this.lock = new ReentrantReadWriteLock();
+
+        this.seriesSlots = new HashMap<>();
+        this.seriesFirstRow = new long[maxSeries];
+    }
+
+    /**
+     * Returns the max number of snapshots kept in the history.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    /**
+     * Returns the names of all series currently tracked by the history.
+     */
+    public Set<String> getSeriesNames() {
+        lock.readLock().lock();
+        try {
+            return new TreeSet<>(seriesSlots.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the values of the series recorded within the specified period before now. Missing values (e.g. when a
+     * metric was temporarily removed from the registry) are skipped.
+     */
+    public HistorySeries query(String series, Duration lookback) {
+        return query(series, System.currentTimeMillis() - lookback.toMillis(), Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the values of the series recorded between the two timestamps (inclusive), in milliseconds since epoch.
+     */
+    public HistorySeries query(String series, long fromMillis, long toMillis) {
+
+        lock.readLock().lock();
+        try {
+            Integer slot = seriesSlots.get(series);
+            if (slot == null || rowsWritten == 0) {
+                return new HistorySeries(series, new long[0], new double[0], 0);
+            }
+
+            long firstRow = Math.max(rowsWritten - capacity, seriesFirstRow[slot]);
+            int maxSize = (int) (rowsWritten - firstRow);
+
+            long[] timestamps = new long[maxSize];
+            double[] values = new double[maxSize];
+            int size = 0;
+
+            for (long row = firstRow; row < rowsWritten; row++) {
+                int offset = rowOffset(row);
+                long timestamp = rows.getLong(offset);
+
+                if (timestamp < fromMillis || timestamp > toMillis) {
+                    continue;
+                }
+
+                double value = rows.getDouble(offset + TIMESTAMP_BYTES + Double.BYTES * slot);
+                if (!Double.isNaN(value)) {
+                    timestamps[size] = timestamp;
+                    values[size] = value;
+                    size++;
+                }
+            }
+
+            return new HistorySeries(series, timestamps, values, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int rowOffset(long row) {
+        return (int) (row % capacity) * rowSize;
+    }
+
+    @Override
+    public void report(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+
+        if (capacity == 0 || maxSeries == 0) {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            int offset = rowOffset(rowsWritten);
+            rows.putLong(offset, timestamp);
+
+            // the metrics missing from the registry in this snapshot will have no values
+            valuesOffset = offset + TIMESTAMP_BYTES;
+            for (int i = 0; i < seriesCount; i++) {
+                rows.putDouble(valuesOffset + Double.BYTES * i, Double.NaN);
+            }
+
+            recorder.recordAll(gauges, counters, histograms, meters, timers, convertRate(1.));
+            rowsWritten++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int createSeries(String series) {
+
+        Integer existing = seriesSlots.get(series);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (seriesCount >= maxSeries) {
+            if (!seriesOverflowReported) {
+                seriesOverflowReported = true;
+                LOGGER.warn("Max number of history series ({}) is reached. New metrics will not be recorded.", maxSeries);
+            }
+
+            return -1;
+        }
+
+        int slot = seriesCount++;
+        seriesSlots.put(series, slot);
+
+        // the older rows contain no data for this slot
+        seriesFirstRow[slot] = rowsWritten;
+
+        // the current row was pre-filled before the slot existed
+        rows.putDouble(rowOffset(rowsWritten) + TIMESTAMP_BYTES + Double.BYTES * slot, Double.NaN);
+        return slot;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.MetricRegistry;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.metrics.GlobMetricFilter;
+import io.bootique.metrics.reporter.ReporterScheduler;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Configures {@link MetricsHistory}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures in-process history of the metrics stored off-heap.")
+public class MetricsHistoryFactory {
+
+    static final int DEFAULT_MAX_SERIES = 1000;
+
+    private final ShutdownManager shutdownManager;
+
+    private Duration period;
+    private Duration retention;
+    private int maxSeries;
+    private List<String> metrics;
+
+    @Inject
+    public MetricsHistoryFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    public MetricsHistory createAndStart(MetricRegistry registry, ReporterScheduler scheduler) {
+
+        MetricsHistory history = new MetricsHistory(
+                registry,
+                GlobMetricFilter.of(metrics),
+                resolveCapacity(),
+                resolveMaxSeries(),
+                scheduler.getExecutor(),
+                false);
+
+        scheduler.schedule(registry, history, resolvePeriod());
+        return shutdownManager.onShutdown(history, h -> {
+            scheduler.unschedule(h);
+            h.close();
+        });
+    }
+
+    java.time.Duration resolvePeriod() {
+        return period != null ? period.getDuration() : java.time.Duration.of(10, ChronoUnit.SECONDS);
+    }
+
+    java.time.Duration resolveRetention() {
+        return retention != null ? retention.getDuration() : java.time.Duration.of(15, ChronoUnit.MINUTES);
+    }
+
+    int resolveCapacity() {
+        long periodMs = resolvePeriod().toMillis();
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("History period must be positive");
+        }
+
+        return (int) Math.max(1, Math.ceilDiv(resolveRetention().toMillis(), periodMs));
+    }
+
+    int resolveMaxSeries() {
+        return maxSeries > 0 ? maxSeries : DEFAULT_MAX_SERIES;
+    }
+
+    @BQConfigProperty("How often to take snapshots of the metrics. The default is 10 seconds.")
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    @BQConfigProperty("How far back the history goes. Together with the period determines the size of the history " +
+            "buffer. The default is 15 minutes.")
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    @BQConfigProperty("Max number of series in the history. The default is 1000.")
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    @BQConfigProperty("Glob patterns of the names of the metrics to include in the history. '*' matches any chars, " +
+            "including dots. If omitted, all metrics are included (up to the max series).")
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+}
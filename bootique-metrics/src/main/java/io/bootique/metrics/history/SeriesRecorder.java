@@ -0,0 +1,175 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Flattens registry metrics into numeric series. Gauges and counters produce a series named after the metric. Meters
+ * produce "[name].count" and "[name].m1_rate" series, histograms - "[name].count", "[name].p50", "[name].p99" and
+ * "[name].max", and timers - all of the above (with durations in milliseconds). Series ids are resolved once per
+ * metric and cached, so recording doesn't allocate. Not thread-safe.
+ *
+ * @since 4.0
+ */
+abstract class SeriesRecorder {
+
+    private static final double NANOS_TO_MILLIS = 1e-6;
+
+    private static final String[] METER_SUFFIXES = {".count", ".m1_rate"};
+    private static final String[] HISTOGRAM_SUFFIXES = {".count", ".p50", ".p99", ".max"};
+    private static final String[] TIMER_SUFFIXES = {".count", ".m1_rate", ".p50", ".p99", ".max"};
+    private static final String[] NO_SUFFIXES = {""};
+    private static final int[] EXCLUDED = new int[0];
+
+    private final MetricFilter filter;
+
+    // series id caches per metric kind
+    private final Map<String, int[]> gaugeIds;
+    private final Map<String, int[]> counterIds;
+    private final Map<String, int[]> meterIds;
+    private final Map<String, int[]> histogramIds;
+    private final Map<String, int[]> timerIds;
+
+    SeriesRecorder(MetricFilter filter) {
+        this.filter = filter;
+        this.gaugeIds = new HashMap<>();
+        this.counterIds = new HashMap<>();
+        this.meterIds = new HashMap<>();
+        this.histogramIds = new HashMap<>();
+        this.timerIds = new HashMap<>();
+    }
+
+    /**
+     * Returns an id of a series with the specified name, creating the series if needed, or -1 if the series can't be
+     * created.
+     */
+    protected abstract int seriesId(String name);
+
+    protected abstract void record(int seriesId, double value);
+
+    /**
+     * Forgets the cached series ids, so that they are resolved again via {@link #seriesId(String)}.
+     */
+    void clearIds() {
+        gaugeIds.clear();
+        counterIds.clear();
+        meterIds.clear();
+        histogramIds.clear();
+        timerIds.clear();
+    }
+
+    @SuppressWarnings("rawtypes")
+    void recordAll(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers,
+            double rateFactor) {
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            int[] ids = ids(gaugeIds, e.getKey(), NO_SUFFIXES);
+            if (ids != EXCLUDED) {
+                Object value = e.getValue().getValue();
+                if (value instanceof Number n) {
+                    put(ids[0], n.doubleValue());
+                }
+            }
+        }
+
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            int[] ids = ids(counterIds, e.getKey(), NO_SUFFIXES);
+            if (ids != EXCLUDED) {
+                put(ids[0], e.getValue().getCount());
+            }
+        }
+
+        for (Map.Entry<String, Meter> e : meters.entrySet()) {
+            int[] ids = ids(meterIds, e.getKey(), METER_SUFFIXES);
+            if (ids != EXCLUDED) {
+                Meter m = e.getValue();
+                put(ids[0], m.getCount());
+                put(ids[1], m.getOneMinuteRate() * rateFactor);
+            }
+        }
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            int[] ids = ids(histogramIds, e.getKey(), HISTOGRAM_SUFFIXES);
+            if (ids != EXCLUDED) {
+                Histogram h = e.getValue();
+                Snapshot s = h.getSnapshot();
+                put(ids[0], h.getCount());
+                put(ids[1], s.getMedian());
+                put(ids[2], s.get99thPercentile());
+                put(ids[3], s.getMax());
+            }
+        }
+
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            int[] ids = ids(timerIds, e.getKey(), TIMER_SUFFIXES);
+            if (ids != EXCLUDED) {
+                Timer t = e.getValue();
+                Snapshot s = t.getSnapshot();
+                put(ids[0], t.getCount());
+                put(ids[1], t.getOneMinuteRate() * rateFactor);
+                put(ids[2], s.getMedian() * NANOS_TO_MILLIS);
+                put(ids[3], s.get99thPercentile() * NANOS_TO_MILLIS);
+                put(ids[4], s.getMax() * NANOS_TO_MILLIS);
+            }
+        }
+    }
+
+    private void put(int id, double value) {
+        if (id >= 0) {
+            record(id, value);
+        }
+    }
+
+    private int[] ids(Map<String, int[]> cache, String name, String[] suffixes) {
+
+        int[] ids = cache.get(name);
+        if (ids != null) {
+            return ids;
+        }
+
+        if (!filter.matches(name, null)) {
+            cache.put(name, EXCLUDED);
+            return EXCLUDED;
+        }
+
+        ids = new int[suffixes.length];
+        for (int i = 0; i < suffixes.length; i++) {
+            ids[i] = seriesId(name + suffixes[i]);
+        }
+
+        cache.put(name, ids);
+        return ids;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A high-throughput {@link TransactionIdGenerator} that adapts the number of stripes to the actual contention, similar
+ * to how {@link java.util.concurrent.atomic.LongAdder} manages its cells. Starts with a single stripe, and doubles the
+ * number of stripes (up to the configured maximum) when threads repeatedly fail to update a stripe counter. Each
+ * thread is assigned a stripe via a "probe" hash that is changed when the thread encounters contention. Each stripe is
+ * an independent generator with its own random base, so collisions between IDs from different stripes are
+ * improbable, though not impossible. Stripes approaching counter overflow are replaced synchronously, so unlike
+ * {@link SafeTransactionIdGenerator} no background reset is needed.
+ *
+ * @since 4.0
+ */
+public class AdaptiveStripedTransactionIdGenerator implements TransactionIdGenerator, MetricSet {
+
+    private final int maxStripes;
+    private final int counterStart;
+    private final ReentrantLock stripesLock;
+    private final ThreadLocal<Probe> probes;
+
+    // copy-on-write array, with the length being a power of 2. Stripes never change their position on resize
+    private volatile UnsafeTransactionIdGenerator[] stripes;
+
+    // stats of the stripes replaced on reset. Only updated under the stripes lock
+    private final Timer resets;
+    private final AtomicLong retiredIssuedCount;
+    private final AtomicLong retiredCasFailures;
+
+    /**
+     * Creates a generator with the max number of stripes based on the number of CPUs.
+     */
+    public AdaptiveStripedTransactionIdGenerator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public AdaptiveStripedTransactionIdGenerator(int maxStripes) {
+        this(maxStripes, Integer.MIN_VALUE);
+    }
+
+    public AdaptiveStripedTransactionIdGenerator(int maxStripes, int counterStart) {
+
+        // a stripe starting at or above the threshold would be replaced on every ID
+        if (counterStart >= UnsafeTransactionIdGenerator.RESET_THRESHOLD) {
+            throw new IllegalArgumentException("Counter start must be below "
+                    + UnsafeTransactionIdGenerator.RESET_THRESHOLD + ". Got: " + counterStart);
+        }
+
+        this.maxStripes = ceilingPowerOfTwo(maxStripes);
+        this.counterStart = counterStart;
+        this.stripesLock = new ReentrantLock();
+        this.probes = ThreadLocal.withInitial(Probe::new);
+        this.resets = new Timer();
+        this.retiredIssuedCount = new AtomicLong();
+        this.retiredCasFailures = new AtomicLong();
+        this.stripes = new UnsafeTransactionIdGenerator[]{createStripe()};
+    }
+
+    static int ceilingPowerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // the issuers are non-capturing lambdas, so passing them to "acquire" doesn't allocate
+    private static final Issuer<Void, String> STRING_ISSUER = (stripe, counter, target, arg) -> stripe.toId(counter);
+    private static final Issuer<Void, TransactionId> TRANSACTION_ID_ISSUER =
+            (stripe, counter, target, arg) -> stripe.toTransactionId(counter);
+    private static final Issuer<Void, TransactionIdBlock> BLOCK_ISSUER =
+            (stripe, counter, target, size) -> new IntCounterIdBlock(stripe, counter, size);
+
+    private static final Issuer<char[], Void> CHARS_WRITER = (stripe, counter, target, offset) -> {
+        stripe.writeId(counter, target, offset);
+        return null;
+    };
+
+    private static final Issuer<CharBuffer, Void> CHAR_BUFFER_WRITER = (stripe, counter, target, arg) -> {
+        stripe.writeId(counter, target);
+        return null;
+    };
+
+    private static final Issuer<ByteBuffer, Void> BYTE_BUFFER_WRITER = (stripe, counter, target, arg) -> {
+        stripe.writeId(counter, target);
+        return null;
+    };
+
+    @Override
+    public String nextId() {
+        return acquire(1, STRING_ISSUER, null, 0);
+    }
+
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        HexEncoder.checkSpace(buffer, offset, UnsafeTransactionIdGenerator.STRING_LENGTH);
+        acquire(1, CHARS_WRITER, buffer, offset);
+        return UnsafeTransactionIdGenerator.STRING_LENGTH;
+    }
+
+    @Override
+    public int nextId(CharBuffer buffer) {
+        HexEncoder.checkSpace(buffer, UnsafeTransactionIdGenerator.STRING_LENGTH);
+        acquire(1, CHAR_BUFFER_WRITER, buffer, 0);
+        return UnsafeTransactionIdGenerator.STRING_LENGTH;
+    }
+
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        HexEncoder.checkSpace(buffer, UnsafeTransactionIdGenerator.STRING_LENGTH);
+        acquire(1, BYTE_BUFFER_WRITER, buffer, 0);
+        return UnsafeTransactionIdGenerator.STRING_LENGTH;
+    }
+
+    @Override
+    public TransactionId nextTransactionId() {
+        return acquire(1, TRANSACTION_ID_ISSUER, null, 0);
+    }
+
+    /**
+     * Reserves a block of IDs from one of the stripes. The max block size is 100000.
+     */
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        BaseIdBlock.checkSize(size);
+        UnsafeTransactionIdGenerator.checkMaxBlockSize(size);
+        return acquire(size, BLOCK_ISSUER, null, size);
+    }
+
+    // acquires "delta" consecutive counter values from one of the stripes, retrying on other stripes (and growing
+    // the stripes) on contention, and passes the first acquired value to the issuer together with the stripe that
+    // issued it. The stripe is never looked up again by its position, as it may be replaced by a concurrent reset
+    private <T, R> R acquire(int delta, Issuer<T, R> issuer, T target, int arg) {
+        int probe = probe();
+        boolean collided = false;
+        while (true) {
+            UnsafeTransactionIdGenerator[] stripes = this.stripes;
+            UnsafeTransactionIdGenerator stripe = stripes[probe & (stripes.length - 1)];
+            long counter = stripe.tryAddCounter(delta);
+            if (counter != UnsafeTransactionIdGenerator.CONTENDED) {
+                resetIfNeeded(stripe, counter + delta - 1);
+                return issuer.issue(stripe, (int) counter, target, arg);
+            }
+
+            collided = onContention(stripes, collided);
+            probe = advanceProbe(probe);
+        }
+    }
+
+    /**
+     * Returns the current number of stripes.
+     */
+    public int getStripesCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Returns the number of IDs issued by this generator since it was created, including the reserved ones.
+     *
+     * @since 4.0
+     */
+    public long getIssuedCount() {
+        long count = retiredIssuedCount.get();
+        for (UnsafeTransactionIdGenerator s : stripes) {
+            count += s.getIssuedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the max fraction of the counter range used before the reset among all stripes.
+     *
+     * @since 4.0
+     */
+    public double getThresholdUsage() {
+        double max = 0.;
+        for (UnsafeTransactionIdGenerator s : stripes) {
+            max = Math.max(max, s.getThresholdUsage());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the number of failed attempts to update the stripe counters because of contention since the generator
+     * was created.
+     *
+     * @since 4.0
+     */
+    public long getCasFailures() {
+        long count = retiredCasFailures.get();
+        for (UnsafeTransactionIdGenerator s : stripes) {
+            count += s.getCasFailures();
+        }
+        return count;
+    }
+
+    /**
+     * Returns generator metrics. Those include totals ("IssuedCount", "CasFailures", "ThresholdUsage" (max of all
+     * stripes), "StripesCount" gauges and "Resets" timer), as well as per-stripe "Stripe.[i].IssuedCount" and
+     * "Stripe.[i].CasFailures" gauges for every stripe that may be created. The gauges of the stripes that were not
+     * created yet return zero.
+     *
+     * @since 4.0
+     */
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        metrics.put("IssuedCount", (Gauge<Long>) this::getIssuedCount);
+        metrics.put("CasFailures", (Gauge<Long>) this::getCasFailures);
+        metrics.put("ThresholdUsage", (Gauge<Double>) this::getThresholdUsage);
+        metrics.put("StripesCount", (Gauge<Integer>) this::getStripesCount);
+        metrics.put("Resets", resets);
+
+        for (int i = 0; i < maxStripes; i++) {
+            int index = i;
+            metrics.put("Stripe." + i + ".IssuedCount", (Gauge<Long>) () -> {
+                UnsafeTransactionIdGenerator[] stripes = this.stripes;
+                return index < stripes.length ? stripes[index].getIssuedCount() : 0L;
+            });
+            metrics.put("Stripe." + i + ".CasFailures", (Gauge<Long>) () -> {
+                UnsafeTransactionIdGenerator[] stripes = this.stripes;
+                return index < stripes.length ? stripes[index].getCasFailures() : 0L;
+            });
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Returns a probe hash of the current thread used to select a stripe. Subclasses may override this method
+     * together with {@link #advanceProbe(int)} to change how the threads are mapped to the stripes.
+     */
+    protected int probe() {
+        return probes.get().value;
+    }
+
+    /**
+     * Changes the probe hash of the current thread after it encountered contention on a stripe, returning the new
+     * probe value.
+     */
+    protected int advanceProbe(int probe) {
+        int next = xorShift(probe);
+        probes.get().value = next;
+        return next;
+    }
+
+    protected UnsafeTransactionIdGenerator createStripe() {
+        return new UnsafeTransactionIdGenerator(counterStart);
+    }
+
+    static int xorShift(int probe) {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        probe ^= probe << 5;
+        return probe;
+    }
+
+    // returns a new value of the "collided" flag
+    private boolean onContention(UnsafeTransactionIdGenerator[] seenStripes, boolean collided) {
+
+        // like LongAdder, only grow the stripes if the thread collided again after changing its probe
+        if (seenStripes.length >= maxStripes || seenStripes != this.stripes) {
+            return false;
+        }
+
+        if (!collided) {
+            return true;
+        }
+
+        // no need for multiple threads to grow the stripes, so abandon the attempt if another thread owns the lock
+        if (stripesLock.tryLock()) {
+            try {
+                if (seenStripes == this.stripes) {
+                    UnsafeTransactionIdGenerator[] grown = new UnsafeTransactionIdGenerator[seenStripes.length << 1];
+                    System.arraycopy(seenStripes, 0, grown, 0, seenStripes.length);
+                    for (int i = seenStripes.length; i < grown.length; i++) {
+                        grown[i] = createStripe();
+                    }
+
+                    this.stripes = grown;
+                }
+            } finally {
+                stripesLock.unlock();
+            }
+        }
+
+        return false;
+    }
+
+    private void resetIfNeeded(UnsafeTransactionIdGenerator stripe, long counter) {
+
+        // the check is done on the counter value we already have, so it costs nothing on the hot path. There's
+        // plenty of room left before the overflow, so if another thread owns the lock, let it do the reset
+        if (counter >= UnsafeTransactionIdGenerator.RESET_THRESHOLD && stripesLock.tryLock()) {
+            try {
+                UnsafeTransactionIdGenerator[] stripes = this.stripes;
+                for (int i = 0; i < stripes.length; i++) {
+                    if (stripes[i] == stripe) {
+                        long start = System.nanoTime();
+                        UnsafeTransactionIdGenerator[] replaced = stripes.clone();
+                        replaced[i] = createStripe();
+                        this.stripes = replaced;
+
+                        // the old stripe may still be used by the threads that have already read it, so its stats
+                        // are slightly undercounted
+                        retiredIssuedCount.addAndGet(stripe.getIssuedCount());
+                        retiredCasFailures.addAndGet(stripe.getCasFailures());
+                        resets.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        break;
+                    }
+                }
+            } finally {
+                stripesLock.unlock();
+            }
+        }
+    }
+
+    // produces the result of an ID operation from the counter value acquired from a stripe
+    @FunctionalInterface
+    private interface Issuer<T, R> {
+        R issue(UnsafeTransactionIdGenerator stripe, int counter, T target, int arg);
+    }
+
+    static final class Probe {
+
+        int value;
+
+        Probe() {
+            // must be non-zero for xorshift to work
+            this.value = ThreadLocalRandom.current().nextInt() | 1;
+        }
+    }
+}
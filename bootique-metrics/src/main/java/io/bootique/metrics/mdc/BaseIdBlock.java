@@ -0,0 +1,55 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.util.NoSuchElementException;
+
+/**
+ * @since 4.0
+ */
+abstract class BaseIdBlock implements TransactionIdBlock {
+
+    private final int size;
+    private int taken;
+
+    protected BaseIdBlock(int size) {
+        this.size = size;
+    }
+
+    static void checkSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Block size must be positive: " + size);
+        }
+    }
+
+    @Override
+    public int remaining() {
+        return size - taken;
+    }
+
+    // returns the position of the next ID within the block
+    protected int take() {
+        if (taken >= size) {
+            throw new NoSuchElementException("Transaction ID block is exhausted");
+        }
+
+        return taken++;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import io.bootique.metrics.MetricNaming;
+import io.bootique.metrics.MetricsModule;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pair of timers for the tasks handed off to a given executor, recording the time each task waited in the executor
+ * queue (from submit to start) and the task run time. Used by the instrumented MDC task wrappers that see both the
+ * submit and the start time of a task.
+ *
+ * @see TransactionIdMDC#runnable(Runnable, ExecutorTimers)
+ * @see TransactionIdMDC#executorService(java.util.concurrent.ExecutorService, ExecutorTimers)
+ * @since 4.0
+ */
+public class ExecutorTimers {
+
+    private static final MetricNaming NAMING = MetricNaming.forModule(MetricsModule.class);
+
+    private final Timer queueTime;
+    private final Timer runTime;
+
+    public ExecutorTimers(Timer queueTime, Timer runTime) {
+        this.queueTime = Objects.requireNonNull(queueTime);
+        this.runTime = Objects.requireNonNull(runTime);
+    }
+
+    /**
+     * Creates (or looks up) the timers for a named executor in the registry. The timers are named
+     * "bq.Metrics.Executor.[executorName].QueueTime" and "bq.Metrics.Executor.[executorName].RunTime".
+     */
+    public static ExecutorTimers of(MetricRegistry registry, String executorName) {
+        return new ExecutorTimers(
+                registry.timer(queueTimeMetric(executorName)),
+                registry.timer(runTimeMetric(executorName)));
+    }
+
+    public static String queueTimeMetric(String executorName) {
+        return NAMING.name("Executor", executorName, "QueueTime");
+    }
+
+    public static String runTimeMetric(String executorName) {
+        return NAMING.name("Executor", executorName, "RunTime");
+    }
+
+    public Timer getQueueTime() {
+        return queueTime;
+    }
+
+    public Timer getRunTime() {
+        return runTime;
+    }
+
+    // returns task start time to pass to "taskFinished"
+    long taskStarted(long submittedNanos) {
+        long started = System.nanoTime();
+        queueTime.update(started - submittedNanos, TimeUnit.NANOSECONDS);
+        return started;
+    }
+
+    void taskFinished(long startedNanos) {
+        runTime.update(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A block that takes each ID from the generator on demand. Used for generators that can't reserve a range of IDs.
+ *
+ * @since 4.0
+ */
+class GeneratorIdBlock extends BaseIdBlock {
+
+    private final TransactionIdGenerator generator;
+
+    GeneratorIdBlock(TransactionIdGenerator generator, int size) {
+        super(size);
+        this.generator = generator;
+    }
+
+    @Override
+    public String nextId() {
+        take();
+        return generator.nextId();
+    }
+
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        take();
+        return generator.nextId(buffer, offset);
+    }
+
+    @Override
+    public int nextId(CharBuffer buffer) {
+        take();
+        return generator.nextId(buffer);
+    }
+
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        take();
+        return generator.nextId(buffer);
+    }
+}
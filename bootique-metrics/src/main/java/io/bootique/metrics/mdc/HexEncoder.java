@@ -0,0 +1,164 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.nio.Buffer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Fixed-width lowercase hex encoder of int and long values that writes directly to the target buffers using a lookup
+ * table. Produces the same output as a zero-padded {@link Integer#toHexString(int)} or {@link Long#toHexString(long)}.
+ * Callers are responsible for checking that the target has enough space, e.g. with one of the "checkSpace" methods.
+ *
+ * @since 4.0
+ */
+final class HexEncoder {
+
+    static final int INT_LEN = 8;
+    static final int LONG_LEN = 16;
+
+    private static final char[] CHARS = "0123456789abcdef".toCharArray();
+    private static final byte[] BYTES = new byte[CHARS.length];
+
+    static {
+        for (int i = 0; i < CHARS.length; i++) {
+            BYTES[i] = (byte) CHARS[i];
+        }
+    }
+
+    private HexEncoder() {
+    }
+
+    static void checkSpace(char[] buffer, int offset, int length) {
+        if (offset < 0 || offset > buffer.length - length) {
+            throw new ArrayIndexOutOfBoundsException("Not enough space for the ID of length " + length + " at offset " + offset);
+        }
+    }
+
+    static void checkSpace(Buffer buffer, int length) {
+        if (buffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    // returns a value of a lowercase hex digit char, or -1 if the char is not one
+    static int digit(int c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+
+        return c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+    }
+
+    // returns a hex char at the specified position of a zero-padded value of the specified length
+    static char charAt(long value, int len, int index) {
+        return CHARS[(int) (value >>> (4 * (len - 1 - index))) & 0xF];
+    }
+
+    static int writeInt(int value, char[] buffer, int offset) {
+
+        for (int i = INT_LEN - 1; i >= 0; i--) {
+            buffer[offset + i] = CHARS[value & 0xF];
+            value >>>= 4;
+        }
+
+        return INT_LEN;
+    }
+
+    static int writeInt(int value, byte[] buffer, int offset) {
+
+        for (int i = INT_LEN - 1; i >= 0; i--) {
+            buffer[offset + i] = BYTES[value & 0xF];
+            value >>>= 4;
+        }
+
+        return INT_LEN;
+    }
+
+    static int writeInt(int value, CharBuffer buffer) {
+
+        // using absolute puts to write the digits in the reverse order
+        int position = buffer.position();
+        for (int i = INT_LEN - 1; i >= 0; i--) {
+            buffer.put(position + i, CHARS[value & 0xF]);
+            value >>>= 4;
+        }
+
+        buffer.position(position + INT_LEN);
+        return INT_LEN;
+    }
+
+    static int writeInt(int value, ByteBuffer buffer) {
+
+        int position = buffer.position();
+        for (int i = INT_LEN - 1; i >= 0; i--) {
+            buffer.put(position + i, BYTES[value & 0xF]);
+            value >>>= 4;
+        }
+
+        buffer.position(position + INT_LEN);
+        return INT_LEN;
+    }
+
+    static int writeLong(long value, char[] buffer, int offset) {
+
+        for (int i = LONG_LEN - 1; i >= 0; i--) {
+            buffer[offset + i] = CHARS[(int) value & 0xF];
+            value >>>= 4;
+        }
+
+        return LONG_LEN;
+    }
+
+    static int writeLong(long value, byte[] buffer, int offset) {
+
+        for (int i = LONG_LEN - 1; i >= 0; i--) {
+            buffer[offset + i] = BYTES[(int) value & 0xF];
+            value >>>= 4;
+        }
+
+        return LONG_LEN;
+    }
+
+    static int writeLong(long value, CharBuffer buffer) {
+
+        int position = buffer.position();
+        for (int i = LONG_LEN - 1; i >= 0; i--) {
+            buffer.put(position + i, CHARS[(int) value & 0xF]);
+            value >>>= 4;
+        }
+
+        buffer.position(position + LONG_LEN);
+        return LONG_LEN;
+    }
+
+    static int writeLong(long value, ByteBuffer buffer) {
+
+        int position = buffer.position();
+        for (int i = LONG_LEN - 1; i >= 0; i--) {
+            buffer.put(position + i, BYTES[(int) value & 0xF]);
+            value >>>= 4;
+        }
+
+        buffer.position(position + LONG_LEN);
+        return LONG_LEN;
+    }
+}
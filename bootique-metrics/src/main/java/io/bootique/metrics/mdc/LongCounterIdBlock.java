@@ -0,0 +1,63 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A block of IDs from a range of long counter values reserved in a {@link LongTransactionIdGenerator}.
+ *
+ * @since 4.0
+ */
+class LongCounterIdBlock extends BaseIdBlock {
+
+    private final LongTransactionIdGenerator generator;
+    private final long start;
+
+    LongCounterIdBlock(LongTransactionIdGenerator generator, long start, int size) {
+        super(size);
+        this.generator = generator;
+        this.start = start;
+    }
+
+    @Override
+    public String nextId() {
+        return generator.toId(start + take());
+    }
+
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        HexEncoder.checkSpace(buffer, offset, LongTransactionIdGenerator.STRING_LENGTH);
+        return generator.writeId(start + take(), buffer, offset);
+    }
+
+    @Override
+    public int nextId(CharBuffer buffer) {
+        HexEncoder.checkSpace(buffer, LongTransactionIdGenerator.STRING_LENGTH);
+        return generator.writeId(start + take(), buffer);
+    }
+
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        HexEncoder.checkSpace(buffer, LongTransactionIdGenerator.STRING_LENGTH);
+        return generator.writeId(start + take(), buffer);
+    }
+}
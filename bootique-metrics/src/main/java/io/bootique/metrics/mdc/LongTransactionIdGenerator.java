@@ -0,0 +1,142 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TransactionIdGenerator} based on a 64-bit counter that will not overflow in any realistic app lifetime
+ * (at 1 billion IDs per second it would take ~580 years). So unlike {@link SafeTransactionIdGenerator}, it doesn't
+ * need to check the counter on every call or to reset itself on background, and can never produce duplicate IDs
+ * because of a counter wraparound. The IDs are fixed-width, with the counter encoded as 16 hex chars. Multiple
+ * instances can be striped with {@link StripedTransactionIdGenerator} to reduce contention.
+ *
+ * @since 4.0
+ */
+public class LongTransactionIdGenerator implements TransactionIdGenerator, MetricSet {
+
+    static final int COUNTER_STRING_LEN = HexEncoder.LONG_LEN;
+    static final int STRING_LENGTH = 8 + COUNTER_STRING_LEN;
+
+    private final byte[] baseBytes;
+    private final char[] baseChars;
+    private final long baseBits;
+    private final long counterStart;
+    private final AtomicLong counter;
+
+    public LongTransactionIdGenerator() {
+        this(0L);
+    }
+
+    public LongTransactionIdGenerator(long counterStart) {
+        String base = UnsafeTransactionIdGenerator.randomBase();
+
+        this.baseBytes = base.getBytes(StandardCharsets.US_ASCII);
+        this.baseChars = base.toCharArray();
+        this.baseBits = TransactionId.packBase(baseBytes);
+        this.counterStart = counterStart;
+        this.counter = new AtomicLong(counterStart);
+    }
+
+    @Override
+    public String nextId() {
+        return toId(counter.getAndIncrement());
+    }
+
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        HexEncoder.checkSpace(buffer, offset, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer, offset);
+    }
+
+    @Override
+    public int nextId(CharBuffer buffer) {
+        HexEncoder.checkSpace(buffer, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer);
+    }
+
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        HexEncoder.checkSpace(buffer, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer);
+    }
+
+    @Override
+    public TransactionId nextTransactionId() {
+        return new TransactionId(TransactionId.BASE_LONG, baseBits, counter.getAndIncrement());
+    }
+
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        BaseIdBlock.checkSize(size);
+        return new LongCounterIdBlock(this, counter.getAndAdd(size), size);
+    }
+
+    /**
+     * Returns the number of IDs issued by this generator, including the reserved ones.
+     */
+    public long getIssuedCount() {
+        return counter.get() - counterStart;
+    }
+
+    /**
+     * Returns generator metrics, i.e. "IssuedCount" gauge. As the counter never overflows, there's no
+     * "ThresholdUsage" gauge.
+     */
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of("IssuedCount", (Gauge<Long>) this::getIssuedCount);
+    }
+
+    String toId(long counter) {
+        byte[] bytes = new byte[STRING_LENGTH];
+        System.arraycopy(baseBytes, 0, bytes, 0, baseBytes.length);
+        HexEncoder.writeLong(counter, bytes, baseBytes.length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // the "writeId" methods don't check the space, as the callers must do it before taking the counter, so that an
+    // undersized buffer doesn't waste an ID
+    int writeId(long counter, char[] buffer, int offset) {
+        System.arraycopy(baseChars, 0, buffer, offset, baseChars.length);
+        HexEncoder.writeLong(counter, buffer, offset + baseChars.length);
+        return STRING_LENGTH;
+    }
+
+    int writeId(long counter, CharBuffer buffer) {
+        buffer.put(baseChars);
+        HexEncoder.writeLong(counter, buffer);
+        return STRING_LENGTH;
+    }
+
+    int writeId(long counter, ByteBuffer buffer) {
+        buffer.put(baseBytes);
+        HexEncoder.writeLong(counter, buffer);
+        return STRING_LENGTH;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * A {@link TransactionIdGeneratorFactory} that produces a {@link LongTransactionIdGenerator}, optionally striped.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a generator based on a 64-bit counter that never needs a reset.")
+@JsonTypeName("long")
+public class LongTransactionIdGeneratorFactory implements TransactionIdGeneratorFactory {
+
+    private int stripes;
+    private long counterStart;
+
+    @Override
+    public TransactionIdGenerator createGenerator() {
+        return stripes > 1
+                ? new StripedTransactionIdGenerator(stripes, () -> new LongTransactionIdGenerator(counterStart))
+                : new LongTransactionIdGenerator(counterStart);
+    }
+
+    @BQConfigProperty("A number of independent 64-bit counters to spread the load between threads. The default is 1.")
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    @BQConfigProperty("The initial value of each counter. The default is 0.")
+    public void setCounterStart(long counterStart) {
+        this.counterStart = counterStart;
+    }
+}
@@ -23,17 +23,16 @@ import java.util.concurrent.Callable;
 class MDCCallable<T> implements Callable<T> {
 
     private final Callable<T> delegate;
-    private final String txId;
+    private final TransactionId txId;
 
-    public MDCCallable(Callable<T> delegate, String txId) {
+    public MDCCallable(Callable<T> delegate, TransactionId txId) {
         this.delegate = delegate;
         this.txId = txId;
     }
 
     @Override
     public T call() throws Exception {
-        String otherTxId = TransactionIdMDC.getId();
-        if (otherTxId != null) {
+        if (TransactionIdMDC.hasId()) {
             return delegate.call();
         }
 
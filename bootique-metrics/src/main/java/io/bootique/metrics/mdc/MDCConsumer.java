@@ -0,0 +1,51 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// switches to its own ID and restores the previous one, as parallel stream elements may be processed by the
+// ForkJoinPool workers that are in the middle of another task
+class MDCConsumer<T> implements Consumer<T> {
+
+    private final Consumer<T> delegate;
+    private final TransactionId txId;
+
+    public MDCConsumer(Consumer<T> delegate, TransactionId txId) {
+        this.delegate = delegate;
+        this.txId = txId;
+    }
+
+    @Override
+    public void accept(T t) {
+        TransactionId outer = TransactionIdMDC.getTransactionId();
+        if (Objects.equals(outer, txId)) {
+            delegate.accept(t);
+            return;
+        }
+
+        TransactionIdMDC.setId(txId);
+        try {
+            delegate.accept(t);
+        } finally {
+            TransactionIdMDC.setId(outer);
+        }
+    }
+}
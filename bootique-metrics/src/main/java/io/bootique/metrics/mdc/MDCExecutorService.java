@@ -0,0 +1,156 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import jakarta.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An {@link ExecutorService} decorator that propagates the transaction ID of the submitting thread to the submitted
+ * tasks. Tasks submitted from threads that have no transaction ID and tasks that were already wrapped via
+ * {@link TransactionIdMDC#runnable(Runnable)} or similar methods are passed to the delegate as is. The transaction ID
+ * is captured once per call, and is shared by all the tasks of {@link #invokeAll(Collection)} and similar methods.
+ * Can be used as a DI decorator via {@link io.bootique.metrics.MetricsModuleExtender}.
+ * <p>If created with {@link ExecutorTimers}, also records the time each submitted task waited in the queue and its run
+ * time. In this case every task is wrapped, even if there's no transaction ID.
+ *
+ * @see TransactionIdMDC#executorService(ExecutorService)
+ * @since 4.0
+ */
+public class MDCExecutorService implements ExecutorService {
+
+    private final ExecutorService delegate;
+    private final ExecutorTimers timers;
+
+    @Inject
+    public MDCExecutorService(ExecutorService delegate) {
+        this(delegate, null);
+    }
+
+    public MDCExecutorService(ExecutorService delegate, ExecutorTimers timers) {
+        this.delegate = delegate;
+        this.timers = timers;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(wrap(command));
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return delegate.submit(wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return delegate.submit(wrap(task), result);
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(timers != null ? TransactionIdMDC.callable(task, timers) : TransactionIdMDC.callable(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public String toString() {
+        return "MDCExecutorService{" + delegate + "}";
+    }
+
+    private Runnable wrap(Runnable task) {
+        return timers != null ? TransactionIdMDC.runnable(task, timers) : TransactionIdMDC.runnable(task);
+    }
+
+    private <T> Collection<? extends Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+
+        // no transaction and no timers - the original collection is passed through
+        TransactionId txId = TransactionIdMDC.getTransactionId();
+        if (txId == null && timers == null) {
+            return tasks;
+        }
+
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> t : tasks) {
+            wrapped.add(timers != null
+                    ? TransactionIdMDC.callable(t, txId, timers)
+                    : TransactionIdMDC.callable(t, txId));
+        }
+
+        return wrapped;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link ForkJoinPool} that propagates the transaction ID of the submitting thread to the submitted tasks. Plain
+ * {@link Runnable}, {@link Callable} and {@link ForkJoinTask} submissions are adapted to tasks that carry the ID.
+ * Note that the subtasks forked by a plain ForkJoinTask don't inherit the ID when stolen by other workers. To cover
+ * those, extend {@link MDCRecursiveTask} or {@link MDCRecursiveAction} instead of the JDK recursive tasks. Those
+ * carry the ID regardless of the pool they run in, including {@link ForkJoinPool#commonPool()}.
+ *
+ * @see TransactionIdMDC#forkJoinPool(int)
+ * @since 4.0
+ */
+public class MDCForkJoinPool extends ForkJoinPool {
+
+    public MDCForkJoinPool() {
+    }
+
+    public MDCForkJoinPool(int parallelism) {
+        super(parallelism);
+    }
+
+    @Override
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return super.invoke(wrap(task));
+    }
+
+    @Override
+    public void execute(ForkJoinTask<?> task) {
+        super.execute(wrap(task));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        super.execute(wrap(task, null));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(ForkJoinTask<T> task) {
+        return super.submit(wrap(task));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Callable<T> task) {
+        return super.submit(wrap(task));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> submit(Runnable task, T result) {
+        return super.submit(wrap(task, result));
+    }
+
+    @Override
+    public ForkJoinTask<?> submit(Runnable task) {
+        return super.submit(wrap(task, null));
+    }
+
+    @Override
+    public <T> ForkJoinTask<T> lazySubmit(ForkJoinTask<T> task) {
+        return super.lazySubmit(wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) {
+        return super.invokeAll(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
+        return super.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return super.invokeAny(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return super.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+
+    private static <T> ForkJoinTask<T> wrap(ForkJoinTask<T> task) {
+        if (task instanceof MDCForkJoinTask) {
+            return task;
+        }
+
+        TransactionId txId = TransactionIdMDC.getTransactionId();
+        return txId != null ? new AdaptedTask<>(task, txId) : task;
+    }
+
+    private static <T> ForkJoinTask<T> wrap(Callable<T> task) {
+        TransactionId txId = TransactionIdMDC.getTransactionId();
+        return txId != null ? new AdaptedCallable<>(task, txId) : ForkJoinTask.adapt(task);
+    }
+
+    private static <T> ForkJoinTask<T> wrap(Runnable task, T result) {
+        TransactionId txId = TransactionIdMDC.getTransactionId();
+        return txId != null ? new AdaptedRunnable<>(task, result, txId) : ForkJoinTask.adapt(task, result);
+    }
+
+    private static <T> Collection<? extends Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+
+        TransactionId txId = TransactionIdMDC.getTransactionId();
+        if (txId == null) {
+            return tasks;
+        }
+
+        List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> t : tasks) {
+            wrapped.add(new SwitchingCallable<>(t, txId));
+        }
+
+        return wrapped;
+    }
+
+    // unlike MDCCallable, always switches to its own ID and restores the worker's previous ID after the call, as with
+    // work stealing, a worker may be running another transaction task when it picks this one
+    static class SwitchingCallable<T> implements Callable<T> {
+
+        private final Callable<T> delegate;
+        private final TransactionId txId;
+
+        SwitchingCallable(Callable<T> delegate, TransactionId txId) {
+            this.delegate = delegate;
+            this.txId = txId;
+        }
+
+        @Override
+        public T call() throws Exception {
+            TransactionId outer = TransactionIdMDC.getTransactionId();
+            if (Objects.equals(outer, txId)) {
+                return delegate.call();
+            }
+
+            TransactionIdMDC.setId(txId);
+            try {
+                return delegate.call();
+            } finally {
+                TransactionIdMDC.setId(outer);
+            }
+        }
+    }
+
+    static class AdaptedTask<T> extends MDCForkJoinTask<T> {
+
+        private final ForkJoinTask<T> task;
+        private T result;
+
+        AdaptedTask(ForkJoinTask<T> task, TransactionId txId) {
+            super(txId);
+            this.task = task;
+        }
+
+        @Override
+        public T getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(T value) {
+            this.result = value;
+        }
+
+        @Override
+        boolean execWithId() {
+            // runs the original task in the current thread, so its own status is updated and it can be joined
+            result = task.invoke();
+            return true;
+        }
+    }
+
+    static class AdaptedCallable<T> extends MDCForkJoinTask<T> {
+
+        private final Callable<T> callable;
+        private T result;
+
+        AdaptedCallable(Callable<T> callable, TransactionId txId) {
+            super(txId);
+            this.callable = callable;
+        }
+
+        @Override
+        public T getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(T value) {
+            this.result = value;
+        }
+
+        @Override
+        boolean execWithId() {
+            try {
+                result = callable.call();
+                return true;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static class AdaptedRunnable<T> extends MDCForkJoinTask<T> {
+
+        private final Runnable runnable;
+        private T result;
+
+        AdaptedRunnable(Runnable runnable, T result, TransactionId txId) {
+            super(txId);
+            this.runnable = runnable;
+            this.result = result;
+        }
+
+        @Override
+        public T getRawResult() {
+            return result;
+        }
+
+        @Override
+        protected void setRawResult(T value) {
+            this.result = value;
+        }
+
+        @Override
+        boolean execWithId() {
+            runnable.run();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A common superclass of the fork/join tasks that carry a transaction ID. The ID is captured when the task is created.
+ * So a subtask created within a running task inherits the parent ID without any MDC copying, and runs with it on any
+ * worker thread that executes (or steals) the subtask. As a worker may run a stolen task while waiting for a join, the
+ * worker's previous ID is restored when the task is done.
+ *
+ * @since 4.0
+ */
+abstract class MDCForkJoinTask<V> extends ForkJoinTask<V> {
+
+    private final TransactionId txId;
+
+    MDCForkJoinTask() {
+        this(TransactionIdMDC.getTransactionId());
+    }
+
+    MDCForkJoinTask(TransactionId txId) {
+        this.txId = txId;
+    }
+
+    /**
+     * Returns the transaction ID of this task captured at creation.
+     */
+    public TransactionId getTransactionId() {
+        return txId;
+    }
+
+    @Override
+    protected final boolean exec() {
+        TransactionId outer = TransactionIdMDC.getTransactionId();
+
+        // in most cases the worker thread is already running with the same ID (e.g. when joining a subtask locally),
+        // so the equality check avoids touching the MDC
+        if (Objects.equals(outer, txId)) {
+            return execWithId();
+        }
+
+        TransactionIdMDC.setId(txId);
+        try {
+            return execWithId();
+        } finally {
+            TransactionIdMDC.setId(outer);
+        }
+    }
+
+    abstract boolean execWithId();
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+/**
+ * An analog of {@link java.util.concurrent.RecursiveTask} that propagates the transaction ID of the thread that created
+ * the task to the task and all its subtasks, including those stolen by other workers. Subtasks must also be
+ * {@link MDCRecursiveTask} or {@link MDCRecursiveAction} instances created within {@link #compute()}.
+ *
+ * @since 4.0
+ */
+public abstract class MDCRecursiveTask<V> extends MDCForkJoinTask<V> {
+
+    private V result;
+
+    /**
+     * The main computation performed by this task.
+     *
+     * @return the result of the computation
+     */
+    protected abstract V compute();
+
+    @Override
+    public final V getRawResult() {
+        return result;
+    }
+
+    @Override
+    protected final void setRawResult(V value) {
+        this.result = value;
+    }
+
+    @Override
+    final boolean execWithId() {
+        result = compute();
+        return true;
+    }
+}
@@ -21,17 +21,16 @@ package io.bootique.metrics.mdc;
 class MDCRunnable implements Runnable {
 
     private final Runnable delegate;
-    private final String txId;
+    private final TransactionId txId;
 
-    public MDCRunnable(Runnable delegate, String txId) {
+    public MDCRunnable(Runnable delegate, TransactionId txId) {
         this.delegate = delegate;
         this.txId = txId;
     }
 
     @Override
     public void run() {
-        String otherTxId = TransactionIdMDC.getId();
-        if (otherTxId != null) {
+        if (TransactionIdMDC.hasId()) {
             delegate.run();
             return;
         }
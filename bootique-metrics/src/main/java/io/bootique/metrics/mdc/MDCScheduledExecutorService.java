@@ -0,0 +1,75 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import jakarta.inject.Inject;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledExecutorService} decorator that propagates the transaction ID of the submitting thread to the
+ * submitted and scheduled tasks. A periodic task is wrapped once, and every execution of the task runs with the
+ * transaction ID captured when the task was scheduled. Only the tasks submitted for immediate execution are timed
+ * with {@link ExecutorTimers}, as the queue time of the delayed tasks is meaningless.
+ *
+ * @see TransactionIdMDC#scheduledExecutorService(ScheduledExecutorService)
+ * @since 4.0
+ */
+public class MDCScheduledExecutorService extends MDCExecutorService implements ScheduledExecutorService {
+
+    private final ScheduledExecutorService delegate;
+
+    @Inject
+    public MDCScheduledExecutorService(ScheduledExecutorService delegate) {
+        this(delegate, null);
+    }
+
+    public MDCScheduledExecutorService(ScheduledExecutorService delegate, ExecutorTimers timers) {
+        super(delegate, timers);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return delegate.schedule(TransactionIdMDC.runnable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return delegate.schedule(TransactionIdMDC.callable(callable), delay, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return delegate.scheduleAtFixedRate(TransactionIdMDC.runnable(command), initialDelay, period, unit);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return delegate.scheduleWithFixedDelay(TransactionIdMDC.runnable(command), initialDelay, delay, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "MDCScheduledExecutorService{" + delegate + "}";
+    }
+}
@@ -23,17 +23,16 @@ import java.util.function.Supplier;
 class MDCSupplier<T> implements Supplier<T> {
 
     private final Supplier<T> delegate;
-    private final String txId;
+    private final TransactionId txId;
 
-    public MDCSupplier(Supplier<T> delegate, String txId) {
+    public MDCSupplier(Supplier<T> delegate, TransactionId txId) {
         this.delegate = delegate;
         this.txId = txId;
     }
 
     @Override
     public T get() {
-        String otherTxId = TransactionIdMDC.getId();
-        if (otherTxId != null) {
+        if (TransactionIdMDC.hasId()) {
             return delegate.get();
         }
 
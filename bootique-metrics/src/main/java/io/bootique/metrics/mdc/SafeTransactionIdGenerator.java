@@ -19,18 +19,32 @@
 
 package io.bootique.metrics.mdc;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Map;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * An overflow-free implementation of {@link TransactionIdGenerator}.
  */
-public class SafeTransactionIdGenerator implements TransactionIdGenerator {
+public class SafeTransactionIdGenerator implements TransactionIdGenerator, MetricSet {
 
     private final int counterStart;
     private final ReentrantLock delegateResetLock;
     private volatile UnsafeTransactionIdGenerator delegate;
 
+    // only updated on reset
+    private final Timer resets;
+    private final AtomicLong retiredIssuedCount;
+
     public SafeTransactionIdGenerator() {
         this(Integer.MIN_VALUE);
     }
@@ -39,6 +53,8 @@ public class SafeTransactionIdGenerator implements TransactionIdGenerator {
         this.counterStart = counterStart;
         this.delegate = createDelegate();
         this.delegateResetLock = new ReentrantLock();
+        this.resets = new Timer();
+        this.retiredIssuedCount = new AtomicLong();
     }
 
     @Override
@@ -47,6 +63,86 @@ public class SafeTransactionIdGenerator implements TransactionIdGenerator {
         return delegate.nextId();
     }
 
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        resetIfNeeded();
+        return delegate.nextId(buffer, offset);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(CharBuffer buffer) {
+        resetIfNeeded();
+        return delegate.nextId(buffer);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        resetIfNeeded();
+        return delegate.nextId(buffer);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public TransactionId nextTransactionId() {
+        resetIfNeeded();
+        return delegate.nextTransactionId();
+    }
+
+    /**
+     * Reserves a block of IDs. The max block size is 100000.
+     *
+     * @since 4.0
+     */
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        UnsafeTransactionIdGenerator.checkMaxBlockSize(size);
+        resetIfNeeded();
+        return delegate.reserveIds(size);
+    }
+
+    /**
+     * Returns the number of IDs issued by this generator since it was created, including the reserved ones.
+     *
+     * @since 4.0
+     */
+    public long getIssuedCount() {
+        return retiredIssuedCount.get() + delegate.getIssuedCount();
+    }
+
+    /**
+     * Returns a fraction of the current counter range used before the next reset.
+     *
+     * @since 4.0
+     */
+    public double getThresholdUsage() {
+        return delegate.getThresholdUsage();
+    }
+
+    /**
+     * Returns generator metrics, i.e. "IssuedCount" and "ThresholdUsage" gauges and a "Resets" timer tracking the
+     * number of the counter resets and the time spent resetting.
+     *
+     * @since 4.0
+     */
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "IssuedCount", (Gauge<Long>) this::getIssuedCount,
+                "ThresholdUsage", (Gauge<Double>) this::getThresholdUsage,
+                "Resets", resets);
+    }
+
     protected UnsafeTransactionIdGenerator createDelegate() {
         return new UnsafeTransactionIdGenerator(counterStart);
     }
@@ -69,8 +165,12 @@ public class SafeTransactionIdGenerator implements TransactionIdGenerator {
         // no need for multiple threads to do reset, so abandon the attempt if another thread owns the lock
         if (delegateResetLock.tryLock()) {
             try {
-                if (delegate.willNeedResetSoon()) {
+                UnsafeTransactionIdGenerator old = this.delegate;
+                if (old.willNeedResetSoon()) {
+                    long start = System.nanoTime();
                     this.delegate = createDelegate();
+                    retiredIssuedCount.addAndGet(old.getIssuedCount());
+                    resets.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 }
             } finally {
                 delegateResetLock.unlock();
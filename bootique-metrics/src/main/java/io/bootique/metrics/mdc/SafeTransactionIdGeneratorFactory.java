@@ -0,0 +1,47 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * A {@link TransactionIdGeneratorFactory} that produces a {@link SafeTransactionIdGenerator}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a single-counter generator that is reset on background before the counter overflow.")
+@JsonTypeName("safe")
+public class SafeTransactionIdGeneratorFactory implements TransactionIdGeneratorFactory {
+
+    private Integer counterStart;
+
+    @Override
+    public TransactionIdGenerator createGenerator() {
+        return counterStart != null
+                ? new SafeTransactionIdGenerator(counterStart)
+                : new SafeTransactionIdGenerator();
+    }
+
+    @BQConfigProperty("The initial value of the counter, also used after each reset. The default is the min int value.")
+    public void setCounterStart(Integer counterStart) {
+        this.counterStart = counterStart;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.slf4j.MDC;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+
+/**
+ * A transaction ID context bound to a scope of code execution instead of a thread. When running on a JVM that provides
+ * {@code java.lang.ScopedValue}, the ID is stored in a ScopedValue, so it takes no per-thread memory, and is
+ * inherited for free by the subtasks forked in a {@code java.util.concurrent.StructuredTaskScope} opened within the
+ * scope. Otherwise, it falls back to a ThreadLocal holding a single reference, which is restored when the scope ends,
+ * and is not inherited by the child threads.
+ * <p>While the ID is bound, it takes precedence over the ID set via {@link TransactionIdMDC#setId(String)}, and is
+ * returned by {@link TransactionIdMDC#getId()} and {@link TransactionIdMDC#getTransactionId()}, and propagated by the
+ * MDC task wrappers. The loggers that read the SLF4J MDC directly see the ID in one of two ways. If
+ * {@link TransactionIdTurboFilter} is installed, the ID is placed in the MDC of the current thread right before a log
+ * event is created, so the threads that don't log don't pay for the MDC at all, and the forked subtasks are covered
+ * too. Otherwise, the ID is placed in the MDC when the scope is entered, and only the thread that entered the scope
+ * sees it in the logs.
+ *
+ * @since 4.0
+ */
+public final class ScopedTransactionId {
+
+    // java.lang.ScopedValue is called via method handles, as it is a preview API in Java 21, and its "call" method
+    // signature changed in the later versions. "where(..).run(..)", "isBound()" and "get()" are the same in all
+    // versions
+    private static final Object SCOPED_VALUE;
+    private static final MethodHandle WHERE;
+    private static final MethodHandle RUN;
+    private static final MethodHandle IS_BOUND;
+    private static final MethodHandle GET;
+
+    private static final ThreadLocal<TransactionId> FALLBACK = new ThreadLocal<>();
+
+    static {
+        Object scopedValue = null;
+        MethodHandle where = null, run = null, isBound = null, get = null;
+
+        try {
+            Class<?> svType = Class.forName("java.lang.ScopedValue");
+            Class<?> carrierType = Class.forName("java.lang.ScopedValue$Carrier");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            scopedValue = lookup.findStatic(svType, "newInstance", MethodType.methodType(svType)).invoke();
+            where = lookup.findStatic(svType, "where", MethodType.methodType(carrierType, svType, Object.class))
+                    .bindTo(scopedValue)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            run = lookup.findVirtual(carrierType, "run", MethodType.methodType(void.class, Runnable.class))
+                    .asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+            isBound = lookup.findVirtual(svType, "isBound", MethodType.methodType(boolean.class))
+                    .bindTo(scopedValue);
+            get = lookup.findVirtual(svType, "get", MethodType.methodType(Object.class))
+                    .bindTo(scopedValue);
+        } catch (Throwable e) {
+            // ScopedValue is not available (or not accessible) in this JVM, will use the fallback
+            scopedValue = null;
+        }
+
+        SCOPED_VALUE = scopedValue;
+        WHERE = where;
+        RUN = run;
+        IS_BOUND = isBound;
+        GET = get;
+    }
+
+    private ScopedTransactionId() {
+    }
+
+    /**
+     * Returns true if the context is backed by a ScopedValue, and false if it uses a ThreadLocal fallback.
+     */
+    public static boolean isScopedValueSupported() {
+        return SCOPED_VALUE != null;
+    }
+
+    /**
+     * Runs an operation with the transaction ID bound for the duration of the operation.
+     */
+    public static void run(TransactionId id, Runnable op) {
+        Objects.requireNonNull(id);
+        Objects.requireNonNull(op);
+
+        String mdcId = enterMDC(id);
+        try {
+            if (SCOPED_VALUE != null) {
+                runScoped(id, op);
+            } else {
+                runWithFallback(id, op);
+            }
+        } finally {
+            exitMDC(id, mdcId);
+        }
+    }
+
+    /**
+     * Calls an operation with the transaction ID bound for the duration of the operation, returning its result.
+     */
+    public static <T> T call(TransactionId id, Callable<T> op) throws Exception {
+        Objects.requireNonNull(op);
+
+        CallResult<T> result = new CallResult<>(op);
+        run(id, result);
+        return result.get();
+    }
+
+    /**
+     * Returns the transaction ID bound in the current scope, or null if there's none.
+     */
+    public static TransactionId get() {
+        if (SCOPED_VALUE == null) {
+            return FALLBACK.get();
+        }
+
+        try {
+            return (boolean) IS_BOUND.invokeExact() ? (TransactionId) (Object) GET.invokeExact() : null;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Returns true if there's a transaction ID bound in the current scope.
+     */
+    public static boolean isBound() {
+        return get() != null;
+    }
+
+    private static void runScoped(TransactionId id, Runnable op) {
+        try {
+            Object carrier = WHERE.invokeExact((Object) id);
+            RUN.invokeExact(carrier, op);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static void runWithFallback(TransactionId id, Runnable op) {
+        TransactionId outer = FALLBACK.get();
+        FALLBACK.set(id);
+        try {
+            op.run();
+        } finally {
+            if (outer != null) {
+                FALLBACK.set(outer);
+            } else {
+                FALLBACK.remove();
+            }
+        }
+    }
+
+    // returns the MDC ID that was there before entering the scope
+    private static String enterMDC(TransactionId id) {
+        String outer = MDC.get(TransactionIdMDC.MDC_KEY);
+        if (!TransactionIdMDC.lazyRendering) {
+            MDC.put(TransactionIdMDC.MDC_KEY, id.toString());
+        }
+
+        return outer;
+    }
+
+    private static void exitMDC(TransactionId id, String outer) {
+
+        // only restoring the MDC if it still has our ID, i.e. was not changed explicitly within the scope. Using
+        // identity comparison, as the MDC would contain the cached rendered String
+        String current = MDC.get(TransactionIdMDC.MDC_KEY);
+        if (current == null || !id.isRendered() || current != id.toString()) {
+            return;
+        }
+
+        if (outer != null) {
+            MDC.put(TransactionIdMDC.MDC_KEY, outer);
+        } else {
+            MDC.remove(TransactionIdMDC.MDC_KEY);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException re) {
+            throw re;
+        }
+
+        if (e instanceof Error err) {
+            throw err;
+        }
+
+        // only possible with sneaky throws in the Runnable
+        throw new RuntimeException(e);
+    }
+
+    // adapts a Callable to a Runnable, as ScopedValue "call" method signature differs between Java versions
+    private static class CallResult<T> implements Runnable {
+
+        private final Callable<T> op;
+        private T result;
+        private Exception exception;
+
+        CallResult(Callable<T> op) {
+            this.op = op;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = op.call();
+            } catch (Exception e) {
+                exception = e;
+            }
+        }
+
+        T get() throws Exception {
+            if (exception != null) {
+                throw exception;
+            }
+
+            return result;
+        }
+    }
+}
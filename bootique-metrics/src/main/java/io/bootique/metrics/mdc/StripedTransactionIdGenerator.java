@@ -19,12 +19,22 @@
 
 package io.bootique.metrics.mdc;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
  * A high-throughout {@link TransactionIdGenerator} that internally delegates calls to the per-thread id generators.
  */
-public class StripedTransactionIdGenerator implements TransactionIdGenerator {
+public class StripedTransactionIdGenerator implements TransactionIdGenerator, MetricSet {
 
     private final int size;
     private final TransactionIdGenerator[] generators;
@@ -36,7 +46,7 @@ public class StripedTransactionIdGenerator implements TransactionIdGenerator {
 
     public StripedTransactionIdGenerator(int size, Supplier<TransactionIdGenerator> generatorFactory) {
         this.size = size;
-        this.generators = new SafeTransactionIdGenerator[size];
+        this.generators = new TransactionIdGenerator[size];
 
         for (int i = 0; i < size; i++) {
             generators[i] = generatorFactory.get();
@@ -45,7 +55,110 @@ public class StripedTransactionIdGenerator implements TransactionIdGenerator {
 
     @Override
     public String nextId() {
+        return generator().nextId();
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        return generator().nextId(buffer, offset);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(CharBuffer buffer) {
+        return generator().nextId(buffer);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        return generator().nextId(buffer);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public TransactionId nextTransactionId() {
+        return generator().nextTransactionId();
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        return generator().reserveIds(size);
+    }
+
+    /**
+     * Returns the metrics of each stripe that supports metrics prefixed with "Stripe.[i].", so that the stripe
+     * imbalance can be observed. Also returns "IssuedCount" gauge with the total of all stripes and "ThresholdUsage"
+     * gauge with the max of all stripes, if the stripes provide those.
+     *
+     * @since 4.0
+     */
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+
+        List<Gauge<?>> issuedCounts = new ArrayList<>(size);
+        List<Gauge<?>> thresholdUsages = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            if (generators[i] instanceof MetricSet ms) {
+                for (Map.Entry<String, Metric> e : ms.getMetrics().entrySet()) {
+                    metrics.put("Stripe." + i + "." + e.getKey(), e.getValue());
+
+                    // collect the stripe gauges once, so that reading the aggregates doesn't rebuild stripe metric maps
+                    if (e.getValue() instanceof Gauge<?> gauge) {
+                        switch (e.getKey()) {
+                            case "IssuedCount" -> issuedCounts.add(gauge);
+                            case "ThresholdUsage" -> thresholdUsages.add(gauge);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!issuedCounts.isEmpty()) {
+            Gauge<?>[] gauges = issuedCounts.toArray(new Gauge<?>[0]);
+            metrics.put("IssuedCount", (Gauge<Long>) () -> sum(gauges));
+        }
+
+        if (!thresholdUsages.isEmpty()) {
+            Gauge<?>[] gauges = thresholdUsages.toArray(new Gauge<?>[0]);
+            metrics.put("ThresholdUsage", (Gauge<Double>) () -> max(gauges));
+        }
+
+        return metrics;
+    }
+
+    private static long sum(Gauge<?>[] gauges) {
+        long count = 0;
+        for (Gauge<?> gauge : gauges) {
+            count += ((Number) gauge.getValue()).longValue();
+        }
+        return count;
+    }
+
+    private static double max(Gauge<?>[] gauges) {
+        double max = 0.;
+        for (Gauge<?> gauge : gauges) {
+            max = Math.max(max, ((Number) gauge.getValue()).doubleValue());
+        }
+        return max;
+    }
+
+    private TransactionIdGenerator generator() {
         int generatorIndex = (int) (Thread.currentThread().getId() % size);
-        return generators[generatorIndex].nextId();
+        return generators[generatorIndex];
     }
 }
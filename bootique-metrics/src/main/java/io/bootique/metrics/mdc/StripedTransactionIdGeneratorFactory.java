@@ -0,0 +1,59 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * A {@link TransactionIdGeneratorFactory} that produces a {@link StripedTransactionIdGenerator} with a fixed number of
+ * {@link SafeTransactionIdGenerator} stripes.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a generator with a fixed number of stripes picked by thread ID.")
+@JsonTypeName("striped")
+public class StripedTransactionIdGeneratorFactory implements TransactionIdGeneratorFactory {
+
+    private Integer stripes;
+    private Integer counterStart;
+
+    @Override
+    public TransactionIdGenerator createGenerator() {
+        int stripes = this.stripes != null ? this.stripes : Math.min(Runtime.getRuntime().availableProcessors(), 4);
+        if (stripes < 1) {
+            throw new IllegalArgumentException("'stripes' must be positive: " + stripes);
+        }
+
+        return counterStart != null
+                ? new StripedTransactionIdGenerator(stripes, () -> new SafeTransactionIdGenerator(counterStart))
+                : new StripedTransactionIdGenerator(stripes);
+    }
+
+    @BQConfigProperty("A number of stripes. The default is the number of CPUs, but no more than 4.")
+    public void setStripes(Integer stripes) {
+        this.stripes = stripes;
+    }
+
+    @BQConfigProperty("The initial value of each stripe counter. The default is the min int value.")
+    public void setCounterStart(Integer counterStart) {
+        this.counterStart = counterStart;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A "Snowflake"-style {@link TransactionIdGenerator} producing IDs that are ordered by time and are unique across
+ * nodes, as long as each node is assigned a distinct node ID. Each ID is a 64-bit value encoded as 16 fixed-width
+ * hex chars, so the String IDs sort in the same order as the values. The value layout (from the high bits) is:
+ * <ul>
+ * <li>1 bit - always zero</li>
+ * <li>41 bits - milliseconds since 2020-01-01T00:00:00Z (enough till 2089)</li>
+ * <li>10 bits - node ID (0..1023)</li>
+ * <li>12 bits - sequence within a millisecond (0..4095)</li>
+ * </ul>
+ * The timestamp and the sequence are updated together with a single CAS, so the generator is lock-free. When more
+ * than 4096 IDs are requested within a millisecond, or when the system clock goes backwards, the generator doesn't
+ * wait, but instead continues the sequence "borrowing" from the following milliseconds. So the IDs are always
+ * monotonically increasing on a given node, and their timestamps may only slightly run ahead of the clock under
+ * extreme load.
+ * <p>
+ * The generator state is seeded from the clock when the generator is created, so uniqueness across restarts with
+ * the same node ID relies on the clock moving past the last timestamp issued by the previous instance before the new
+ * instance is created. This holds unless the clock is stepped back, or the previous instance ran ahead of the clock
+ * by more than the restart time. To guard against that, the previous instance {@link #getLastTimestamp()} can be
+ * persisted on shutdown and passed to the {@link #TimeOrderedTransactionIdGenerator(int, long)} constructor of the
+ * next one.
+ *
+ * @since 4.0
+ */
+public class TimeOrderedTransactionIdGenerator implements TransactionIdGenerator {
+
+    // 2020-01-01T00:00:00Z
+    static final long EPOCH = 1577836800000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    static final int STRING_LENGTH = HexEncoder.LONG_LEN;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    // the next unused "timestamp + sequence" value, i.e. the ID without the node bits
+    private final AtomicLong next;
+
+    /**
+     * Creates a generator with a random node ID. Use it only when the IDs don't need to be unique across nodes, as
+     * with just 10 bits for the node ID, collisions are fairly likely.
+     */
+    public TimeOrderedTransactionIdGenerator() {
+        this(ThreadLocalRandom.current().nextInt(MAX_NODE_ID + 1));
+    }
+
+    public TimeOrderedTransactionIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a generator that will only issue IDs with timestamps after the specified one, which would normally be
+     * the {@link #getLastTimestamp()} of the previous generator instance with the same node ID.
+     */
+    public TimeOrderedTransactionIdGenerator(int nodeId, long lastTimestamp) {
+        this(nodeId, lastTimestamp, System::currentTimeMillis);
+    }
+
+    TimeOrderedTransactionIdGenerator(int nodeId, LongSupplier clock) {
+        this(nodeId, EPOCH - 1, clock);
+    }
+
+    TimeOrderedTransactionIdGenerator(int nodeId, long lastTimestamp, LongSupplier clock) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be in the range 0.." + MAX_NODE_ID + ". Got: " + nodeId);
+        }
+
+        this.nodeBits = ((long) nodeId) << SEQUENCE_BITS;
+        this.clock = clock;
+        long start = Math.max(clock.getAsLong(), lastTimestamp + 1);
+        this.next = new AtomicLong(Math.max(start - EPOCH, 0) << SEQUENCE_BITS);
+    }
+
+    /**
+     * Returns a timestamp in milliseconds since the Java epoch, such that this generator didn't issue or reserve any
+     * IDs with greater timestamps so far. Can be persisted on shutdown to seed the next generator with the same node
+     * ID.
+     */
+    public long getLastTimestamp() {
+        return ((next.get() - 1) >> SEQUENCE_BITS) + EPOCH;
+    }
+
+    /**
+     * Returns an ID timestamp as milliseconds since the Java epoch. Can be used to find the time of a transaction
+     * from its ID.
+     */
+    public static long getTimestamp(String id) {
+        return (Long.parseUnsignedLong(id, 16) >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    /**
+     * Returns the smallest possible ID for a given time in milliseconds since the Java epoch. Can be used to define
+     * time ranges when searching for IDs in a sorted index.
+     */
+    public static String getMinId(long timestamp) {
+        byte[] bytes = new byte[STRING_LENGTH];
+        HexEncoder.writeLong((timestamp - EPOCH) << (NODE_BITS + SEQUENCE_BITS), bytes, 0);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String nextId() {
+        byte[] bytes = new byte[STRING_LENGTH];
+        HexEncoder.writeLong(toValue(reserve(1)), bytes, 0);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        if (offset < 0 || offset > buffer.length - STRING_LENGTH) {
+            throw new ArrayIndexOutOfBoundsException("Not enough space for the ID of length " + STRING_LENGTH + " at offset " + offset);
+        }
+
+        return HexEncoder.writeLong(toValue(reserve(1)), buffer, offset);
+    }
+
+    @Override
+    public int nextId(CharBuffer buffer) {
+        if (buffer.remaining() < STRING_LENGTH) {
+            throw new BufferOverflowException();
+        }
+
+        return HexEncoder.writeLong(toValue(reserve(1)), buffer);
+    }
+
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        if (buffer.remaining() < STRING_LENGTH) {
+            throw new BufferOverflowException();
+        }
+
+        return HexEncoder.writeLong(toValue(reserve(1)), buffer);
+    }
+
+    @Override
+    public TransactionId nextTransactionId() {
+        return new TransactionId(TransactionId.LONG, 0L, toValue(reserve(1)));
+    }
+
+    /**
+     * Reserves a block of consecutive IDs. Large blocks will make the IDs run ahead of the clock (by 1 ms per 4096
+     * IDs), so the block size should be reasonably small.
+     */
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        BaseIdBlock.checkSize(size);
+        return new Block(this, reserve(size), size);
+    }
+
+    // returns the first of the reserved "timestamp + sequence" values
+    private long reserve(int size) {
+        while (true) {
+            long current = next.get();
+            long start = Math.max(current, (clock.getAsLong() - EPOCH) << SEQUENCE_BITS);
+            if (next.compareAndSet(current, start + size)) {
+                return start;
+            }
+        }
+    }
+
+    // inserts node ID bits between the timestamp and the sequence
+    private long toValue(long timestampAndSequence) {
+        return ((timestampAndSequence & ~SEQUENCE_MASK) << NODE_BITS) | nodeBits | (timestampAndSequence & SEQUENCE_MASK);
+    }
+
+    static class Block extends BaseIdBlock {
+
+        private final TimeOrderedTransactionIdGenerator generator;
+        private final long start;
+
+        Block(TimeOrderedTransactionIdGenerator generator, long start, int size) {
+            super(size);
+            this.generator = generator;
+            this.start = start;
+        }
+
+        @Override
+        public String nextId() {
+            byte[] bytes = new byte[STRING_LENGTH];
+            HexEncoder.writeLong(value(), bytes, 0);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public int nextId(char[] buffer, int offset) {
+            if (offset < 0 || offset > buffer.length - STRING_LENGTH) {
+                throw new ArrayIndexOutOfBoundsException("Not enough space for the ID of length " + STRING_LENGTH + " at offset " + offset);
+            }
+
+            return HexEncoder.writeLong(value(), buffer, offset);
+        }
+
+        @Override
+        public int nextId(CharBuffer buffer) {
+            if (buffer.remaining() < STRING_LENGTH) {
+                throw new BufferOverflowException();
+            }
+
+            return HexEncoder.writeLong(value(), buffer);
+        }
+
+        @Override
+        public int nextId(ByteBuffer buffer) {
+            if (buffer.remaining() < STRING_LENGTH) {
+                throw new BufferOverflowException();
+            }
+
+            return HexEncoder.writeLong(value(), buffer);
+        }
+
+        private long value() {
+            return generator.toValue(start + take());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * A {@link TransactionIdGeneratorFactory} that produces a {@link TimeOrderedTransactionIdGenerator}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a generator of time-ordered IDs that are unique across nodes.")
+@JsonTypeName("time")
+public class TimeOrderedTransactionIdGeneratorFactory implements TransactionIdGeneratorFactory {
+
+    private Integer nodeId;
+
+    @Override
+    public TransactionIdGenerator createGenerator() {
+        return nodeId != null
+                ? new TimeOrderedTransactionIdGenerator(nodeId)
+                : new TimeOrderedTransactionIdGenerator();
+    }
+
+    @BQConfigProperty("A unique ID of this app node (or worker) between 0 and 1023. If not set, a random ID is used, " +
+            "and the uniqueness of transaction IDs across nodes is not guaranteed.")
+    public void setNodeId(Integer nodeId) {
+        this.nodeId = nodeId;
+    }
+}
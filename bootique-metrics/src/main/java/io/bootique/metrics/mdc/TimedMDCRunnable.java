@@ -0,0 +1,56 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+// an MDCRunnable variant that also records the queue and run time of the task. The transaction ID may be null, if
+// the task needs no MDC handling
+class TimedMDCRunnable implements Runnable {
+
+    private final Runnable delegate;
+    private final TransactionId txId;
+    private final ExecutorTimers timers;
+    private final long submitted;
+
+    public TimedMDCRunnable(Runnable delegate, TransactionId txId, ExecutorTimers timers) {
+        this.delegate = delegate;
+        this.txId = txId;
+        this.timers = timers;
+        this.submitted = System.nanoTime();
+    }
+
+    @Override
+    public void run() {
+        long started = timers.taskStarted(submitted);
+        try {
+            if (txId == null || TransactionIdMDC.hasId()) {
+                delegate.run();
+                return;
+            }
+
+            TransactionIdMDC.setId(txId);
+            try {
+                delegate.run();
+            } finally {
+                TransactionIdMDC.clearId();
+            }
+        } finally {
+            timers.taskFinished(started);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * A transaction ID in a compact binary form, i.e. a pair of longs - an optional 8-char ASCII base and a counter or a
+ * timestamp value. Unlike a String ID, creating a binary ID doesn't involve any encoding, and the text form is only
+ * rendered the first time {@link #toString()} is called, and then cached. The text form is identical to the IDs
+ * produced by {@link TransactionIdGenerator#nextId()} of the same generator. IDs obtained from elsewhere as Strings
+ * can be wrapped with {@link #of(String)}.
+ *
+ * @see TransactionIdGenerator#nextTransactionId()
+ * @see TransactionIdMDC#setId(TransactionId)
+ * @since 4.0
+ */
+public final class TransactionId {
+
+    // the base followed by 8 hex chars of an int counter
+    static final int BASE_INT = 1;
+
+    // the base followed by 16 hex chars of a long counter
+    static final int BASE_LONG = 2;
+
+    // just 16 hex chars of a long value
+    static final int LONG = 3;
+
+    // an arbitrary String
+    static final int TEXT = 4;
+
+    private static final int BASE_LEN = 8;
+
+    private final int format;
+    private final long base;
+    private final long value;
+
+    // lazily rendered text form. Benign data race, as Strings are immutable, and at worst the ID would be rendered
+    // more than once
+    private String string;
+
+    TransactionId(int format, long base, long value) {
+        this.format = format;
+        this.base = base;
+        this.value = value;
+    }
+
+    private TransactionId(String string) {
+        this.format = TEXT;
+        this.base = 0;
+        this.value = 0;
+        this.string = string;
+    }
+
+    /**
+     * Wraps a String ID, e.g. the one received from upstream.
+     */
+    public static TransactionId of(String id) {
+        return new TransactionId(Objects.requireNonNull(id));
+    }
+
+    // packs an 8-char ASCII base to a long, first char in the high byte
+    static long packBase(byte[] base) {
+        if (base.length != BASE_LEN) {
+            throw new IllegalArgumentException("Expected a base of " + BASE_LEN + " chars. Got: " + base.length);
+        }
+
+        long packed = 0;
+        for (byte b : base) {
+            packed = (packed << 8) | (b & 0xFF);
+        }
+        return packed;
+    }
+
+    /**
+     * Returns the length of the ID text form.
+     */
+    public int length() {
+        return switch (format) {
+            case BASE_INT -> BASE_LEN + HexEncoder.INT_LEN;
+            case BASE_LONG -> BASE_LEN + HexEncoder.LONG_LEN;
+            case LONG -> HexEncoder.LONG_LEN;
+            default -> string.length();
+        };
+    }
+
+    // returns a char of the text form without rendering the String
+    char charAt(int index) {
+        return switch (format) {
+            case BASE_INT -> index < BASE_LEN
+                    ? baseCharAt(index)
+                    : HexEncoder.charAt(value, HexEncoder.INT_LEN, index - BASE_LEN);
+            case BASE_LONG -> index < BASE_LEN
+                    ? baseCharAt(index)
+                    : HexEncoder.charAt(value, HexEncoder.LONG_LEN, index - BASE_LEN);
+            case LONG -> HexEncoder.charAt(value, HexEncoder.LONG_LEN, index);
+            default -> string.charAt(index);
+        };
+    }
+
+    private char baseCharAt(int index) {
+        return (char) ((base >>> (56 - 8 * index)) & 0xFF);
+    }
+
+    /**
+     * Returns true if the ID text form was already created, so calling {@link #toString()} is essentially free.
+     */
+    public boolean isRendered() {
+        return string != null;
+    }
+
+    /**
+     * Returns true if this ID wraps an externally produced String and has no binary form.
+     */
+    boolean isText() {
+        return format == TEXT;
+    }
+
+    /**
+     * Writes the ID text to the provided char array starting at the specified offset, without rendering a String.
+     *
+     * @return the number of chars written
+     */
+    public int writeTo(char[] buffer, int offset) {
+        int len = length();
+        if (offset < 0 || offset > buffer.length - len) {
+            throw new ArrayIndexOutOfBoundsException("Not enough space for the ID of length " + len + " at offset " + offset);
+        }
+
+        switch (format) {
+            case BASE_INT:
+                writeBase(buffer, offset);
+                return BASE_LEN + HexEncoder.writeInt((int) value, buffer, offset + BASE_LEN);
+            case BASE_LONG:
+                writeBase(buffer, offset);
+                return BASE_LEN + HexEncoder.writeLong(value, buffer, offset + BASE_LEN);
+            case LONG:
+                return HexEncoder.writeLong(value, buffer, offset);
+            default:
+                string.getChars(0, len, buffer, offset);
+                return len;
+        }
+    }
+
+    /**
+     * Writes the ID text to the provided buffer starting at its current position, without rendering a String.
+     *
+     * @return the number of chars written
+     */
+    public int writeTo(CharBuffer buffer) {
+        int len = length();
+        if (buffer.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+
+        switch (format) {
+            case BASE_INT:
+                writeBase(buffer);
+                return BASE_LEN + HexEncoder.writeInt((int) value, buffer);
+            case BASE_LONG:
+                writeBase(buffer);
+                return BASE_LEN + HexEncoder.writeLong(value, buffer);
+            case LONG:
+                return HexEncoder.writeLong(value, buffer);
+            default:
+                buffer.put(string);
+                return len;
+        }
+    }
+
+    /**
+     * Writes the ID text to the provided buffer as US-ASCII bytes starting at its current position, without rendering
+     * a String.
+     *
+     * @return the number of bytes written
+     */
+    public int writeTo(ByteBuffer buffer) {
+        int len = length();
+        if (buffer.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+
+        switch (format) {
+            case BASE_INT:
+                writeBase(buffer);
+                return BASE_LEN + HexEncoder.writeInt((int) value, buffer);
+            case BASE_LONG:
+                writeBase(buffer);
+                return BASE_LEN + HexEncoder.writeLong(value, buffer);
+            case LONG:
+                return HexEncoder.writeLong(value, buffer);
+            default:
+                buffer.put(string.getBytes(StandardCharsets.US_ASCII));
+                return len;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String s = string;
+        if (s == null) {
+            string = s = render();
+        }
+
+        return s;
+    }
+
+    private String render() {
+        byte[] bytes = new byte[length()];
+        switch (format) {
+            case BASE_INT:
+                writeBase(bytes);
+                HexEncoder.writeInt((int) value, bytes, BASE_LEN);
+                break;
+            case BASE_LONG:
+                writeBase(bytes);
+                HexEncoder.writeLong(value, bytes, BASE_LEN);
+                break;
+            default:
+                HexEncoder.writeLong(value, bytes, 0);
+                break;
+        }
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private void writeBase(byte[] buffer) {
+        for (int i = 0; i < BASE_LEN; i++) {
+            buffer[i] = (byte) (base >>> (56 - 8 * i));
+        }
+    }
+
+    private void writeBase(char[] buffer, int offset) {
+        for (int i = 0; i < BASE_LEN; i++) {
+            buffer[offset + i] = (char) ((base >>> (56 - 8 * i)) & 0xFF);
+        }
+    }
+
+    // not using ByteBuffer.putLong(..), as the result would depend on the buffer byte order
+    private void writeBase(ByteBuffer buffer) {
+        for (int i = 0; i < BASE_LEN; i++) {
+            buffer.put((byte) (base >>> (56 - 8 * i)));
+        }
+    }
+
+    private void writeBase(CharBuffer buffer) {
+        for (int i = 0; i < BASE_LEN; i++) {
+            buffer.put((char) ((base >>> (56 - 8 * i)) & 0xFF));
+        }
+    }
+
+    /**
+     * Binary IDs are compared by value without rendering them, IDs wrapping a String - by text. Note that a binary ID
+     * is never equal to a String-based ID, even if they have the same text form.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof TransactionId)) {
+            return false;
+        }
+
+        TransactionId that = (TransactionId) o;
+        if (format != that.format) {
+            return false;
+        }
+
+        return format == TEXT
+                ? string.equals(that.string)
+                : base == that.base && value == that.value;
+    }
+
+    @Override
+    public int hashCode() {
+        return format == TEXT
+                ? string.hashCode()
+                : 31 * Long.hashCode(base) + Long.hashCode(value);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * A block of transaction IDs reserved in advance via {@link TransactionIdGenerator#reserveIds(int)}. The IDs are
+ * handed out locally, without touching the generator shared state. A block is not thread-safe and is intended to be
+ * used by a single thread, e.g. a batch job worker tagging a large number of records. The IDs have the same format as
+ * the IDs produced by the generator directly.
+ *
+ * @since 4.0
+ */
+public interface TransactionIdBlock {
+
+    /**
+     * Returns the number of IDs left in the block.
+     */
+    int remaining();
+
+    /**
+     * Returns the next ID from the block.
+     *
+     * @throws java.util.NoSuchElementException if the block is exhausted
+     */
+    String nextId();
+
+    /**
+     * Writes the next ID from the block to the provided char array starting at the specified offset.
+     *
+     * @return the number of chars written
+     * @throws java.util.NoSuchElementException if the block is exhausted
+     */
+    int nextId(char[] buffer, int offset);
+
+    /**
+     * Writes the next ID from the block to the provided buffer, starting at its current position.
+     *
+     * @return the number of chars written
+     * @throws java.util.NoSuchElementException if the block is exhausted
+     */
+    int nextId(CharBuffer buffer);
+
+    /**
+     * Writes the next ID from the block to the provided buffer as US-ASCII bytes, starting at the buffer current
+     * position.
+     *
+     * @return the number of bytes written
+     * @throws java.util.NoSuchElementException if the block is exhausted
+     */
+    int nextId(ByteBuffer buffer);
+}
@@ -19,6 +19,8 @@
 
 package io.bootique.metrics.mdc;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 
 /**
  * Generates fast and mostly unique IDs for the purpose of "business transactions" correlation in the logs. A business
@@ -29,4 +31,72 @@ package io.bootique.metrics.mdc;
 public interface TransactionIdGenerator {
 
     String nextId();
+
+    /**
+     * Writes the next ID to the provided char array starting at the specified offset. Implementors should override
+     * this method to write the ID without creating any intermediate objects. The default implementation copies the
+     * chars of the String produced by {@link #nextId()}.
+     *
+     * @return the number of chars written
+     * @since 4.0
+     */
+    default int nextId(char[] buffer, int offset) {
+        String id = nextId();
+        id.getChars(0, id.length(), buffer, offset);
+        return id.length();
+    }
+
+    /**
+     * Writes the next ID to the provided buffer, starting at its current position. Implementors should override
+     * this method to write the ID without creating any intermediate objects.
+     *
+     * @return the number of chars written
+     * @since 4.0
+     */
+    default int nextId(CharBuffer buffer) {
+        String id = nextId();
+        buffer.put(id);
+        return id.length();
+    }
+
+    /**
+     * Writes the next ID to the provided buffer as US-ASCII bytes, starting at the buffer current position.
+     * Implementors should override this method to write the ID without creating any intermediate objects.
+     *
+     * @return the number of bytes written
+     * @since 4.0
+     */
+    default int nextId(ByteBuffer buffer) {
+        String id = nextId();
+        int len = id.length();
+        for (int i = 0; i < len; i++) {
+            buffer.put((byte) id.charAt(i));
+        }
+        return len;
+    }
+
+    /**
+     * Returns the next ID in a compact binary form that is only rendered as text when needed. Implementors should
+     * override this method to avoid creating a String. The default implementation wraps the String produced by
+     * {@link #nextId()}.
+     *
+     * @since 4.0
+     */
+    default TransactionId nextTransactionId() {
+        return TransactionId.of(nextId());
+    }
+
+    /**
+     * Reserves a block of IDs that can be handed out by the calling thread without touching the generator shared
+     * state. Implementors should override this method to claim the whole block with a single atomic operation. The
+     * default implementation returns a block that calls {@link #nextId()} for each ID, so it provides no performance
+     * benefit. Implementations may limit the max size of the block.
+     *
+     * @param size the number of IDs in the block
+     * @since 4.0
+     */
+    default TransactionIdBlock reserveIds(int size) {
+        BaseIdBlock.checkSize(size);
+        return new GeneratorIdBlock(this, size);
+    }
 }
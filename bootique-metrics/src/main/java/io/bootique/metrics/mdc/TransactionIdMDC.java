@@ -22,15 +22,37 @@ package io.bootique.metrics.mdc;
 import org.slf4j.MDC;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
- * Manages "txid" key in the SLF4J MDC.
+ * Manages "txid" key in the SLF4J MDC. Besides String IDs, supports binary {@link TransactionId}s that are propagated
+ * between threads as is, and may be rendered to text lazily. SLF4J MDC can only store Strings, so by default a binary
+ * ID is rendered and placed in the MDC as soon as it is set. But if {@link TransactionIdTurboFilter} is installed in
+ * Logback, the rendering is deferred until the first log event that is actually going to be logged, so the
+ * transactions that don't log anything never create a String ID.
  */
 public class TransactionIdMDC {
 
     public static final String MDC_KEY = "txid";
 
+    // marks a binary ID that is not yet placed in the MDC. Kept in the MDC itself, so that clearing the MDC directly
+    // (e.g. with MDC.clear()) discards the pending ID as well
+    static final String PENDING_MDC_KEY = MDC_KEY + ".pending";
+
+    // the last binary ID set for the current thread. A pending ID is current as long as the MDC holds the thread's
+    // pending marker instance and has no String ID. Once placed in the MDC, the ID is current only while the MDC
+    // holds the same String instance, so an ID removed from the MDC directly is gone for good. Only populated by the
+    // binary setId(..), so threads that never set a binary ID (and the log-time hooks on them) don't allocate state
+    private static final ThreadLocal<BinaryId> BINARY_ID = new ThreadLocal<>();
+
+    // set when there's a log-time hook to render the pending IDs
+    static volatile boolean lazyRendering;
+
     /**
      * Wraps a runnable with a code that initializes SLF4J MDC with the current transaction ID, and clears it after
      * the call. Intended to wrap parameters to ExecutorService.submit(..), CompletableFuture.runAsync(..) or similar
@@ -39,7 +61,11 @@ public class TransactionIdMDC {
      * @since 3.0
      */
     public static Runnable runnable(Runnable runnable) {
-        String txId = getId();
+        if (runnable instanceof MDCRunnable) {
+            return runnable;
+        }
+
+        TransactionId txId = getTransactionId();
         return txId != null ? new MDCRunnable(runnable, txId) : runnable;
     }
 
@@ -51,8 +77,11 @@ public class TransactionIdMDC {
      * @since 3.0
      */
     public static <T> Callable<T> callable(Callable<T> callable) {
-        String txId = getId();
-        return txId != null ? new MDCCallable(callable, txId) : callable;
+        return callable instanceof MDCCallable ? callable : callable(callable, getTransactionId());
+    }
+
+    static <T> Callable<T> callable(Callable<T> callable, TransactionId txId) {
+        return txId != null && !(callable instanceof MDCCallable) ? new MDCCallable<>(callable, txId) : callable;
     }
 
     /**
@@ -62,16 +91,135 @@ public class TransactionIdMDC {
      * @since 3.0
      */
     public static <T> Supplier<T> supplier(Supplier<T> supplier) {
-        String txId = getId();
+        if (supplier instanceof MDCSupplier) {
+            return supplier;
+        }
+
+        TransactionId txId = getTransactionId();
         return txId != null ? new MDCSupplier<>(supplier, txId) : supplier;
     }
 
+    /**
+     * Wraps a runnable with a code that initializes SLF4J MDC with the current transaction ID, and clears it after
+     * the call, and also records the time the task spent in the executor queue and the task run time. Unlike
+     * {@link #runnable(Runnable)}, always wraps the runnable, even if there's no current transaction ID.
+     *
+     * @since 4.0
+     */
+    public static Runnable runnable(Runnable runnable, ExecutorTimers timers) {
+        TransactionId txId = runnable instanceof MDCRunnable ? null : getTransactionId();
+        return new TimedMDCRunnable(runnable, txId, timers);
+    }
+
+    /**
+     * Wraps a callable with a code that initializes SLF4J MDC with the current transaction ID, and clears it after
+     * the call, and also records the time the task spent in the executor queue and the task run time. Unlike
+     * {@link #callable(Callable)}, always wraps the callable, even if there's no current transaction ID.
+     *
+     * @since 4.0
+     */
+    public static <T> Callable<T> callable(Callable<T> callable, ExecutorTimers timers) {
+        return callable(callable, getTransactionId(), timers);
+    }
+
+    static <T> Callable<T> callable(Callable<T> callable, TransactionId txId, ExecutorTimers timers) {
+        return new TimedMDCCallable<>(callable, callable instanceof MDCCallable ? null : txId, timers);
+    }
+
+    /**
+     * Wraps a supplier with a code that initializes SLF4J MDC with the current transaction ID, and clears it after
+     * the call, and also records the time the task spent in the executor queue and the task run time. Unlike
+     * {@link #supplier(Supplier)}, always wraps the supplier, even if there's no current transaction ID.
+     *
+     * @since 4.0
+     */
+    public static <T> Supplier<T> supplier(Supplier<T> supplier, ExecutorTimers timers) {
+        TransactionId txId = supplier instanceof MDCSupplier ? null : getTransactionId();
+        return new TimedMDCSupplier<>(supplier, txId, timers);
+    }
+
+    /**
+     * Wraps a function, so that it would be applied with the current transaction ID. Intended for parallel streams,
+     * e.g. {@code list.parallelStream().map(TransactionIdMDC.function(f))}, whose elements are processed in the
+     * ForkJoinPool worker threads. The worker's own transaction ID (if any) is restored after each call.
+     *
+     * @since 4.0
+     */
+    public static <T, R> Function<T, R> function(Function<T, R> function) {
+        TransactionId txId = getTransactionId();
+        return txId != null ? new MDCFunction<>(function, txId) : function;
+    }
+
+    /**
+     * Wraps a consumer, so that it would be called with the current transaction ID. Intended for parallel streams,
+     * e.g. {@code list.parallelStream().forEach(TransactionIdMDC.consumer(c))}, whose elements are processed in the
+     * ForkJoinPool worker threads. The worker's own transaction ID (if any) is restored after each call.
+     *
+     * @since 4.0
+     */
+    public static <T> Consumer<T> consumer(Consumer<T> consumer) {
+        TransactionId txId = getTransactionId();
+        return txId != null ? new MDCConsumer<>(consumer, txId) : consumer;
+    }
+
+    /**
+     * Creates a ForkJoinPool that propagates transaction ID of the submitting thread to the submitted tasks.
+     *
+     * @since 4.0
+     */
+    public static ForkJoinPool forkJoinPool(int parallelism) {
+        return new MDCForkJoinPool(parallelism);
+    }
+
+    /**
+     * Wraps an executor, so that each task submitted to it would run with the transaction ID of the thread that
+     * submitted the task.
+     *
+     * @since 4.0
+     */
+    public static ExecutorService executorService(ExecutorService executor) {
+        return executor instanceof MDCExecutorService ? executor : new MDCExecutorService(executor);
+    }
+
+    /**
+     * Wraps an executor, so that each task submitted to it would run with the transaction ID of the thread that
+     * submitted the task, and the task queue time and run time would be recorded in the provided timers.
+     *
+     * @since 4.0
+     */
+    public static ExecutorService executorService(ExecutorService executor, ExecutorTimers timers) {
+        return new MDCExecutorService(executor, timers);
+    }
+
+    /**
+     * Wraps a scheduled executor, so that each task submitted or scheduled with it would run with the transaction ID
+     * of the thread that submitted the task.
+     *
+     * @since 4.0
+     */
+    public static ScheduledExecutorService scheduledExecutorService(ScheduledExecutorService executor) {
+        return executor instanceof MDCScheduledExecutorService ? executor : new MDCScheduledExecutorService(executor);
+    }
+
+    /**
+     * Wraps a scheduled executor, so that each task submitted or scheduled with it would run with the transaction ID
+     * of the thread that submitted the task, and the queue time and run time of the tasks submitted for immediate
+     * execution would be recorded in the provided timers.
+     *
+     * @since 4.0
+     */
+    public static ScheduledExecutorService scheduledExecutorService(ScheduledExecutorService executor, ExecutorTimers timers) {
+        return new MDCScheduledExecutorService(executor, timers);
+    }
+
     /**
      * Initializes SLF4J MDC with the current transaction ID.
      *
      * @since 3.0
      */
     public static void setId(String transactionId) {
+        BINARY_ID.remove();
+        MDC.remove(PENDING_MDC_KEY);
         if (transactionId == null) {
             MDC.remove(MDC_KEY);
         } else {
@@ -80,14 +228,144 @@ public class TransactionIdMDC {
     }
 
     /**
-     * Returns transaction ID for the current thread.
+     * Sets a binary transaction ID for the current thread. If {@link TransactionIdTurboFilter} is installed, and the
+     * ID is not yet rendered to text, the ID is placed in the MDC lazily, right before the first log event of the
+     * current thread. Otherwise, it is rendered and placed in the MDC immediately.
+     *
+     * @since 4.0
+     */
+    public static void setId(TransactionId transactionId) {
+        if (transactionId == null) {
+            clearId();
+            return;
+        }
+
+        // a text ID is just a wrapped String, so keep it in the MDC as such instead of tracking it as binary state
+        if (transactionId.isText()) {
+            setId(transactionId.toString());
+            return;
+        }
+
+        BinaryId binary = BINARY_ID.get();
+        if (binary == null) {
+            binary = new BinaryId();
+            BINARY_ID.set(binary);
+        }
+
+        binary.id = transactionId;
+        if (lazyRendering && !transactionId.isRendered()) {
+            MDC.remove(MDC_KEY);
+            MDC.put(PENDING_MDC_KEY, binary.pendingMarker);
+        } else {
+            MDC.remove(PENDING_MDC_KEY);
+            MDC.put(MDC_KEY, transactionId.toString());
+        }
+    }
+
+    /**
+     * Returns transaction ID for the current thread. If the current ID is binary and hasn't been rendered yet, it is
+     * rendered and placed in the MDC. An ID bound via {@link ScopedTransactionId} takes precedence over the MDC.
      *
      * @since 3.0
      */
     public static String getId() {
-        return MDC.get(MDC_KEY);
+        TransactionId scoped = ScopedTransactionId.get();
+        if (scoped != null) {
+            return scoped.toString();
+        }
+
+        String id = MDC.get(MDC_KEY);
+        if (id != null) {
+            return id;
+        }
+
+        BinaryId binary = pendingId();
+        return binary != null ? binary.render() : null;
+    }
+
+    /**
+     * Returns transaction ID for the current thread in a binary form without rendering it. If the ID was set as a
+     * String, it is wrapped in a new {@link TransactionId}. An ID bound via {@link ScopedTransactionId} takes
+     * precedence over the MDC.
+     *
+     * @since 4.0
+     */
+    public static TransactionId getTransactionId() {
+        TransactionId scoped = ScopedTransactionId.get();
+        if (scoped != null) {
+            return scoped;
+        }
+
+        TransactionId binary = getCurrentBinaryId();
+        if (binary != null) {
+            return binary;
+        }
+
+        String id = MDC.get(MDC_KEY);
+        return id != null ? TransactionId.of(id) : null;
     }
 
+    // returns the thread binary ID if it is still the current one, or null if the current ID (if any) is a String
+    static TransactionId getCurrentBinaryId() {
+        String id = MDC.get(MDC_KEY);
+        if (id == null) {
+            BinaryId pending = pendingId();
+            return pending != null ? pending.id : null;
+        }
+
+        BinaryId binary = BINARY_ID.get();
+        if (binary == null) {
+            return null;
+        }
+
+        // an ID placed in the MDC is always rendered, so toString() is cheap and returns the same String instance
+        return id != null && binary.id.toString() == id ? binary.id : null;
+    }
+
+    /**
+     * Places a scoped or a pending binary ID of the current thread in the MDC. Called from the log-time hooks.
+     */
+    static void renderPendingId() {
+
+        TransactionId scoped = ScopedTransactionId.get();
+        if (scoped != null) {
+            String id = scoped.toString();
+
+            // identity check to avoid redundant MDC writes, as the rendered ID String is cached
+            if (MDC.get(MDC_KEY) != id) {
+                MDC.put(MDC_KEY, id);
+            }
+            return;
+        }
+
+        BinaryId binary = pendingId();
+        if (binary != null) {
+            if (MDC.get(MDC_KEY) == null) {
+                binary.render();
+            } else {
+                // a String ID put in the MDC directly overrides the pending one, so don't log the marker
+                MDC.remove(PENDING_MDC_KEY);
+            }
+        }
+    }
+
+    static boolean hasId() {
+
+        // a binary ID that was placed in the MDC is only current while it is still in the MDC
+        return MDC.get(MDC_KEY) != null || pendingId() != null || ScopedTransactionId.isBound();
+    }
+
+    // returns the thread binary ID if it is pending. The MDC marker is checked first, so that threads without a
+    // pending ID don't touch the ThreadLocal
+    private static BinaryId pendingId() {
+        String marker = MDC.get(PENDING_MDC_KEY);
+        if (marker == null) {
+            return null;
+        }
+
+        BinaryId binary = BINARY_ID.get();
+        return binary != null && binary.pendingMarker == marker ? binary : null;
+    }
 
     /**
      * Removes transaction ID from the logging MDC.
@@ -95,6 +373,22 @@ public class TransactionIdMDC {
      * @since 3.0
      */
     public static void clearId() {
+        BINARY_ID.remove();
         MDC.remove(MDC_KEY);
+        MDC.remove(PENDING_MDC_KEY);
+    }
+
+    private static final class BinaryId {
+
+        // checked by identity, so that a marker copied from another thread's MDC is not mistaken for this thread's
+        final String pendingMarker = new String("pending");
+        TransactionId id;
+
+        String render() {
+            String rendered = id.toString();
+            MDC.remove(PENDING_MDC_KEY);
+            MDC.put(MDC_KEY, rendered);
+            return rendered;
+        }
     }
 }
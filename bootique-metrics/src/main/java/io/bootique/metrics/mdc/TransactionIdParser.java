@@ -0,0 +1,232 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Validates transaction IDs received from upstream (e.g. from a request header assigned by a gateway), so that they
+ * can be reused locally instead of generating new ones, preserving correlation across the hop. An ID is valid if it is
+ * not longer than the configured max length and only contains ASCII letters, digits and chars from the
+ * "{@code -_.:+/=}" set. The check is done in a single pass over the chars without a regex. IDs that match the text
+ * form of the locally generated IDs are converted to a binary {@link TransactionId} in the same pass, without
+ * creating a String. Other valid IDs are wrapped as Strings.
+ *
+ * @see TransactionIdMDC#setId(TransactionId)
+ * @since 4.0
+ */
+public class TransactionIdParser {
+
+    public static final int DEFAULT_MAX_LENGTH = 128;
+
+    private static final int BASE_LEN = 8;
+    private static final int BASE_LONG_LEN = BASE_LEN + HexEncoder.LONG_LEN;
+
+    private static final boolean[] ALLOWED_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ALLOWED_CHARS[c] = true;
+        }
+
+        for (char c = 'A'; c <= 'Z'; c++) {
+            ALLOWED_CHARS[c] = true;
+        }
+
+        for (char c = '0'; c <= '9'; c++) {
+            ALLOWED_CHARS[c] = true;
+        }
+
+        for (char c : "-_.:+/=".toCharArray()) {
+            ALLOWED_CHARS[c] = true;
+        }
+    }
+
+    private final int maxLength;
+
+    public TransactionIdParser() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+
+    public TransactionIdParser(int maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("Max ID length must be positive. Got: " + maxLength);
+        }
+
+        this.maxLength = maxLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns a valid ID, or null if the ID is missing or invalid.
+     */
+    public TransactionId parse(CharSequence id) {
+
+        if (id == null) {
+            return null;
+        }
+
+        int len = id.length();
+        if (len == 0 || len > maxLength) {
+            return null;
+        }
+
+        long base = 0;
+        long value = 0;
+        int hexRun = 0;
+
+        for (int i = 0; i < len; i++) {
+            char c = id.charAt(i);
+            if (c >= ALLOWED_CHARS.length || !ALLOWED_CHARS[c]) {
+                return null;
+            }
+
+            if (i < BASE_LEN) {
+                base = (base << 8) | c;
+            }
+
+            // track the trailing hex digits to detect the IDs produced by the local generators
+            int digit = HexEncoder.digit(c);
+            if (digit >= 0) {
+                value = (value << 4) | digit;
+                hexRun++;
+            } else {
+                value = 0;
+                hexRun = 0;
+            }
+        }
+
+        TransactionId binary = toBinary(len, base, value, hexRun);
+        if (binary != null) {
+            return binary;
+        }
+
+        return TransactionId.of(id.toString());
+    }
+
+    /**
+     * Returns a valid ID from the US-ASCII bytes of the specified array slice, or null if the ID is invalid.
+     */
+    public TransactionId parse(byte[] bytes, int offset, int length) {
+
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+
+        if (length == 0 || length > maxLength) {
+            return null;
+        }
+
+        long base = 0;
+        long value = 0;
+        int hexRun = 0;
+
+        for (int i = 0; i < length; i++) {
+
+            // negative bytes (i.e. non-ASCII) are rejected by the range check
+            byte c = bytes[offset + i];
+            if (c < 0 || !ALLOWED_CHARS[c]) {
+                return null;
+            }
+
+            if (i < BASE_LEN) {
+                base = (base << 8) | c;
+            }
+
+            int digit = HexEncoder.digit(c);
+            if (digit >= 0) {
+                value = (value << 4) | digit;
+                hexRun++;
+            } else {
+                value = 0;
+                hexRun = 0;
+            }
+        }
+
+        TransactionId binary = toBinary(length, base, value, hexRun);
+        if (binary != null) {
+            return binary;
+        }
+
+        return TransactionId.of(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Returns a valid upstream ID, or a new ID from the generator if the upstream ID is missing or invalid.
+     */
+    public TransactionId parseOrGenerate(CharSequence id, TransactionIdGenerator generator) {
+        TransactionId parsed = parse(id);
+        return parsed != null ? parsed : generator.nextTransactionId();
+    }
+
+    /**
+     * Returns a valid upstream ID from the US-ASCII bytes of the specified array slice, or a new ID from the generator
+     * if the upstream ID is invalid.
+     */
+    public TransactionId parseOrGenerate(byte[] bytes, int offset, int length, TransactionIdGenerator generator) {
+        TransactionId parsed = parse(bytes, offset, length);
+        return parsed != null ? parsed : generator.nextTransactionId();
+    }
+
+    /**
+     * Returns true if the ID is present and valid.
+     */
+    public boolean isValid(CharSequence id) {
+
+        if (id == null) {
+            return false;
+        }
+
+        int len = id.length();
+        if (len == 0 || len > maxLength) {
+            return false;
+        }
+
+        for (int i = 0; i < len; i++) {
+            char c = id.charAt(i);
+            if (c >= ALLOWED_CHARS.length || !ALLOWED_CHARS[c]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // the value contains the last 16 hex digits (or fewer, if hexRun is less than 16). The binary form is only
+    // produced if it renders exactly to the original text
+    private static TransactionId toBinary(int len, long base, long value, int hexRun) {
+        switch (len) {
+            case HexEncoder.LONG_LEN:
+                if (hexRun >= HexEncoder.LONG_LEN) {
+                    return new TransactionId(TransactionId.LONG, 0, value);
+                }
+
+                // a "base + int" ID has the same length as a "long" ID
+                return hexRun >= HexEncoder.INT_LEN
+                        ? new TransactionId(TransactionId.BASE_INT, base, (int) value)
+                        : null;
+            case BASE_LONG_LEN:
+                return hexRun >= HexEncoder.LONG_LEN ? new TransactionId(TransactionId.BASE_LONG, base, value) : null;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.slf4j.MDC;
+
+/**
+ * Makes a deterministic keep/drop decision for a transaction based on its ID, so that expensive instrumentation (e.g.
+ * detailed timing or debug logging) can be enabled for a fraction of traffic. The decision only depends on the ID
+ * text and the sampling rate, so all threads and all services sharing a transaction ID make the same decision
+ * without any coordination. Also, with the same ID, a transaction sampled at a lower rate is always sampled at a
+ * higher rate, so nested samplers select nested subsets of traffic.
+ * <p>
+ * The hash is a 64-bit FNV-1a over UTF-16 chars of the ID (i.e. over bytes for ASCII IDs), followed by a MurmurHash3
+ * "fmix64" finalizer. A transaction is sampled if the top 53 bits of the hash, as a fraction of 2^53, are less than
+ * the rate. Binary {@link TransactionId}s are hashed without rendering them to Strings, so sampling doesn't allocate.
+ *
+ * @see TransactionIdMDC
+ * @since 4.0
+ */
+public class TransactionIdSampler {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int FRACTION_BITS = 53;
+
+    private final double rate;
+    private final long threshold;
+
+    /**
+     * Creates a sampler that keeps the specified fraction of transactions.
+     *
+     * @param rate a fraction of transactions to keep, between 0 (none) and 1 (all)
+     */
+    public TransactionIdSampler(double rate) {
+        if (!(rate >= 0. && rate <= 1.)) {
+            throw new IllegalArgumentException("Sampling rate must be between 0 and 1. Got: " + rate);
+        }
+
+        this.rate = rate;
+        this.threshold = (long) Math.ceil(rate * (1L << FRACTION_BITS));
+    }
+
+    /**
+     * Calculates a 64-bit hash of the ID text used for sampling decisions.
+     */
+    public static long hash(CharSequence id) {
+        long h = FNV_OFFSET;
+
+        int len = id.length();
+        for (int i = 0; i < len; i++) {
+            h = (h ^ id.charAt(i)) * FNV_PRIME;
+        }
+
+        return mix(h);
+    }
+
+    /**
+     * Calculates a 64-bit hash of the ID text used for sampling decisions. Produces the same result as
+     * {@link #hash(CharSequence)} for the ID text form, but does not render the ID to a String.
+     */
+    public static long hash(TransactionId id) {
+        if (id.isRendered()) {
+            return hash(id.toString());
+        }
+
+        long h = FNV_OFFSET;
+
+        int len = id.length();
+        for (int i = 0; i < len; i++) {
+            h = (h ^ id.charAt(i)) * FNV_PRIME;
+        }
+
+        return mix(h);
+    }
+
+    // MurmurHash3 "fmix64" finalizer to spread the FNV bits, that are fairly weak for short similar keys
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns whether the current thread transaction should be sampled. Returns false if there's no current
+     * transaction ID.
+     */
+    public boolean sample() {
+
+        TransactionId scoped = ScopedTransactionId.get();
+        if (scoped != null) {
+            return sample(scoped);
+        }
+
+        TransactionId binary = TransactionIdMDC.getCurrentBinaryId();
+        if (binary != null) {
+            return sample(binary);
+        }
+
+        String id = MDC.get(TransactionIdMDC.MDC_KEY);
+        return id != null && sample(id);
+    }
+
+    /**
+     * Returns whether a transaction with the specified ID should be sampled.
+     */
+    public boolean sample(CharSequence id) {
+        return sampleHash(hash(id));
+    }
+
+    /**
+     * Returns whether a transaction with the specified ID should be sampled.
+     */
+    public boolean sample(TransactionId id) {
+        return sampleHash(hash(id));
+    }
+
+    /**
+     * Returns whether a transaction with the specified ID hash, calculated by one of the "hash" methods of this
+     * class, should be sampled. Allows to calculate the hash once, and then check it against multiple samplers.
+     */
+    public boolean sampleHash(long hash) {
+        return (hash >>> (Long.SIZE - FRACTION_BITS)) < threshold;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Marker;
+
+/**
+ * A Logback filter that places a pending binary transaction ID of the current thread in the MDC right before a log
+ * event is created, enabling lazy rendering of the IDs set via {@link TransactionIdMDC#setId(TransactionId)}. It
+ * never affects the logging decision. Requires Logback on the classpath. Can be added with {@link #install()} after
+ * the logging is configured, or declared in the Logback XML config as a "turboFilter".
+ *
+ * @since 4.0
+ */
+public class TransactionIdTurboFilter extends TurboFilter {
+
+    /**
+     * Adds the filter to the Logback context, unless it is already there.
+     *
+     * @return false if SLF4J is not bound to Logback, and the filter was not installed
+     */
+    public static boolean install() {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (!(loggerFactory instanceof LoggerContext)) {
+            return false;
+        }
+
+        LoggerContext context = (LoggerContext) loggerFactory;
+        for (TurboFilter f : context.getTurboFilterList()) {
+            if (f instanceof TransactionIdTurboFilter && f.isStarted()) {
+                return true;
+            }
+        }
+
+        TransactionIdTurboFilter filter = new TransactionIdTurboFilter();
+        filter.setName("bootique-txid");
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+        return true;
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        TransactionIdMDC.lazyRendering = true;
+    }
+
+    @Override
+    public void stop() {
+        // Logback stops the filters on context reset, so the binary IDs go back to eager rendering
+        TransactionIdMDC.lazyRendering = false;
+        super.stop();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+
+        // not calling "logger.isEnabledFor(..)", as it would invoke the turbo filters recursively
+        if (level != null && level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            TransactionIdMDC.renderPendingId();
+        }
+
+        return FilterReply.NEUTRAL;
+    }
+}
@@ -19,47 +19,205 @@
 
 package io.bootique.metrics.mdc;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A {@link TransactionIdGenerator} that needs to be checked for possible overflow by the caller.
  */
-public class UnsafeTransactionIdGenerator implements TransactionIdGenerator {
+public class UnsafeTransactionIdGenerator implements TransactionIdGenerator, MetricSet {
 
     // add some room before overflow happens, so that reset could be processed on background...
     static final int RESET_THRESHOLD = Integer.MAX_VALUE - 1_000_000;
-    static final int COUNTER_STRING_LEN = 8;
+    static final int COUNTER_STRING_LEN = HexEncoder.INT_LEN;
     static final int STRING_LENGTH = 8 + COUNTER_STRING_LEN;
-    static final String PADDING = "00000000";
 
-    private String base;
-    private AtomicInteger counter;
+    // a limit on the ID block size by generators that reset the counter, so that a block would fit in the room left
+    // after the reset threshold
+    static final int MAX_BLOCK_SIZE = 100_000;
+
+    // returned from "tryNextCounter" on a failed CAS. Never a valid counter value, as counters are ints
+    static final long CONTENDED = Long.MIN_VALUE;
+
+    // the base is pure ASCII, so storing it as bytes and as chars to write to either kind of buffer without conversion
+    private final byte[] baseBytes;
+    private final char[] baseChars;
+    private final long baseBits;
+    private final int counterStart;
+    private final AtomicInteger counter;
+
+    // only updated on the contention path
+    private final LongAdder casFailures;
 
     public UnsafeTransactionIdGenerator(int counterStart) {
-        byte[] randomBytes = new byte[5];
-        new Random().nextBytes(randomBytes);
-        String base = Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
+        String base = randomBase();
 
-        this.base = base + "-";
+        this.baseBytes = base.getBytes(StandardCharsets.US_ASCII);
+        this.baseChars = base.toCharArray();
+        this.baseBits = TransactionId.packBase(baseBytes);
+        this.counterStart = counterStart;
         this.counter = new AtomicInteger(counterStart);
+        this.casFailures = new LongAdder();
+    }
+
+    // 7 chars of base64-encoded random bytes followed by a dash
+    static String randomBase() {
+        byte[] randomBytes = new byte[5];
+        new Random().nextBytes(randomBytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes) + "-";
     }
 
     public boolean willNeedResetSoon() {
         return counter.get() >= RESET_THRESHOLD;
     }
 
+    /**
+     * Returns the number of IDs issued by this generator, including the reserved ones.
+     *
+     * @since 4.0
+     */
+    public long getIssuedCount() {
+        return Integer.toUnsignedLong(counter.get() - counterStart);
+    }
+
+    /**
+     * Returns a fraction of the counter range between the start value and the reset threshold that was already used.
+     * A value of 1 or more means the generator needs a reset, and will start producing duplicate IDs after the
+     * counter overflow.
+     *
+     * @since 4.0
+     */
+    public double getThresholdUsage() {
+        return (double) getIssuedCount() / Integer.toUnsignedLong(RESET_THRESHOLD - counterStart);
+    }
+
+    /**
+     * Returns generator metrics, i.e. "IssuedCount" and "ThresholdUsage" gauges.
+     *
+     * @since 4.0
+     */
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return Map.of(
+                "IssuedCount", (Gauge<Long>) this::getIssuedCount,
+                "ThresholdUsage", (Gauge<Double>) this::getThresholdUsage);
+    }
+
     @Override
     public String nextId() {
+        return toId(counter.getAndIncrement());
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(char[] buffer, int offset) {
+        HexEncoder.checkSpace(buffer, offset, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer, offset);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(CharBuffer buffer) {
+        HexEncoder.checkSpace(buffer, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer);
+    }
 
-        int next = counter.getAndIncrement();
-        String nextString = Integer.toHexString(next);
+    /**
+     * @since 4.0
+     */
+    @Override
+    public int nextId(ByteBuffer buffer) {
+        HexEncoder.checkSpace(buffer, STRING_LENGTH);
+        return writeId(counter.getAndIncrement(), buffer);
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public TransactionId nextTransactionId() {
+        return toTransactionId(counter.getAndIncrement());
+    }
+
+    /**
+     * @since 4.0
+     */
+    @Override
+    public TransactionIdBlock reserveIds(int size) {
+        BaseIdBlock.checkSize(size);
+        return new IntCounterIdBlock(this, counter.getAndAdd(size), size);
+    }
+
+    /**
+     * Attempts to increment the counter with a single CAS, returning the previous counter value, or {@link #CONTENDED}
+     * if another thread updated the counter concurrently. Allows the callers to detect contention.
+     */
+    long tryNextCounter() {
+        return tryAddCounter(1);
+    }
+
+    long tryAddCounter(int delta) {
+        int current = counter.get();
+        if (counter.compareAndSet(current, current + delta)) {
+            return current;
+        }
+
+        casFailures.increment();
+        return CONTENDED;
+    }
+
+    long getCasFailures() {
+        return casFailures.sum();
+    }
+
+    static void checkMaxBlockSize(int size) {
+        if (size > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("Block size " + size + " exceeds the max of " + MAX_BLOCK_SIZE);
+        }
+    }
+
+    String toId(int counter) {
+        byte[] bytes = new byte[STRING_LENGTH];
+        System.arraycopy(baseBytes, 0, bytes, 0, baseBytes.length);
+        HexEncoder.writeInt(counter, bytes, baseBytes.length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    TransactionId toTransactionId(int counter) {
+        return new TransactionId(TransactionId.BASE_INT, baseBits, counter);
+    }
+
+    // the "writeId" methods don't check the space, as the callers must do it before taking the counter, so that an
+    // undersized buffer doesn't waste an ID
+    int writeId(int counter, char[] buffer, int offset) {
+        System.arraycopy(baseChars, 0, buffer, offset, baseChars.length);
+        HexEncoder.writeInt(counter, buffer, offset + baseChars.length);
+        return STRING_LENGTH;
+    }
+
+    int writeId(int counter, CharBuffer buffer) {
+        buffer.put(baseChars);
+        HexEncoder.writeInt(counter, buffer);
+        return STRING_LENGTH;
+    }
 
-        return new StringBuilder(STRING_LENGTH)
-                .append(base)
-                .append(PADDING.substring(0, COUNTER_STRING_LEN - nextString.length()))
-                .append(nextString)
-                .toString();
+    int writeId(int counter, ByteBuffer buffer) {
+        buffer.put(baseBytes);
+        HexEncoder.writeInt(counter, buffer);
+        return STRING_LENGTH;
     }
 }
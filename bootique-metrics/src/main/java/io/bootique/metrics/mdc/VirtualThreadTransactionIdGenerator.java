@@ -0,0 +1,58 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link TransactionIdGenerator} optimized for apps running a large number of short-lived virtual threads (e.g. a
+ * thread per request). Unlike {@link StripedTransactionIdGenerator}, doesn't use thread IDs to pick a stripe, as
+ * virtual thread IDs are sequential and never reused. And unlike {@link AdaptiveStripedTransactionIdGenerator}, keeps
+ * no per-thread state (no ThreadLocals). Instead, a stripe is picked using {@link ThreadLocalRandom} (whose state is
+ * stored in the Thread object itself), and a new random stripe is tried on contention. The number of stripes grows on
+ * contention up to the number of CPUs, which is the default number of virtual thread carriers. The generator never
+ * blocks, so it doesn't pin the carrier threads.
+ *
+ * @since 4.0
+ */
+public class VirtualThreadTransactionIdGenerator extends AdaptiveStripedTransactionIdGenerator {
+
+    public VirtualThreadTransactionIdGenerator() {
+        super();
+    }
+
+    public VirtualThreadTransactionIdGenerator(int maxStripes) {
+        super(maxStripes);
+    }
+
+    public VirtualThreadTransactionIdGenerator(int maxStripes, int counterStart) {
+        super(maxStripes, counterStart);
+    }
+
+    @Override
+    protected int probe() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+
+    @Override
+    protected int advanceProbe(int probe) {
+        return ThreadLocalRandom.current().nextInt();
+    }
+}
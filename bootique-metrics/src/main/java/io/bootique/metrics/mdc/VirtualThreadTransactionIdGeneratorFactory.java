@@ -0,0 +1,56 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * A {@link TransactionIdGeneratorFactory} that produces a {@link VirtualThreadTransactionIdGenerator}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a generator optimized for apps running lots of virtual threads.")
+@JsonTypeName("virtual")
+public class VirtualThreadTransactionIdGeneratorFactory implements TransactionIdGeneratorFactory {
+
+    private Integer maxStripes;
+    private Integer counterStart;
+
+    @Override
+    public TransactionIdGenerator createGenerator() {
+        int maxStripes = this.maxStripes != null ? this.maxStripes : Runtime.getRuntime().availableProcessors();
+        return counterStart != null
+                ? new VirtualThreadTransactionIdGenerator(maxStripes, counterStart)
+                : new VirtualThreadTransactionIdGenerator(maxStripes);
+    }
+
+    @BQConfigProperty("The max number of stripes the generator can grow to under contention. Rounded up to a power " +
+            "of 2. The default is the number of CPUs.")
+    public void setMaxStripes(Integer maxStripes) {
+        this.maxStripes = maxStripes;
+    }
+
+    @BQConfigProperty("The initial value of each stripe counter. The default is the min int value.")
+    public void setCounterStart(Integer counterStart) {
+        this.counterStart = counterStart;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer reused between renderings of the metrics exposition. Provides ASCII-only number and String
+ * writers that do not allocate.
+ *
+ * @since 4.0
+ */
+class ExpositionBuffer {
+
+    private static final byte[] NAN = {'N', 'a', 'N'};
+    private static final byte[] POSITIVE_INFINITY = {'+', 'I', 'n', 'f'};
+    private static final byte[] NEGATIVE_INFINITY = {'-', 'I', 'n', 'f'};
+    private static final byte[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes();
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    // significant digits of the non-integral doubles. This is the decimal precision that a double always preserves,
+    // so the output is free of the binary representation noise (e.g. "0.30000000000000004"), though the last bits of
+    // some doubles are lost
+    private static final int DOUBLE_DIGITS = 15;
+    private static final long MIN_DOUBLE_DIGITS_VALUE = 100_000_000_000_000L;
+    private static final long MAX_DOUBLE_DIGITS_VALUE = 1_000_000_000_000_000L;
+    private static final long MAX_VALUE_DIGITS = 179_769_313_486_231L;
+
+    private byte[] bytes;
+    private int size;
+
+    ExpositionBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return bytes.length;
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    // used by the direct writers into the underlying array
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    void ensureCapacity(int minCapacity) {
+        if (minCapacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(minCapacity, bytes.length * 2));
+        }
+    }
+
+    ExpositionBuffer write(byte b) {
+        ensureCapacity(size + 1);
+        bytes[size++] = b;
+        return this;
+    }
+
+    ExpositionBuffer write(byte[] b) {
+        ensureCapacity(size + b.length);
+        System.arraycopy(b, 0, bytes, size, b.length);
+        size += b.length;
+        return this;
+    }
+
+    // writes a String that is known to be ASCII
+    ExpositionBuffer writeAscii(String s) {
+        int len = s.length();
+        ensureCapacity(size + len);
+        for (int i = 0; i < len; i++) {
+            bytes[size++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    ExpositionBuffer writeLong(long value) {
+
+        if (value == Long.MIN_VALUE) {
+            return write(LONG_MIN_VALUE);
+        }
+
+        // max 19 digits and a sign
+        ensureCapacity(size + 20);
+
+        if (value < 0) {
+            bytes[size++] = '-';
+            value = -value;
+        }
+
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        size += digits;
+        return this;
+    }
+
+    ExpositionBuffer writeDouble(double value) {
+
+        if (Double.isNaN(value)) {
+            return write(NAN);
+        }
+
+        if (Double.isInfinite(value)) {
+            return write(value > 0 ? POSITIVE_INFINITY : NEGATIVE_INFINITY);
+        }
+
+        // most values (counts, integer gauges) are integral
+        long asLong = (long) value;
+        if (asLong == value && Math.abs(value) < 1e15) {
+            return writeLong(asLong);
+        }
+
+        return writeDecimal(value);
+    }
+
+    // writes a finite non-zero double with up to 15 significant digits, using the same notation as
+    // "Double.toString(..)": plain for the magnitudes between 10^-3 and 10^7, and "E" notation otherwise
+    private ExpositionBuffer writeDecimal(double value) {
+
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+
+        // find the decimal exponent and the significant digits, correcting for the log10 and scaling rounding errors
+        int exp = (int) Math.floor(Math.log10(value));
+        long digits = significantDigits(value, exp);
+        if (digits >= MAX_DOUBLE_DIGITS_VALUE) {
+            exp++;
+            digits = significantDigits(value, exp);
+        } else if (digits < MIN_DOUBLE_DIGITS_VALUE) {
+            exp--;
+            digits = significantDigits(value, exp);
+        }
+
+        int len = DOUBLE_DIGITS;
+        while (digits % 10 == 0 && len > 1) {
+            digits /= 10;
+            len--;
+        }
+
+        if (exp >= -3 && exp < 7) {
+            if (exp < 0) {
+                write((byte) '0').write((byte) '.');
+                for (int i = -1; i > exp; i--) {
+                    write((byte) '0');
+                }
+                return writeLong(digits);
+            }
+
+            int intLen = exp + 1;
+            writeLong(digits);
+            if (len > intLen) {
+                return insertPoint(size - len + intLen);
+            }
+
+            for (int i = len; i < intLen; i++) {
+                write((byte) '0');
+            }
+            return write((byte) '.').write((byte) '0');
+        }
+
+        writeLong(digits);
+        if (len > 1) {
+            insertPoint(size - len + 1);
+        } else {
+            write((byte) '.').write((byte) '0');
+        }
+
+        return write((byte) 'E').writeLong(exp);
+    }
+
+    private static long significantDigits(double value, int exp) {
+        double scaled = scaleByPowerOfTen(value, DOUBLE_DIGITS - 1 - exp);
+
+        // rounding up the largest doubles may produce a number that overflows to infinity when parsed
+        return exp >= 308 ? Math.min(Math.round(scaled), MAX_VALUE_DIGITS) : Math.round(scaled);
+    }
+
+    private static double scaleByPowerOfTen(double value, int exp) {
+
+        // avoid overflowing the power of ten for subnormal values
+        if (exp > 300) {
+            value *= 1e300;
+            exp -= 300;
+        }
+
+        // dividing by an exact power of ten is more precise than multiplying by an inexact negative power
+        return exp >= 0 ? value * Math.pow(10, exp) : value / Math.pow(10, -exp);
+    }
+
+    // inserts a decimal point at the specified position, shifting the already written digits after it
+    private ExpositionBuffer insertPoint(int position) {
+        ensureCapacity(size + 1);
+        System.arraycopy(bytes, position, bytes, position + 1, size - position);
+        bytes[position] = '.';
+        size++;
+        return this;
+    }
+
+    // writes a finite double with at most "scale" fraction digits, trimming trailing zeros. Unlike
+    // "writeDouble(..)", rounds to a fixed scale, so loses precision for very large or very small values
+    ExpositionBuffer writeFixed(double value, int scale) {
+
+        long factor = POWERS_OF_TEN[scale];
+        long scaled = Math.round(Math.abs(value) * factor);
+
+        if (value < 0 && scaled != 0) {
+            write((byte) '-');
+        }
+
+        writeLong(scaled / factor);
+
+        long fraction = scaled % factor;
+        if (fraction != 0) {
+            write((byte) '.');
+
+            int digits = scale;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+
+            // leading zeros of the fraction
+            for (long p = POWERS_OF_TEN[digits - 1]; p > fraction; p /= 10) {
+                write((byte) '0');
+            }
+
+            writeLong(fraction);
+        }
+
+        return this;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+}
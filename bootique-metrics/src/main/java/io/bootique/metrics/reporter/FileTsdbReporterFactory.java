@@ -0,0 +1,154 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.metrics.GlobMetricFilter;
+import io.bootique.metrics.history.FileTsdbReporter;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.nio.file.Path;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReporterFactory} that produces a {@link FileTsdbReporter}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a reporter that stores compressed metrics history in local segment files.")
+@JsonTypeName("file-tsdb")
+public class FileTsdbReporterFactory implements ReporterFactory {
+
+    static final int DEFAULT_MAX_SERIES = 10000;
+
+    private final ShutdownManager shutdownManager;
+
+    private String directory;
+    private Duration period;
+    private Duration segmentDuration;
+    private Duration retention;
+    private int maxSeries;
+    private boolean fsync;
+    private List<String> metrics;
+
+    @Inject
+    public FileTsdbReporterFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry) {
+        FileTsdbReporter reporter = createReporter(metricRegistry, null, true);
+        reporter.start(resolvePeriod().toMillis(), TimeUnit.MILLISECONDS);
+        return shutdownManager.onShutdown(reporter);
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        FileTsdbReporter reporter = createReporter(metricRegistry, scheduler.getExecutor(), false);
+        return scheduler.start(metricRegistry, reporter, resolvePeriod(), shutdownManager);
+    }
+
+    protected FileTsdbReporter createReporter(
+            MetricRegistry metricRegistry,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        return new FileTsdbReporter(
+                metricRegistry,
+                GlobMetricFilter.of(metrics),
+                resolveDirectory(),
+                resolveSegmentDuration(),
+                resolveRetention(),
+                resolveMaxSeries(),
+                fsync,
+                executor,
+                shutdownExecutorOnStop);
+    }
+
+    Path resolveDirectory() {
+        Objects.requireNonNull(directory, "'directory' is not set");
+        return Path.of(directory);
+    }
+
+    java.time.Duration resolvePeriod() {
+        return period != null ? period.getDuration() : java.time.Duration.of(10, ChronoUnit.SECONDS);
+    }
+
+    java.time.Duration resolveSegmentDuration() {
+        return segmentDuration != null ? segmentDuration.getDuration() : java.time.Duration.of(1, ChronoUnit.HOURS);
+    }
+
+    java.time.Duration resolveRetention() {
+        return retention != null ? retention.getDuration() : java.time.Duration.of(7, ChronoUnit.DAYS);
+    }
+
+    int resolveMaxSeries() {
+        return maxSeries > 0 ? maxSeries : DEFAULT_MAX_SERIES;
+    }
+
+    @BQConfigProperty("Directory to store metrics segment files in. Created if missing. Required.")
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    @BQConfigProperty("How often to take snapshots of the metrics. The default is 10 seconds.")
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    @BQConfigProperty("Time span of a single segment file. A new segment is started at each segment duration " +
+            "boundary. The default is 1 hour.")
+    public void setSegmentDuration(Duration segmentDuration) {
+        this.segmentDuration = segmentDuration;
+    }
+
+    @BQConfigProperty("How long to keep the segments. Older segments are deleted when a new segment is started. " +
+            "The default is 7 days.")
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    @BQConfigProperty("Max number of series in a single segment. The default is 10000.")
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    @BQConfigProperty("Whether to force each snapshot to the storage device before the next one. Makes the history " +
+            "durable across OS crashes, at the cost of a disk sync per snapshot. The default is false.")
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    @BQConfigProperty("Glob patterns of the names of the metrics to store. '*' matches any chars, including dots. " +
+            "If omitted, all metrics are stored (up to the max series).")
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * A non-blocking connection to a Graphite endpoint with a bounded backlog of unsent data. The data is written in
+ * fixed-size chunks that are pooled and reused. Each chunk contains whole plaintext lines or a whole pickle frame, so
+ * when the backlog is full, the oldest chunks are dropped without corrupting the stream, and after a reconnect, a
+ * partially sent chunk is resent from the beginning. Failed connections are retried with exponential backoff. Not
+ * thread-safe.
+ *
+ * @since 4.0
+ */
+class GraphiteConnection implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphiteConnection.class);
+
+    private final String host;
+    private final int port;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long writeTimeoutNanos;
+
+    private final ArrayDeque<Chunk> backlog;
+    private final ArrayDeque<Chunk> pool;
+    private final Selector selector;
+
+    private SocketChannel channel;
+    private long backoffNanos;
+    private long nextConnectNanos;
+    private long droppedChunks;
+
+    GraphiteConnection(
+            String host,
+            int port,
+            int chunkSize,
+            int maxChunks,
+            long minBackoffNanos,
+            long maxBackoffNanos,
+            long writeTimeoutNanos) throws IOException {
+
+        if (maxChunks < 1) {
+            throw new IllegalArgumentException("Backlog must allow at least one chunk");
+        }
+
+        this.host = host;
+        this.port = port;
+        this.chunkSize = chunkSize;
+        this.maxChunks = maxChunks;
+        this.minBackoffNanos = minBackoffNanos;
+        this.maxBackoffNanos = Math.max(minBackoffNanos, maxBackoffNanos);
+        this.writeTimeoutNanos = writeTimeoutNanos;
+
+        this.backlog = new ArrayDeque<>();
+        this.pool = new ArrayDeque<>();
+        this.selector = Selector.open();
+        this.backoffNanos = minBackoffNanos;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getBacklogSize() {
+        return backlog.size();
+    }
+
+    long getDroppedChunks() {
+        return droppedChunks;
+    }
+
+    long getBackoffNanos() {
+        return backoffNanos;
+    }
+
+    boolean isConnected() {
+        return channel != null && channel.isConnected();
+    }
+
+    /**
+     * Appends a new empty chunk to the backlog, dropping the oldest chunk(s) if the backlog is full, and returns the
+     * chunk buffer to fill. The previous chunk is considered complete.
+     */
+    ByteBuffer newChunk() {
+
+        seal();
+
+        while (backlog.size() >= maxChunks && dropOldest()) {
+            droppedChunks++;
+        }
+
+        Chunk chunk = pool.poll();
+        if (chunk == null) {
+            chunk = new Chunk(ByteBuffer.allocateDirect(chunkSize));
+        }
+
+        backlog.add(chunk);
+        return chunk.buffer;
+    }
+
+    // drops the oldest chunk that hasn't started sending. A partially sent chunk must be completed to keep the stream
+    // consistent
+    private boolean dropOldest() {
+        Iterator<Chunk> it = backlog.iterator();
+        while (it.hasNext()) {
+            Chunk c = it.next();
+            if (!c.sealed || c.buffer.position() == 0) {
+                it.remove();
+                recycle(c);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Attempts to send the backlog, waiting for the socket to become writable for up to the write timeout. Connects
+     * if needed, unless the reconnect backoff is in effect.
+     */
+    void flush() {
+
+        seal();
+
+        if (backlog.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long deadline = now + writeTimeoutNanos;
+
+        try {
+            if (channel == null) {
+                if (now - nextConnectNanos < 0) {
+                    return;
+                }
+
+                connect();
+            }
+
+            if (!channel.isConnected() && !finishConnect(deadline)) {
+                return;
+            }
+
+            write(deadline);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+
+            // resolving the address on every connect to pick up DNS changes
+            channel.connect(new InetSocketAddress(host, port));
+            channel.register(selector, 0);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        this.channel = channel;
+    }
+
+    private boolean finishConnect(long deadline) throws IOException {
+        SelectionKey key = channel.keyFor(selector);
+        key.interestOps(SelectionKey.OP_CONNECT);
+
+        while (!channel.finishConnect()) {
+            if (!await(deadline)) {
+                // will keep waiting on the next flush
+                return false;
+            }
+        }
+
+        backoffNanos = minBackoffNanos;
+        return true;
+    }
+
+    private void write(long deadline) throws IOException {
+        SelectionKey key = channel.keyFor(selector);
+        key.interestOps(SelectionKey.OP_WRITE);
+
+        Chunk head;
+        while ((head = backlog.peek()) != null) {
+            channel.write(head.buffer);
+
+            if (head.buffer.hasRemaining()) {
+                if (!await(deadline)) {
+                    // the endpoint is slow; the rest of the backlog will be sent on the next flush
+                    return;
+                }
+            } else {
+                backlog.poll();
+                recycle(head);
+            }
+        }
+    }
+
+    private boolean await(long deadline) throws IOException {
+        long remainingMs = (deadline - System.nanoTime()) / 1_000_000L;
+        if (remainingMs <= 0) {
+            return false;
+        }
+
+        int ready = selector.select(remainingMs);
+        selector.selectedKeys().clear();
+        return ready > 0;
+    }
+
+    private void fail(IOException e) {
+        LOGGER.warn("Error sending metrics to Graphite at {}:{}, will reconnect in {} ms: {}",
+                host, port, backoffNanos / 1_000_000L, e.getMessage());
+
+        closeChannel();
+
+        // resend the partially sent chunk in full on reconnect. The duplicated data points are harmless, as Graphite
+        // overwrites the values with the same timestamp
+        Chunk head = backlog.peek();
+        if (head != null) {
+            head.buffer.position(0);
+        }
+
+        nextConnectNanos = System.nanoTime() + backoffNanos;
+        backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+    }
+
+    private void seal() {
+        Chunk last = backlog.peekLast();
+        if (last != null && !last.sealed) {
+            last.buffer.flip();
+            last.sealed = true;
+        }
+    }
+
+    private void recycle(Chunk chunk) {
+        chunk.buffer.clear();
+        chunk.sealed = false;
+        pool.add(chunk);
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing we can do here
+            }
+
+            channel = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+        selector.close();
+        backlog.clear();
+        pool.clear();
+    }
+
+    private static class Chunk {
+
+        final ByteBuffer buffer;
+
+        // a sealed chunk is in "read" mode, with its position indicating how much of it was sent
+        boolean sealed;
+
+        Chunk(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledReporter} that writes registry metrics to Graphite (Carbon) over TCP in the plaintext or the
+ * pickle format. All metrics of a single tick are encoded into a backlog of reusable chunks that is then written to a
+ * non-blocking socket, waiting for a slow endpoint no longer than the write timeout. Whatever is not sent stays in the
+ * bounded backlog until the next tick. Failed connections are retried with exponential backoff. Encoded metric names
+ * are cached, and the values are written without allocation. Timer values are in milliseconds.
+ *
+ * @since 4.0
+ */
+public class GraphiteReporter extends ScheduledReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphiteReporter.class);
+
+    public enum Format {
+        PLAINTEXT, PICKLE
+    }
+
+    private static final int VALUE_SCALE = 6;
+    private static final double MAX_FIXED_VALUE = 1e12;
+    private static final double NANOS_TO_MILLIS = 1e-6;
+
+    private static final byte[] COUNT = ascii(".count");
+    private static final byte[] MIN = ascii(".min");
+    private static final byte[] MAX = ascii(".max");
+    private static final byte[] MEAN = ascii(".mean");
+    private static final byte[] STDDEV = ascii(".stddev");
+    private static final byte[] P50 = ascii(".p50");
+    private static final byte[] P75 = ascii(".p75");
+    private static final byte[] P95 = ascii(".p95");
+    private static final byte[] P98 = ascii(".p98");
+    private static final byte[] P99 = ascii(".p99");
+    private static final byte[] P999 = ascii(".p999");
+    private static final byte[] M1_RATE = ascii(".m1_rate");
+    private static final byte[] M5_RATE = ascii(".m5_rate");
+    private static final byte[] M15_RATE = ascii(".m15_rate");
+    private static final byte[] MEAN_RATE = ascii(".mean_rate");
+    private static final byte[] NO_SUFFIX = new byte[0];
+
+    // pickle protocol 0 opcodes, as used by Carbon clients. A frame is a list of (path, (timestamp, value)) tuples
+    private static final byte MARK = '(';
+    private static final byte STOP = '.';
+    private static final byte LONG = 'L';
+    private static final byte STRING = 'S';
+    private static final byte APPEND = 'a';
+    private static final byte LIST = 'l';
+    private static final byte TUPLE = 't';
+    private static final byte QUOTE = '\'';
+    private static final byte LF = '\n';
+
+    private final GraphiteConnection connection;
+    private final Format format;
+    private final byte[] prefix;
+    private final int batchSize;
+    private final Map<String, byte[]> names;
+
+    // encoding state, guarded by "this"
+    private final ExpositionBuffer item;
+    private ByteBuffer chunk;
+    private int chunkItems;
+    private long timestamp;
+
+    public GraphiteReporter(
+            MetricRegistry registry,
+            String host,
+            int port,
+            Format format,
+            String prefix,
+            int batchSize,
+            int chunkSize,
+            int maxBacklogChunks,
+            long minBackoffMs,
+            long maxBackoffMs,
+            long writeTimeoutMs,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) throws IOException {
+
+        super(registry, "graphite-reporter", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, executor, shutdownExecutorOnStop);
+
+        this.connection = new GraphiteConnection(
+                host,
+                port,
+                chunkSize,
+                maxBacklogChunks,
+                TimeUnit.MILLISECONDS.toNanos(minBackoffMs),
+                TimeUnit.MILLISECONDS.toNanos(maxBackoffMs),
+                TimeUnit.MILLISECONDS.toNanos(writeTimeoutMs));
+
+        this.format = format;
+        this.prefix = prefix != null && !prefix.isEmpty() ? ascii(sanitize(prefix) + ".") : new byte[0];
+        this.batchSize = batchSize;
+        this.names = new HashMap<>();
+        this.item = new ExpositionBuffer(256);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Replaces whitespace, non-ASCII chars, as well as quotes and backslashes that would break pickle strings with
+     * underscores.
+     */
+    static String sanitize(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c > ' ' && c < 127 && c != '\'' && c != '\\';
+            out.append(valid ? c : '_');
+        }
+        return out.toString();
+    }
+
+    GraphiteConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public synchronized void report(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+
+        timestamp = System.currentTimeMillis() / 1000L;
+        chunk = null;
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            Object value = e.getValue().getValue();
+            if (value instanceof Number n) {
+                write(name(e.getKey()), NO_SUFFIX, n.doubleValue());
+            } else if (value instanceof Boolean b) {
+                write(name(e.getKey()), NO_SUFFIX, b ? 1 : 0);
+            }
+        }
+
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            write(name(e.getKey()), COUNT, e.getValue().getCount());
+        }
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            byte[] name = name(e.getKey());
+            write(name, COUNT, h.getCount());
+            writeSnapshot(name, h.getSnapshot(), 1.);
+        }
+
+        for (Map.Entry<String, Meter> e : meters.entrySet()) {
+            Meter m = e.getValue();
+            byte[] name = name(e.getKey());
+            write(name, COUNT, m.getCount());
+            writeRates(name, m.getOneMinuteRate(), m.getFiveMinuteRate(), m.getFifteenMinuteRate(), m.getMeanRate());
+        }
+
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            Timer t = e.getValue();
+            byte[] name = name(e.getKey());
+            write(name, COUNT, t.getCount());
+            writeSnapshot(name, t.getSnapshot(), NANOS_TO_MILLIS);
+            writeRates(name, t.getOneMinuteRate(), t.getFiveMinuteRate(), t.getFifteenMinuteRate(), t.getMeanRate());
+        }
+
+        finishChunk();
+        connection.flush();
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            synchronized (this) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Error closing Graphite connection", e);
+                }
+            }
+        }
+    }
+
+    private byte[] name(String name) {
+        byte[] encoded = names.get(name);
+        if (encoded == null) {
+
+            // keep the cache from growing indefinitely when metrics are removed from the registry
+            if (names.size() > 100_000) {
+                names.clear();
+            }
+
+            byte[] sanitized = ascii(sanitize(name));
+            encoded = new byte[prefix.length + sanitized.length];
+            System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+            System.arraycopy(sanitized, 0, encoded, prefix.length, sanitized.length);
+            names.put(name, encoded);
+        }
+
+        return encoded;
+    }
+
+    private void writeSnapshot(byte[] name, Snapshot snapshot, double factor) {
+        write(name, MIN, snapshot.getMin() * factor);
+        write(name, MAX, snapshot.getMax() * factor);
+        write(name, MEAN, snapshot.getMean() * factor);
+        write(name, STDDEV, snapshot.getStdDev() * factor);
+        write(name, P50, snapshot.getMedian() * factor);
+        write(name, P75, snapshot.get75thPercentile() * factor);
+        write(name, P95, snapshot.get95thPercentile() * factor);
+        write(name, P98, snapshot.get98thPercentile() * factor);
+        write(name, P99, snapshot.get99thPercentile() * factor);
+        write(name, P999, snapshot.get999thPercentile() * factor);
+    }
+
+    private void writeRates(byte[] name, double m1, double m5, double m15, double mean) {
+        write(name, M1_RATE, convertRate(m1));
+        write(name, M5_RATE, convertRate(m5));
+        write(name, M15_RATE, convertRate(m15));
+        write(name, MEAN_RATE, convertRate(mean));
+    }
+
+    private void write(byte[] name, byte[] suffix, double value) {
+
+        // Graphite has no representation for these
+        if (!Double.isFinite(value)) {
+            return;
+        }
+
+        item.reset();
+
+        if (format == Format.PICKLE) {
+            item.write(MARK).write(STRING).write(QUOTE).write(name).write(suffix).write(QUOTE).write(LF)
+                    .write(MARK).write(LONG).writeLong(timestamp).write(LONG).write(LF)
+                    .write(STRING).write(QUOTE);
+            writeValue(value);
+            item.write(QUOTE).write(LF)
+                    .write(TUPLE).write(TUPLE).write(APPEND);
+        } else {
+            item.write(name).write(suffix).write((byte) ' ');
+            writeValue(value);
+            item.write((byte) ' ').writeLong(timestamp).write(LF);
+        }
+
+        append();
+    }
+
+    private void writeValue(double value) {
+        if (Math.abs(value) < MAX_FIXED_VALUE) {
+            item.writeFixed(value, VALUE_SCALE);
+        } else {
+            item.writeDouble(value);
+        }
+    }
+
+    private void append() {
+
+        // reserve a byte for the pickle STOP opcode
+        int reserve = format == Format.PICKLE ? 1 : 0;
+
+        if (chunk == null || chunk.remaining() < item.size() + reserve || (format == Format.PICKLE && chunkItems >= batchSize)) {
+            finishChunk();
+            startChunk();
+
+            if (chunk.remaining() < item.size() + reserve) {
+                LOGGER.debug("Skipping a metric that exceeds the chunk size");
+                return;
+            }
+        }
+
+        chunk.put(item.array(), 0, item.size());
+        chunkItems++;
+    }
+
+    private void startChunk() {
+        chunk = connection.newChunk();
+        chunkItems = 0;
+
+        if (format == Format.PICKLE) {
+            // frame length placeholder
+            chunk.putInt(0);
+            chunk.put(MARK).put(LIST);
+        }
+    }
+
+    private void finishChunk() {
+        if (chunk == null) {
+            return;
+        }
+
+        if (format == Format.PICKLE) {
+            chunk.put(STOP);
+
+            // the frame length excludes the 4 byte header. ByteBuffer is big-endian by default as required
+            chunk.putInt(0, chunk.position() - 4);
+        }
+
+        chunk = null;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReporterFactory} that produces a {@link GraphiteReporter}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a reporter that writes metrics to Graphite over TCP.")
+@JsonTypeName("graphite")
+public class GraphiteReporterFactory implements ReporterFactory {
+
+    static final String DEFAULT_HOST = "localhost";
+    static final int DEFAULT_PLAINTEXT_PORT = 2003;
+    static final int DEFAULT_PICKLE_PORT = 2004;
+    static final int DEFAULT_BATCH_SIZE = 500;
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_MAX_BACKLOG_KB = 4 * 1024;
+
+    private final ShutdownManager shutdownManager;
+
+    private String host;
+    private int port;
+    private String format;
+    private String prefix;
+    private Duration period;
+    private int batchSize;
+    private int maxBacklogKb;
+    private Duration minReconnectDelay;
+    private Duration maxReconnectDelay;
+    private Duration writeTimeout;
+
+    @Inject
+    public GraphiteReporterFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry) {
+        GraphiteReporter reporter = createReporter(metricRegistry, null, true);
+        reporter.start(resolvePeriod().toMillis(), TimeUnit.MILLISECONDS);
+        return shutdownManager.onShutdown(reporter);
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        GraphiteReporter reporter = createReporter(metricRegistry, scheduler.getExecutor(), false);
+        return scheduler.start(metricRegistry, reporter, resolvePeriod(), shutdownManager);
+    }
+
+    protected GraphiteReporter createReporter(
+            MetricRegistry metricRegistry,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        GraphiteReporter.Format format = resolveFormat();
+
+        try {
+            return new GraphiteReporter(
+                    metricRegistry,
+                    host != null ? host : DEFAULT_HOST,
+                    resolvePort(format),
+                    format,
+                    prefix,
+                    batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE,
+                    CHUNK_SIZE,
+                    resolveMaxBacklogChunks(),
+                    resolveDuration(minReconnectDelay, 1).toMillis(),
+                    resolveDuration(maxReconnectDelay, 60).toMillis(),
+                    resolveDuration(writeTimeout, 1).toMillis(),
+                    executor,
+                    shutdownExecutorOnStop);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error creating Graphite reporter", e);
+        }
+    }
+
+    GraphiteReporter.Format resolveFormat() {
+        return format != null ? GraphiteReporter.Format.valueOf(format.toUpperCase(Locale.ROOT)) : GraphiteReporter.Format.PLAINTEXT;
+    }
+
+    int resolvePort(GraphiteReporter.Format format) {
+        if (port > 0) {
+            return port;
+        }
+
+        return format == GraphiteReporter.Format.PICKLE ? DEFAULT_PICKLE_PORT : DEFAULT_PLAINTEXT_PORT;
+    }
+
+    int resolveMaxBacklogChunks() {
+        int kb = maxBacklogKb > 0 ? maxBacklogKb : DEFAULT_MAX_BACKLOG_KB;
+        return Math.max(1, kb * 1024 / CHUNK_SIZE);
+    }
+
+    java.time.Duration resolvePeriod() {
+        return period != null ? period.getDuration() : java.time.Duration.of(30, ChronoUnit.SECONDS);
+    }
+
+    private static java.time.Duration resolveDuration(Duration duration, int defaultSeconds) {
+        return duration != null ? duration.getDuration() : java.time.Duration.of(defaultSeconds, ChronoUnit.SECONDS);
+    }
+
+    @BQConfigProperty("Graphite host. The default is 'localhost'.")
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    @BQConfigProperty("Graphite port. The default is 2003 for 'plaintext' and 2004 for 'pickle' format.")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @BQConfigProperty("Protocol format. Either 'plaintext' (default) or 'pickle'.")
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    @BQConfigProperty("Optional prefix prepended to all metric names, separated with a dot.")
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @BQConfigProperty("Set the amount of time between reports. Default value is 30 seconds.")
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    @BQConfigProperty("Max number of metrics in a single pickle frame. The default is 500.")
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @BQConfigProperty("Max size in KB of unsent data kept when Graphite is slow or unavailable. When exceeded, the " +
+            "oldest data is dropped. The default is 4096.")
+    public void setMaxBacklogKb(int maxBacklogKb) {
+        this.maxBacklogKb = maxBacklogKb;
+    }
+
+    @BQConfigProperty("Initial delay before reconnecting after a connection failure. Doubles on each consecutive " +
+            "failure. The default is 1 second.")
+    public void setMinReconnectDelay(Duration minReconnectDelay) {
+        this.minReconnectDelay = minReconnectDelay;
+    }
+
+    @BQConfigProperty("Max delay before reconnecting after a connection failure. The default is 60 seconds.")
+    public void setMaxReconnectDelay(Duration maxReconnectDelay) {
+        this.maxReconnectDelay = maxReconnectDelay;
+    }
+
+    @BQConfigProperty("Max time a report waits for a slow Graphite endpoint to accept data. The rest of the data " +
+            "is sent with the next report. The default is 1 second.")
+    public void setWriteTimeout(Duration writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+}
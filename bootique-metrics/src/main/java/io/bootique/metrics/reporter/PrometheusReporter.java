@@ -0,0 +1,236 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link Reporter} that serves registry metrics to Prometheus scrapers in the text exposition format over the JDK
+ * built-in HTTP server. Rendering reuses the same buffers between scrapes, the response is gzipped if the client
+ * accepts it, and both the text and the gzipped forms are only re-rendered if the output has changed since the
+ * previous scrape. Each response has an ETag, so a client that sends a matching "If-None-Match" gets a "304 Not
+ * Modified" response without the body. Optionally, a rendered response can be cached for a configured time, so that
+ * multiple scrapers (e.g. an HA Prometheus pair) don't render the registry more than once per interval.
+ *
+ * @since 4.0
+ */
+public class PrometheusReporter implements Reporter, Closeable {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // gzip header with no flags, no mtime and unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final MetricRegistry registry;
+    private final boolean gzip;
+    private final long cacheTtlNanos;
+    private final HttpServer server;
+
+    // rendering state, guarded by "this"
+    private final PrometheusTextWriter writer;
+    private final ExpositionBuffer text;
+    private final ExpositionBuffer gzipped;
+    private final CRC32 crc;
+    private final Deflater deflater;
+    private boolean rendered;
+    private long renderedAtNanos;
+    private long textCrc;
+    private int textSize;
+    private boolean gzippedValid;
+    private String etag;
+    private String gzippedEtag;
+
+    public PrometheusReporter(
+            MetricRegistry registry,
+            InetSocketAddress address,
+            String path,
+            boolean gzip,
+            long cacheTtlNanos) throws IOException {
+
+        this.registry = registry;
+        this.gzip = gzip;
+        this.cacheTtlNanos = cacheTtlNanos;
+
+        this.writer = new PrometheusTextWriter();
+        this.text = new ExpositionBuffer(INITIAL_BUFFER_SIZE);
+        this.gzipped = new ExpositionBuffer(gzip ? INITIAL_BUFFER_SIZE / 4 : 0);
+        this.crc = new CRC32();
+        this.deflater = gzip ? new Deflater(Deflater.DEFAULT_COMPRESSION, true) : null;
+
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext(path, this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Returns the address the server is bound to. Useful when the server is started on an ephemeral port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+
+        synchronized (this) {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Headers requestHeaders = exchange.getRequestHeaders();
+            Headers responseHeaders = exchange.getResponseHeaders();
+
+            // holding the lock while writing to the client, as the buffers are shared. The server processes
+            // requests on a single thread anyway
+            synchronized (this) {
+                render();
+
+                // the plain and the gzipped representations are different entities, so each needs its own ETag
+                boolean gzipBody = gzip && acceptsGzip(requestHeaders.getFirst("Accept-Encoding"));
+                String bodyEtag = gzipBody ? gzippedEtag : etag;
+
+                responseHeaders.set("ETag", bodyEtag);
+                responseHeaders.set("Vary", "Accept-Encoding");
+
+                if (bodyEtag.equals(requestHeaders.getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                responseHeaders.set("Content-Type", CONTENT_TYPE);
+
+                ExpositionBuffer body = text;
+                if (gzipBody) {
+                    compress();
+                    body = gzipped;
+                    responseHeaders.set("Content-Encoding", "gzip");
+                }
+
+                if (head) {
+                    responseHeaders.set("Content-Length", String.valueOf(body.size()));
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+
+                exchange.sendResponseHeaders(200, body.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            }
+        }
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        // a simplified check that ignores q-values, which Prometheus doesn't send
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private void render() {
+
+        long now = System.nanoTime();
+        if (rendered && now - renderedAtNanos < cacheTtlNanos) {
+            return;
+        }
+
+        text.reset();
+        writer.write(registry, text);
+
+        crc.reset();
+        crc.update(text.array(), 0, text.size());
+        long newCrc = crc.getValue();
+
+        // the size check makes CRC collisions between the consecutive renderings even less likely
+        if (!rendered || newCrc != textCrc || text.size() != textSize) {
+            textCrc = newCrc;
+            textSize = text.size();
+            gzippedValid = false;
+            String tag = Integer.toHexString(text.size()) + "-" + Long.toHexString(newCrc);
+            etag = "\"" + tag + "\"";
+            gzippedEtag = "\"" + tag + "-gz\"";
+        }
+
+        rendered = true;
+        renderedAtNanos = now;
+    }
+
+    // gzip the text with a reused Deflater, as GZIPOutputStream would allocate a new one with its native buffers on
+    // every call
+    private void compress() {
+
+        if (gzippedValid) {
+            return;
+        }
+
+        gzipped.reset();
+        gzipped.write(GZIP_HEADER);
+
+        deflater.reset();
+        deflater.setInput(text.array(), 0, text.size());
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            gzipped.ensureCapacity(gzipped.size() + 8 * 1024);
+            int len = deflater.deflate(gzipped.array(), gzipped.size(), gzipped.capacity() - gzipped.size());
+            gzipped.setSize(gzipped.size() + len);
+        }
+
+        writeIntLE(gzipped, (int) textCrc);
+        writeIntLE(gzipped, text.size());
+
+        gzippedValid = true;
+    }
+
+    private static void writeIntLE(ExpositionBuffer out, int value) {
+        out.write((byte) value)
+                .write((byte) (value >>> 8))
+                .write((byte) (value >>> 16))
+                .write((byte) (value >>> 24));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+/**
+ * A {@link ReporterFactory} that produces a {@link PrometheusReporter}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a Prometheus scrape endpoint served by the JDK built-in HTTP server.")
+@JsonTypeName("prometheus")
+public class PrometheusReporterFactory implements ReporterFactory {
+
+    static final int DEFAULT_PORT = 9464;
+    static final String DEFAULT_PATH = "/metrics";
+
+    private final ShutdownManager shutdownManager;
+
+    private String host;
+    private int port;
+    private String path;
+    private Boolean gzip;
+    private Duration cacheTtl;
+
+    @Inject
+    public PrometheusReporterFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry) {
+
+        PrometheusReporter reporter;
+        try {
+            reporter = new PrometheusReporter(
+                    metricRegistry,
+                    resolveAddress(),
+                    resolvePath(),
+                    resolveGzip(),
+                    resolveCacheTtl().toNanos());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error starting Prometheus endpoint", e);
+        }
+
+        reporter.start();
+        return shutdownManager.onShutdown(reporter);
+    }
+
+    InetSocketAddress resolveAddress() {
+        int port = this.port > 0 ? this.port : DEFAULT_PORT;
+        return host != null ? new InetSocketAddress(host, port) : new InetSocketAddress(port);
+    }
+
+    String resolvePath() {
+        return path != null ? path : DEFAULT_PATH;
+    }
+
+    boolean resolveGzip() {
+        return gzip == null || gzip;
+    }
+
+    java.time.Duration resolveCacheTtl() {
+        return cacheTtl != null ? cacheTtl.getDuration() : java.time.Duration.ZERO;
+    }
+
+    @BQConfigProperty("Host name or IP address to bind the endpoint to. By default, binds to all interfaces.")
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    @BQConfigProperty("Endpoint port. The default is 9464.")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @BQConfigProperty("Endpoint URL path. The default is '/metrics'.")
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    @BQConfigProperty("Whether to gzip the response for the clients that accept it. The default is 'true'.")
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    @BQConfigProperty("How long a rendered response can be reused for the subsequent scrapes. By default, metrics " +
+            "are rendered on every scrape.")
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+}
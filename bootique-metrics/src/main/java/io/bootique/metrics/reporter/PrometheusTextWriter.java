@@ -0,0 +1,260 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Renders registry metrics in the Prometheus text exposition format (version 0.0.4) directly to a byte buffer. Metric
+ * names are sanitized and encoded once, and then cached together with their "# TYPE" lines, so that rendering a large
+ * registry produces almost no garbage. Dropwizard metrics are mapped the same way as in the Prometheus Dropwizard
+ * exporter: counters and gauges become gauges, meters become counters with the "_total" suffix, histograms and timers
+ * become summaries (timers in seconds). If sanitized names of different metrics collide (e.g. "a.b" and "a_b"), only
+ * the first metric in the exposition order is rendered, as duplicate metric families would make the whole scrape
+ * invalid. Not thread-safe.
+ *
+ * @since 4.0
+ */
+class PrometheusTextWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusTextWriter.class);
+
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+    private static final byte[][] QUANTILE_LABELS = new byte[QUANTILES.length][];
+
+    static {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            QUANTILE_LABELS[i] = ascii("{quantile=\"" + QUANTILES[i] + "\"} ");
+        }
+    }
+
+    private static final byte[] COUNT_SUFFIX = ascii("_count ");
+    private static final double NANOS_TO_SECONDS = 1e-9;
+
+    // keep the caches from growing indefinitely when metrics are removed from the registry
+    private static final int CACHE_SLACK = 1024;
+
+    private final Map<String, EncodedName> gaugeNames;
+    private final Map<String, EncodedName> counterNames;
+    private final Map<String, EncodedName> histogramNames;
+    private final Map<String, EncodedName> meterNames;
+    private final Map<String, EncodedName> timerNames;
+
+    // exposed series names mapped to the metric that claimed them, shared by all metric types
+    private final Map<String, EncodedName> claimedNames;
+
+    PrometheusTextWriter() {
+        this.gaugeNames = new HashMap<>();
+        this.counterNames = new HashMap<>();
+        this.histogramNames = new HashMap<>();
+        this.meterNames = new HashMap<>();
+        this.timerNames = new HashMap<>();
+        this.claimedNames = new HashMap<>();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Converts a Dropwizard metric name to a valid Prometheus metric name, replacing all invalid chars with
+     * underscores.
+     */
+    static String sanitize(String name) {
+        StringBuilder out = new StringBuilder(name.length() + 1);
+
+        if (name.isEmpty() || (name.charAt(0) >= '0' && name.charAt(0) <= '9')) {
+            out.append('_');
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':';
+            out.append(valid ? c : '_');
+        }
+
+        return out.toString();
+    }
+
+    void write(MetricRegistry registry, ExpositionBuffer out) {
+
+        @SuppressWarnings("rawtypes")
+        SortedMap<String, Gauge> gauges = registry.getGauges();
+        pruneCache(gaugeNames, gauges);
+        gauges.forEach((n, g) -> writeGauge(n, g, out));
+
+        SortedMap<String, Counter> counters = registry.getCounters();
+        pruneCache(counterNames, counters);
+        counters.forEach((n, c) -> writeCounter(n, c, out));
+
+        SortedMap<String, Histogram> histograms = registry.getHistograms();
+        pruneCache(histogramNames, histograms);
+        histograms.forEach((n, h) -> writeSummary(histogramNames, n, h.getSnapshot(), 1., h.getCount(), out));
+
+        SortedMap<String, Meter> meters = registry.getMeters();
+        pruneCache(meterNames, meters);
+        meters.forEach((n, m) -> writeMeter(n, m, out));
+
+        SortedMap<String, Timer> timers = registry.getTimers();
+        pruneCache(timerNames, timers);
+        timers.forEach((n, t) -> writeSummary(timerNames, n, t.getSnapshot(), NANOS_TO_SECONDS, t.getCount(), out));
+    }
+
+    private void writeGauge(String name, Gauge<?> gauge, ExpositionBuffer out) {
+
+        Object value = gauge.getValue();
+
+        double v;
+        if (value instanceof Number n) {
+            v = n.doubleValue();
+        } else if (value instanceof Boolean b) {
+            v = b ? 1 : 0;
+        } else {
+            // non-numeric gauges can't be exposed
+            return;
+        }
+
+        EncodedName encoded = gaugeNames.computeIfAbsent(name, n -> encode(n, sanitize(n), "gauge"));
+        if (encoded == EncodedName.SKIPPED) {
+            return;
+        }
+
+        out.write(encoded.typeLine).write(encoded.name).write((byte) ' ').writeDouble(v).write((byte) '\n');
+    }
+
+    private void writeCounter(String name, Counter counter, ExpositionBuffer out) {
+
+        // Dropwizard counters can be decremented, so exposing them as gauges
+        EncodedName encoded = counterNames.computeIfAbsent(name, n -> encode(n, sanitize(n), "gauge"));
+        if (encoded == EncodedName.SKIPPED) {
+            return;
+        }
+
+        out.write(encoded.typeLine).write(encoded.name).write((byte) ' ').writeLong(counter.getCount()).write((byte) '\n');
+    }
+
+    private void writeMeter(String name, Meter meter, ExpositionBuffer out) {
+        EncodedName encoded = meterNames.computeIfAbsent(name, n -> encode(n, sanitize(n) + "_total", "counter"));
+        if (encoded == EncodedName.SKIPPED) {
+            return;
+        }
+
+        out.write(encoded.typeLine).write(encoded.name).write((byte) ' ').writeLong(meter.getCount()).write((byte) '\n');
+    }
+
+    private void writeSummary(
+            Map<String, EncodedName> cache,
+            String name,
+            Snapshot snapshot,
+            double factor,
+            long count,
+            ExpositionBuffer out) {
+
+        EncodedName encoded = cache.computeIfAbsent(name, n -> encode(n, sanitize(n), "summary", "_count"));
+        if (encoded == EncodedName.SKIPPED) {
+            return;
+        }
+
+        out.write(encoded.typeLine);
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            out.write(encoded.name)
+                    .write(QUANTILE_LABELS[i])
+                    .writeDouble(snapshot.getValue(QUANTILES[i]) * factor)
+                    .write((byte) '\n');
+        }
+
+        out.write(encoded.name).write(COUNT_SUFFIX).writeLong(count).write((byte) '\n');
+    }
+
+    // claims the series names of a metric family, returning SKIPPED if any of them is taken by another metric
+    private EncodedName encode(String metricName, String name, String type, String... seriesSuffixes) {
+
+        String[] series = new String[seriesSuffixes.length + 1];
+        series[0] = name;
+        for (int i = 0; i < seriesSuffixes.length; i++) {
+            series[i + 1] = name + seriesSuffixes[i];
+        }
+
+        for (String s : series) {
+            if (claimedNames.containsKey(s)) {
+                LOGGER.warn("Metric '{}' is not exposed, as its name '{}' collides with another metric", metricName, s);
+                return EncodedName.SKIPPED;
+            }
+        }
+
+        EncodedName encoded = new EncodedName(name, type, series);
+        for (String s : series) {
+            claimedNames.put(s, encoded);
+        }
+
+        return encoded;
+    }
+
+    private void pruneCache(Map<String, EncodedName> cache, Map<String, ? extends Metric> metrics) {
+        if (cache.size() > metrics.size() + CACHE_SLACK) {
+            cache.entrySet().removeIf(e -> {
+                if (metrics.containsKey(e.getKey())) {
+                    return false;
+                }
+
+                for (String s : e.getValue().series) {
+                    claimedNames.remove(s, e.getValue());
+                }
+                return true;
+            });
+        }
+    }
+
+    private static class EncodedName {
+
+        // a marker of a metric whose name collides with another metric
+        static final EncodedName SKIPPED = new EncodedName();
+
+        final byte[] name;
+        final byte[] typeLine;
+        final String[] series;
+
+        EncodedName(String name, String type, String[] series) {
+            this.name = ascii(name);
+            this.typeLine = ascii("# TYPE " + name + " " + type + "\n");
+            this.series = series;
+        }
+
+        private EncodedName() {
+            this.name = null;
+            this.typeLine = null;
+            this.series = new String[0];
+        }
+    }
+}
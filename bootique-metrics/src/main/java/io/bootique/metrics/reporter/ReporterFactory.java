@@ -36,4 +36,14 @@ public interface ReporterFactory extends PolymorphicConfiguration {
      * @since 3.0
      */
     Reporter createAndStart(MetricRegistry metricRegistry);
+
+    /**
+     * Creates and starts a reporter that runs its scheduled tasks (if any) on the shared scheduler. The default
+     * implementation ignores the scheduler and delegates to {@link #createAndStart(MetricRegistry)}.
+     *
+     * @since 4.0
+     */
+    default Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        return createAndStart(metricRegistry);
+    }
 }
@@ -0,0 +1,304 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import io.bootique.shutdown.ShutdownManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduler shared by all the app reporters. Instead of each {@link ScheduledReporter} running on its own thread,
+ * reporters are grouped by registry and reporting period, and each group is run as a single task on the shared
+ * executor. Per each tick, the group takes a single snapshot of the registry that is passed to all the reporters of
+ * the group, narrowed down to each reporter's {@link MetricFilter}. If there's more than one reporter in a group,
+ * gauges in the snapshot are also evaluated at most once per tick.
+ *
+ * @since 4.0
+ */
+public class ReporterScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReporterScheduler.class);
+
+    private final ScheduledExecutorService executor;
+    private final Map<GroupKey, ReportingGroup> groups;
+
+    public ReporterScheduler(ScheduledExecutorService executor) {
+        this.executor = executor;
+        this.groups = new HashMap<>();
+    }
+
+    /**
+     * Returns the shared executor. Reporters created for this scheduler should use it instead of creating their own
+     * (and shouldn't shut it down on stop).
+     */
+    public ScheduledExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Schedules periodic reporting of all the registry metrics to the reporter.
+     */
+    public void schedule(MetricRegistry registry, ScheduledReporter reporter, Duration period) {
+        schedule(registry, reporter, period, MetricFilter.ALL);
+    }
+
+    /**
+     * Schedules periodic reporting of the registry metrics to the reporter. Since the scheduler takes a registry
+     * snapshot on behalf of the reporter, the filter should be the same one the reporter was created with.
+     */
+    public synchronized void schedule(MetricRegistry registry, ScheduledReporter reporter, Duration period, MetricFilter filter) {
+
+        long periodMs = period.toMillis();
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("Reporting period must be positive. Got: " + period);
+        }
+
+        groups.computeIfAbsent(new GroupKey(registry, periodMs), k -> new ReportingGroup(registry)).add(reporter, filter, periodMs);
+    }
+
+    /**
+     * Schedules periodic reporting of all the registry metrics to the reporter, and registers the reporter with the
+     * ShutdownManager to be unscheduled and closed on shutdown.
+     *
+     * @return the reporter passed to this method
+     */
+    public <T extends ScheduledReporter> T start(
+            MetricRegistry registry,
+            T reporter,
+            Duration period,
+            ShutdownManager shutdownManager) {
+
+        return start(registry, reporter, period, MetricFilter.ALL, shutdownManager);
+    }
+
+    /**
+     * Schedules periodic reporting of the filtered registry metrics to the reporter, and registers the reporter with
+     * the ShutdownManager to be unscheduled and closed on shutdown.
+     *
+     * @return the reporter passed to this method
+     */
+    public <T extends ScheduledReporter> T start(
+            MetricRegistry registry,
+            T reporter,
+            Duration period,
+            MetricFilter filter,
+            ShutdownManager shutdownManager) {
+
+        schedule(registry, reporter, period, filter);
+        return shutdownManager.onShutdown(reporter, r -> {
+            unschedule(r);
+            r.close();
+        });
+    }
+
+    /**
+     * Stops reporting to the reporter. Note that this doesn't stop the reporter itself.
+     */
+    public synchronized void unschedule(ScheduledReporter reporter) {
+        groups.values().removeIf(g -> g.remove(reporter));
+    }
+
+    /**
+     * Cancels all reporting and shuts down the shared executor.
+     */
+    public synchronized void shutdown() {
+        groups.values().forEach(ReportingGroup::cancel);
+        groups.clear();
+        executor.shutdown();
+    }
+
+    synchronized int getGroupsCount() {
+        return groups.size();
+    }
+
+    private static class GroupKey {
+
+        private final MetricRegistry registry;
+        private final long periodMs;
+
+        GroupKey(MetricRegistry registry, long periodMs) {
+            this.registry = registry;
+            this.periodMs = periodMs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof GroupKey that)) {
+                return false;
+            }
+
+            return registry == that.registry && periodMs == that.periodMs;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(registry) + Long.hashCode(periodMs);
+        }
+    }
+
+    private class ReportingGroup implements Runnable {
+
+        private final MetricRegistry registry;
+        private final List<FilteredReporter> reporters;
+        private ScheduledFuture<?> future;
+
+        ReportingGroup(MetricRegistry registry) {
+            this.registry = registry;
+            this.reporters = new CopyOnWriteArrayList<>();
+        }
+
+        void add(ScheduledReporter reporter, MetricFilter filter, long periodMs) {
+            reporters.add(new FilteredReporter(reporter, filter != null ? filter : MetricFilter.ALL));
+
+            if (future == null) {
+                future = executor.scheduleAtFixedRate(this, periodMs, periodMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // returns true if the group became empty and was cancelled
+        boolean remove(ScheduledReporter reporter) {
+            if (reporters.removeIf(fr -> fr.reporter == reporter) && reporters.isEmpty()) {
+                cancel();
+                return true;
+            }
+
+            return false;
+        }
+
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+
+        @Override
+        public void run() {
+
+            List<FilteredReporter> reporters = this.reporters;
+
+            // ScheduledReporter API uses raw Gauge types
+            @SuppressWarnings("rawtypes")
+            SortedMap<String, Gauge> gauges = registry.getGauges();
+            SortedMap<String, Counter> counters = registry.getCounters();
+            SortedMap<String, Histogram> histograms = registry.getHistograms();
+            SortedMap<String, Meter> meters = registry.getMeters();
+            SortedMap<String, Timer> timers = registry.getTimers();
+
+            if (reporters.size() > 1) {
+                gauges = memoize(gauges);
+            }
+
+            for (FilteredReporter fr : reporters) {
+
+                // an exception would cancel the periodic task, so catch everything
+                try {
+                    MetricFilter f = fr.filter;
+                    if (f == MetricFilter.ALL) {
+                        fr.reporter.report(gauges, counters, histograms, meters, timers);
+                    } else {
+                        fr.reporter.report(
+                                filter(gauges, f),
+                                filter(counters, f),
+                                filter(histograms, f),
+                                filter(meters, f),
+                                filter(timers, f));
+                    }
+                } catch (Throwable e) {
+                    LOGGER.error("Exception thrown from {}#report. Exception was suppressed.", fr.reporter.getClass().getName(), e);
+                }
+            }
+        }
+
+        private <T extends Metric> SortedMap<String, T> filter(SortedMap<String, T> metrics, MetricFilter filter) {
+            SortedMap<String, T> filtered = new TreeMap<>();
+            metrics.forEach((k, v) -> {
+                if (filter.matches(k, v)) {
+                    filtered.put(k, v);
+                }
+            });
+            return filtered;
+        }
+
+        @SuppressWarnings("rawtypes")
+        private SortedMap<String, Gauge> memoize(SortedMap<String, Gauge> gauges) {
+            SortedMap<String, Gauge> memoized = new TreeMap<>();
+            gauges.forEach((k, v) -> memoized.put(k, new MemoizedGauge(v)));
+            return memoized;
+        }
+    }
+
+    private static class FilteredReporter {
+
+        final ScheduledReporter reporter;
+        final MetricFilter filter;
+
+        FilteredReporter(ScheduledReporter reporter, MetricFilter filter) {
+            this.reporter = reporter;
+            this.filter = filter;
+        }
+    }
+
+    // a gauge that is evaluated once per tick. Only accessed from the reporting thread. Typed as Gauge<Object>, so that
+    // it can be placed in the raw gauge maps without unchecked conversions
+    private static class MemoizedGauge implements Gauge<Object> {
+
+        private final Gauge<?> delegate;
+        private boolean evaluated;
+        private Object value;
+
+        MemoizedGauge(Gauge<?> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object getValue() {
+            if (!evaluated) {
+                value = delegate.getValue();
+                evaluated = true;
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Configures a {@link ReporterScheduler} shared by all metrics reporters.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a scheduler shared by all metrics reporters.")
+public class ReporterSchedulerFactory {
+
+    private int threadPoolSize;
+
+    /**
+     * Creates a scheduler running on daemon threads. The caller is responsible for shutting it down.
+     */
+    public ReporterScheduler createScheduler() {
+
+        // threads are started lazily on the first scheduled task, so there's no thread cost if no scheduled reporters
+        // are configured
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(getThreadPoolSize(), threadFactory());
+        executor.setRemoveOnCancelPolicy(true);
+
+        return new ReporterScheduler(executor);
+    }
+
+    protected ThreadFactory threadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "bootique-metrics-reporter-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    protected int getThreadPoolSize() {
+        return threadPoolSize > 0 ? threadPoolSize : 1;
+    }
+
+    @BQConfigProperty("Number of threads used to run reporters. The default is 1.")
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+}
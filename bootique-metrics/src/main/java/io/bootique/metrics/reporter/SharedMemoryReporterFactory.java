@@ -0,0 +1,197 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.metrics.GlobMetricFilter;
+import io.bootique.metrics.shm.SharedMemoryReporter;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReporterFactory} that produces a {@link SharedMemoryReporter}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a reporter that publishes metrics to a memory-mapped file for the sidecar processes to read.")
+@JsonTypeName("shared-memory")
+public class SharedMemoryReporterFactory implements ReporterFactory {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private final ShutdownManager shutdownManager;
+
+    private String file;
+    private Duration period;
+    private int capacity;
+    private Boolean deleteOnClose;
+    private List<String> metrics;
+
+    @Inject
+    public SharedMemoryReporterFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry) {
+        SharedMemoryReporter reporter = createReporter(metricRegistry, null, true);
+        reporter.start(resolvePeriod().toMillis(), TimeUnit.MILLISECONDS);
+        return shutdownManager.onShutdown(reporter);
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        SharedMemoryReporter reporter = createReporter(metricRegistry, scheduler.getExecutor(), false);
+        return scheduler.start(metricRegistry, reporter, resolvePeriod(), resolveFilter(), shutdownManager);
+    }
+
+    protected SharedMemoryReporter createReporter(
+            MetricRegistry metricRegistry,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        Path path = resolveFile();
+        try {
+            if (file == null) {
+                createUserDirectory(path.getParent());
+            }
+
+            return new SharedMemoryReporter(
+                    metricRegistry,
+                    resolveFilter(),
+                    path,
+                    resolveCapacity(),
+                    deleteOnClose == null || deleteOnClose,
+                    executor,
+                    shutdownExecutorOnStop);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error creating shared memory metrics file " + path, e);
+        }
+    }
+
+    // by default the file goes to a well-known location keyed by the user and the process id, so that sidecars can
+    // discover it
+    Path resolveFile() {
+        if (file != null) {
+            return Path.of(file);
+        }
+
+        String dir = "bootique-metrics_" + System.getProperty("user.name");
+        return Path.of(System.getProperty("java.io.tmpdir"), dir, ProcessHandle.current().pid() + ".shm");
+    }
+
+    // Like the JVM "hsperfdata" directory, the default directory is in a shared location, so it must be owned by the
+    // current user and be inaccessible to the others. Otherwise, another user could read the metrics or replace the
+    // files in it
+    static void createUserDirectory(Path dir) throws IOException {
+
+        boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+        try {
+            if (posix) {
+                Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+            } else {
+                Files.createDirectory(dir);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // check the existing directory below
+        }
+
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("Not a directory: " + dir);
+        }
+
+        UserPrincipal owner = Files.getOwner(dir, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = dir.getFileSystem()
+                .getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+
+        if (!owner.equals(user)) {
+            throw new IOException("Directory " + dir + " is owned by '" + owner.getName()
+                    + "' instead of the current user '" + user.getName() + "'");
+        }
+
+        if (posix && !OWNER_ONLY.equals(Files.getPosixFilePermissions(dir, LinkOption.NOFOLLOW_LINKS))) {
+            Files.setPosixFilePermissions(dir, OWNER_ONLY);
+        }
+    }
+
+    MetricFilter resolveFilter() {
+        return GlobMetricFilter.of(metrics);
+    }
+
+    java.time.Duration resolvePeriod() {
+        return period != null ? period.getDuration() : java.time.Duration.of(1, ChronoUnit.SECONDS);
+    }
+
+    int resolveCapacity() {
+        return capacity > 0 ? capacity : DEFAULT_CAPACITY;
+    }
+
+    @BQConfigProperty("Path of the memory-mapped file. The file is recreated on startup and, on POSIX systems, is only " +
+            "accessible to the app user. The default is '[java.io.tmpdir]/bootique-metrics_[user]/[pid].shm', with " +
+            "the directory only accessible to the app user.")
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    @BQConfigProperty("Set the amount of time between updates of the file. Default value is 1 second.")
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    @BQConfigProperty("Max number of metrics in the file. Each metric takes 256 bytes. The default is 1024.")
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @BQConfigProperty("Whether to delete the file when the app is stopped. The default is true.")
+    public void setDeleteOnClose(boolean deleteOnClose) {
+        this.deleteOnClose = deleteOnClose;
+    }
+
+    @BQConfigProperty("Glob patterns of the names of the metrics to publish. '*' matches any chars, including dots. " +
+            "If omitted, all metrics are published (up to the capacity).")
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+}
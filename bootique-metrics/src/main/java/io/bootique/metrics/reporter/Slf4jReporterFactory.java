@@ -55,6 +55,19 @@ public class Slf4jReporterFactory implements ReporterFactory {
         return shutdownManager.onShutdown(reporter);
     }
 
+    /**
+     * @since 4.0
+     */
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        Slf4jReporter reporter = Slf4jReporter.forRegistry(metricRegistry)
+                .scheduleOn(scheduler.getExecutor())
+                .shutdownExecutorOnStop(false)
+                .build();
+
+        return scheduler.start(metricRegistry, reporter, resolvePeriod(), shutdownManager);
+    }
+
     java.time.Duration resolvePeriod() {
         return period != null ? period.getDuration() : java.time.Duration.of(30, ChronoUnit.SECONDS);
     }
@@ -0,0 +1,319 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ScheduledReporter} that pushes registry metrics to a StatsD (or DogStatsD) agent over UDP. Metric lines are
+ * packed into datagrams of up to the configured max size, that should fit into the network MTU. Lines are built in a
+ * reused buffer and copied to a reused direct buffer sent via a connected {@link DatagramChannel}, and encoded metric
+ * names are cached, so the send path doesn't allocate. All metrics are sent as gauges with their current values, as
+ * Dropwizard counters and meters are cumulative. Timer values are in milliseconds.
+ *
+ * @since 4.0
+ */
+public class StatsdReporter extends ScheduledReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatsdReporter.class);
+
+    private static final int VALUE_SCALE = 6;
+
+    // values that would overflow the fixed-point formatting are written via ExpositionBuffer.writeDouble(..) instead
+    private static final double MAX_FIXED_VALUE = 1e12;
+
+    private static final byte[] COUNT = ascii(".count:");
+    private static final byte[] MIN = ascii(".min:");
+    private static final byte[] MAX = ascii(".max:");
+    private static final byte[] MEAN = ascii(".mean:");
+    private static final byte[] P50 = ascii(".p50:");
+    private static final byte[] P75 = ascii(".p75:");
+    private static final byte[] P95 = ascii(".p95:");
+    private static final byte[] P99 = ascii(".p99:");
+    private static final byte[] P999 = ascii(".p999:");
+    private static final byte[] M1_RATE = ascii(".m1_rate:");
+    private static final byte[] M5_RATE = ascii(".m5_rate:");
+    private static final byte[] M15_RATE = ascii(".m15_rate:");
+    private static final byte[] VALUE_SEPARATOR = ascii(":");
+    private static final byte[] GAUGE_TYPE = ascii("|g");
+
+    private static final double NANOS_TO_MILLIS = 1e-6;
+
+    private final DatagramChannel channel;
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final Map<String, byte[]> names;
+
+    // send path buffers, guarded by "this"
+    private final ExpositionBuffer line;
+    private final ByteBuffer packet;
+    private int sendErrors;
+
+    public StatsdReporter(
+            MetricRegistry registry,
+            InetSocketAddress address,
+            String prefix,
+            Map<String, String> tags,
+            int maxPacketSize,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) throws IOException {
+
+        super(registry, "statsd-reporter", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, executor, shutdownExecutorOnStop);
+
+        if (maxPacketSize < 64) {
+            throw new IllegalArgumentException("Max packet size is too small: " + maxPacketSize);
+        }
+
+        this.prefix = prefix != null && !prefix.isEmpty() ? ascii(sanitize(prefix) + ".") : new byte[0];
+        this.suffix = ascii(encodeTags(tags));
+        this.names = new HashMap<>();
+        this.line = new ExpositionBuffer(256);
+        this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+
+        this.channel = DatagramChannel.open();
+        this.channel.connect(address);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Replaces the chars with special meaning in the StatsD protocol, whitespace and non-ASCII chars with underscores.
+     */
+    static String sanitize(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = c > ' ' && c < 127 && c != ':' && c != '|' && c != '@' && c != '#' && c != ',';
+            out.append(valid ? c : '_');
+        }
+        return out.toString();
+    }
+
+    // DogStatsD tags suffix
+    static String encodeTags(Map<String, String> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder out = new StringBuilder("|#");
+        tags.forEach((k, v) -> {
+            if (out.length() > 2) {
+                out.append(',');
+            }
+
+            out.append(sanitize(k));
+            if (v != null && !v.isEmpty()) {
+                out.append(':').append(sanitize(v));
+            }
+        });
+
+        return out.toString();
+    }
+
+    @Override
+    public synchronized void report(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+
+        if (!channel.isOpen()) {
+            return;
+        }
+
+        sendErrors = 0;
+        packet.clear();
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            Object value = e.getValue().getValue();
+            if (value instanceof Number n) {
+                writeGauge(name(e.getKey()), VALUE_SEPARATOR, n.doubleValue());
+            } else if (value instanceof Boolean b) {
+                writeGauge(name(e.getKey()), VALUE_SEPARATOR, b ? 1 : 0);
+            }
+        }
+
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            writeGauge(name(e.getKey()), VALUE_SEPARATOR, e.getValue().getCount());
+        }
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            Histogram h = e.getValue();
+            writeSnapshot(name(e.getKey()), h.getCount(), h.getSnapshot(), 1.);
+        }
+
+        for (Map.Entry<String, Meter> e : meters.entrySet()) {
+            byte[] name = name(e.getKey());
+            Meter m = e.getValue();
+            writeGauge(name, COUNT, m.getCount());
+            writeGauge(name, M1_RATE, convertRate(m.getOneMinuteRate()));
+            writeGauge(name, M5_RATE, convertRate(m.getFiveMinuteRate()));
+            writeGauge(name, M15_RATE, convertRate(m.getFifteenMinuteRate()));
+        }
+
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            Timer t = e.getValue();
+            writeSnapshot(name(e.getKey()), t.getCount(), t.getSnapshot(), NANOS_TO_MILLIS);
+        }
+
+        flush();
+
+        if (sendErrors > 0) {
+            LOGGER.warn("Failed to send {} StatsD packet(s)", sendErrors);
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            synchronized (this) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Error closing StatsD channel", e);
+                }
+            }
+        }
+    }
+
+    private byte[] name(String name) {
+        byte[] encoded = names.get(name);
+        if (encoded == null) {
+
+            // keep the cache from growing indefinitely when metrics are removed from the registry
+            if (names.size() > 100_000) {
+                names.clear();
+            }
+
+            encoded = concat(prefix, ascii(sanitize(name)));
+            names.put(name, encoded);
+        }
+
+        return encoded;
+    }
+
+    private static byte[] concat(byte[] b1, byte[] b2) {
+        byte[] result = new byte[b1.length + b2.length];
+        System.arraycopy(b1, 0, result, 0, b1.length);
+        System.arraycopy(b2, 0, result, b1.length, b2.length);
+        return result;
+    }
+
+    private void writeSnapshot(byte[] name, long count, Snapshot snapshot, double factor) {
+        writeGauge(name, COUNT, count);
+        writeGauge(name, MIN, snapshot.getMin() * factor);
+        writeGauge(name, MAX, snapshot.getMax() * factor);
+        writeGauge(name, MEAN, snapshot.getMean() * factor);
+        writeGauge(name, P50, snapshot.getMedian() * factor);
+        writeGauge(name, P75, snapshot.get75thPercentile() * factor);
+        writeGauge(name, P95, snapshot.get95thPercentile() * factor);
+        writeGauge(name, P99, snapshot.get99thPercentile() * factor);
+        writeGauge(name, P999, snapshot.get999thPercentile() * factor);
+    }
+
+    private void writeGauge(byte[] name, byte[] separator, double value) {
+
+        // StatsD has no representation for these
+        if (!Double.isFinite(value)) {
+            return;
+        }
+
+        line.reset();
+
+        // a signed gauge value is interpreted as a delta, so a negative value must be preceded by a reset to zero
+        if (value < 0) {
+            line.write(name).write(separator).write((byte) '0').write(GAUGE_TYPE).write(suffix).write((byte) '\n');
+        }
+
+        line.write(name).write(separator);
+        if (Math.abs(value) < MAX_FIXED_VALUE) {
+            line.writeFixed(value, VALUE_SCALE);
+        } else {
+            line.writeDouble(value);
+        }
+        line.write(GAUGE_TYPE).write(suffix);
+
+        appendLine();
+    }
+
+    private void appendLine() {
+
+        // the line is added with a leading newline separator unless it is first in the packet
+        int len = line.size() + (packet.position() > 0 ? 1 : 0);
+
+        if (len > packet.remaining()) {
+            flush();
+            len = line.size();
+
+            if (len > packet.remaining()) {
+                LOGGER.debug("Skipping a metric line that exceeds the max packet size");
+                return;
+            }
+        }
+
+        if (packet.position() > 0) {
+            packet.put((byte) '\n');
+        }
+
+        packet.put(line.array(), 0, line.size());
+    }
+
+    private void flush() {
+        if (packet.position() == 0) {
+            return;
+        }
+
+        packet.flip();
+        try {
+            channel.write(packet);
+        } catch (IOException e) {
+            // e.g. PortUnreachableException if there's no agent listening. There's nothing to do about it, other
+            // than to try again on the next tick
+            sendErrors++;
+        }
+
+        packet.clear();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.shutdown.ShutdownManager;
+import io.bootique.value.Duration;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReporterFactory} that produces a {@link StatsdReporter}.
+ *
+ * @since 4.0
+ */
+@BQConfig("Configures a reporter that pushes metrics to a StatsD or DogStatsD agent over UDP.")
+@JsonTypeName("statsd")
+public class StatsdReporterFactory implements ReporterFactory {
+
+    static final String DEFAULT_HOST = "localhost";
+    static final int DEFAULT_PORT = 8125;
+
+    // fits into the Ethernet MTU of 1500 bytes with IP and UDP headers, and some room for IP options and tunneling
+    static final int DEFAULT_MAX_PACKET_SIZE = 1432;
+
+    private final ShutdownManager shutdownManager;
+
+    private String host;
+    private int port;
+    private Duration period;
+    private String prefix;
+    private Map<String, String> tags;
+    private int maxPacketSize;
+
+    @Inject
+    public StatsdReporterFactory(ShutdownManager shutdownManager) {
+        this.shutdownManager = shutdownManager;
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry) {
+        StatsdReporter reporter = createReporter(metricRegistry, null, true);
+        reporter.start(resolvePeriod().toMillis(), TimeUnit.MILLISECONDS);
+        return shutdownManager.onShutdown(reporter);
+    }
+
+    @Override
+    public Reporter createAndStart(MetricRegistry metricRegistry, ReporterScheduler scheduler) {
+        StatsdReporter reporter = createReporter(metricRegistry, scheduler.getExecutor(), false);
+        return scheduler.start(metricRegistry, reporter, resolvePeriod(), shutdownManager);
+    }
+
+    protected StatsdReporter createReporter(
+            MetricRegistry metricRegistry,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) {
+
+        try {
+            return new StatsdReporter(
+                    metricRegistry,
+                    resolveAddress(),
+                    prefix,
+                    tags,
+                    resolveMaxPacketSize(),
+                    executor,
+                    shutdownExecutorOnStop);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening StatsD channel", e);
+        }
+    }
+
+    InetSocketAddress resolveAddress() {
+        return new InetSocketAddress(host != null ? host : DEFAULT_HOST, port > 0 ? port : DEFAULT_PORT);
+    }
+
+    java.time.Duration resolvePeriod() {
+        return period != null ? period.getDuration() : java.time.Duration.of(10, ChronoUnit.SECONDS);
+    }
+
+    int resolveMaxPacketSize() {
+        return maxPacketSize > 0 ? maxPacketSize : DEFAULT_MAX_PACKET_SIZE;
+    }
+
+    @BQConfigProperty("StatsD agent host. The default is 'localhost'.")
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    @BQConfigProperty("StatsD agent UDP port. The default is 8125.")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @BQConfigProperty("Set the amount of time between pushes. Default value is 10 seconds.")
+    public void setPeriod(Duration period) {
+        this.period = period;
+    }
+
+    @BQConfigProperty("Optional prefix prepended to all metric names, separated with a dot.")
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @BQConfigProperty("Optional DogStatsD tags appended to every metric. Tags with empty values are sent as " +
+            "value-less tags.")
+    public void setTags(Map<String, String> tags) {
+        this.tags = tags;
+    }
+
+    @BQConfigProperty("Max size of a UDP datagram payload in bytes. Should fit into the network MTU. " +
+            "The default is 1432.")
+    public void setMaxPacketSize(int maxPacketSize) {
+        this.maxPacketSize = maxPacketSize;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+
+/**
+ * A reservoir backed by HdrHistogram {@link Recorder}s, that records every value (with the configured precision)
+ * instead of sampling. Updates are wait-free. To avoid contention between the writers on many cores, values are
+ * recorded into a number of striped recorders, with a stripe picked by the thread id. Snapshots contain the values
+ * recorded since the previous snapshot and are taken by swapping the recorder buffers, so the writers are never
+ * blocked. A snapshot is reused for the "snapshot interval", so that multiple reporters running at the same time see
+ * the same data instead of stealing intervals from each other. Negative values are recorded as zeros.
+ *
+ * @since 4.0
+ */
+public class HdrHistogramReservoir implements Reservoir {
+
+    private final Recorder[] stripes;
+    private final long snapshotIntervalNanos;
+    private final Clock clock;
+
+    // guarded by "this"
+    private final Histogram[] recycled;
+    private final Histogram interval;
+
+    // written under the lock, but read without it
+    private volatile long lastSnapshotTick;
+    private volatile Snapshot snapshot;
+
+    public HdrHistogramReservoir(int significantDigits, int stripes, Duration snapshotInterval) {
+        this(significantDigits, stripes, snapshotInterval, Clock.defaultClock());
+    }
+
+    public HdrHistogramReservoir(int significantDigits, int stripes, Duration snapshotInterval, Clock clock) {
+
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes count must be a positive power of 2: " + stripes);
+        }
+
+        this.stripes = new Recorder[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Recorder(significantDigits);
+        }
+
+        this.snapshotIntervalNanos = snapshotInterval.toNanos();
+        this.clock = clock;
+        this.recycled = new Histogram[stripes];
+        this.interval = new Histogram(significantDigits);
+    }
+
+    /**
+     * Returns the number of values in the last taken snapshot, or zero if no snapshot was taken yet. Unlike
+     * {@link #getSnapshot()}, never swaps the recorder buffers, so calling it doesn't start a new interval.
+     */
+    @Override
+    public int size() {
+        Snapshot s = snapshot;
+        return s != null ? s.size() : 0;
+    }
+
+    @Override
+    public void update(long value) {
+        stripe().recordValue(Math.max(value, 0));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+
+        long tick = clock.getTick();
+        Snapshot s = snapshot;
+        if (s != null && tick - lastSnapshotTick < snapshotIntervalNanos) {
+            return s;
+        }
+
+        synchronized (this) {
+
+            // another reader may have swapped the buffers while we were waiting
+            if (snapshot != null && tick - lastSnapshotTick < snapshotIntervalNanos) {
+                return snapshot;
+            }
+
+            interval.reset();
+            for (int i = 0; i < stripes.length; i++) {
+                recycled[i] = stripes[i].getIntervalHistogram(recycled[i]);
+                interval.add(recycled[i]);
+            }
+
+            lastSnapshotTick = tick;
+            return snapshot = new HdrHistogramSnapshot(interval.copy());
+        }
+    }
+
+    private Recorder stripe() {
+        long id = Thread.currentThread().threadId();
+
+        // spread sequential thread ids
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Reservoir;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.value.Duration;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * @since 4.0
+ */
+@BQConfig("HdrHistogram-backed reservoir that records every value with wait-free striped recorders. Snapshots " +
+        "contain the values recorded since the previous snapshot. Suitable for the hottest histograms and timers " +
+        "that need accurate high percentiles.")
+@JsonTypeName("hdr")
+public class HdrHistogramReservoirFactory extends ReservoirFactory {
+
+    static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    // each stripe holds a pair of histograms per metric, so capping the count on the machines with many cores
+    static final int MAX_DEFAULT_STRIPES = 8;
+
+    private int significantDigits;
+    private int stripes;
+    private Duration snapshotInterval;
+
+    @Override
+    public Reservoir createReservoir() {
+        return new HdrHistogramReservoir(resolveSignificantDigits(), resolveStripes(), resolveSnapshotInterval());
+    }
+
+    int resolveSignificantDigits() {
+        if (significantDigits < 0 || significantDigits > 5) {
+            throw new IllegalArgumentException("'significantDigits' must be between 0 and 5: " + significantDigits);
+        }
+
+        return significantDigits > 0 ? significantDigits : DEFAULT_SIGNIFICANT_DIGITS;
+    }
+
+    int resolveStripes() {
+        int n = stripes > 0 ? stripes : Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_STRIPES);
+
+        // round up to a power of 2
+        return n > 1 ? Integer.highestOneBit(n - 1) << 1 : 1;
+    }
+
+    java.time.Duration resolveSnapshotInterval() {
+        return snapshotInterval != null
+                ? snapshotInterval.getDuration()
+                : java.time.Duration.of(1, ChronoUnit.SECONDS);
+    }
+
+    @BQConfigProperty("Number of significant decimal digits of the recorded values, between 1 and 5. " +
+            "The default is 2 (i.e. 1% precision).")
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+    @BQConfigProperty("Number of recorders to spread the concurrent updates over. Rounded up to a power of 2. " +
+            "Each recorder takes tens of KB per metric, depending on the range of values. The default is the " +
+            "number of CPUs, up to 8.")
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    @BQConfigProperty("Min time between swapping the recorder buffers. Snapshots taken within this interval from " +
+            "the previous swap return the same data. Should be shorter than the reporting period. As each swap only " +
+            "returns the values recorded since the previous one, reporters running on different periods (including " +
+            "JMX reads) split the recorded values between them. The default is 1 second.")
+    public void setSnapshotInterval(Duration snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+}
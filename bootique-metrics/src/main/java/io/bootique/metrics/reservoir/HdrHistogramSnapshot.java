@@ -0,0 +1,105 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Snapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A snapshot of an {@link HdrHistogramReservoir} interval. Quantiles and statistics are calculated from the full
+ * histogram. As the histogram doesn't keep individual values, {@link #getValues()} returns a single representative
+ * value for each non-empty histogram bucket.
+ *
+ * @since 4.0
+ */
+public class HdrHistogramSnapshot extends Snapshot {
+
+    private final Histogram histogram;
+
+    public HdrHistogramSnapshot(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+
+        return histogram.getTotalCount() > 0 ? histogram.getValueAtPercentile(quantile * 100.0) : 0.0;
+    }
+
+    @Override
+    public long[] getValues() {
+        long[] values = new long[64];
+        int size = 0;
+        for (HistogramIterationValue v : histogram.recordedValues()) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = histogram.highestEquivalentValue(v.getValueIteratedTo());
+        }
+
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns the number of values recorded in the interval, capped at {@link Integer#MAX_VALUE}.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(histogram.getTotalCount(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getMax() {
+        return histogram.getTotalCount() > 0 ? histogram.getMaxValue() : 0;
+    }
+
+    @Override
+    public double getMean() {
+        return histogram.getTotalCount() > 0 ? histogram.getMean() : 0.0;
+    }
+
+    @Override
+    public long getMin() {
+        return histogram.getTotalCount() > 0 ? histogram.getMinValue() : 0;
+    }
+
+    @Override
+    public double getStdDev() {
+        return histogram.getTotalCount() > 1 ? histogram.getStdDeviation() : 0.0;
+    }
+
+    @Override
+    public void dump(OutputStream output) {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            for (long value : getValues()) {
+                out.printf("%d%n", value);
+            }
+        }
+    }
+}
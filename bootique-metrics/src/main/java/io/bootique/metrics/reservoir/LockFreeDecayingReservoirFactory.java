@@ -0,0 +1,64 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.LockFreeExponentiallyDecayingReservoir;
+import com.codahale.metrics.Reservoir;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+
+/**
+ * @since 4.0
+ */
+@BQConfig("Exponentially decaying reservoir with the same statistical properties as 'exponentially-decaying', " +
+        "that doesn't take locks on update. Suitable for the hottest histograms and timers.")
+@JsonTypeName("lock-free-decaying")
+public class LockFreeDecayingReservoirFactory extends ReservoirFactory {
+
+    private int size;
+    private double alpha;
+
+    @Override
+    public Reservoir createReservoir() {
+        return LockFreeExponentiallyDecayingReservoir.builder()
+                .size(resolveSize())
+                .alpha(resolveAlpha())
+                .build();
+    }
+
+    int resolveSize() {
+        return size > 0 ? size : DEFAULT_SIZE;
+    }
+
+    double resolveAlpha() {
+        return alpha > 0 ? alpha : ExponentiallyDecayingReservoirFactory.DEFAULT_ALPHA;
+    }
+
+    @BQConfigProperty("Number of samples to keep. The default is 1028.")
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    @BQConfigProperty("Exponential decay factor. The higher, the more biased the reservoir is towards newer " +
+            "values. The default is 0.015.")
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+}
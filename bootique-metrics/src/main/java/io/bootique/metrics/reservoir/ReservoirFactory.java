@@ -0,0 +1,68 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Reservoir;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.config.PolymorphicConfiguration;
+import io.bootique.metrics.GlobMetricFilter;
+
+import java.util.List;
+
+/**
+ * Superclass of factories of histogram and timer reservoirs, each applied to the metrics with names matching its
+ * glob patterns.
+ *
+ * @since 4.0
+ */
+@BQConfig
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type", defaultImpl = ExponentiallyDecayingReservoirFactory.class)
+public abstract class ReservoirFactory implements PolymorphicConfiguration {
+
+    static final int DEFAULT_SIZE = 1028;
+
+    private List<String> metrics;
+
+    public abstract Reservoir createReservoir();
+
+    /**
+     * Returns whether this reservoir applies to the named metric.
+     */
+    public boolean matches(String metricName) {
+        if (metrics == null || metrics.isEmpty()) {
+            return true;
+        }
+
+        for (String p : metrics) {
+            if (GlobMetricFilter.matches(p, metricName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @BQConfigProperty("Glob patterns of the names of histograms and timers that should use this reservoir. '*' " +
+            "matches any chars, including dots. If omitted, the reservoir applies to all histograms and timers.")
+    public void setMetrics(List<String> metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry that creates histograms and timers with the reservoirs configured for their names. Reservoir factories
+ * are checked in order, and the first one matching a metric name wins. Metrics with no matching factory get the
+ * default reservoir. Matching is done once per name, so that the callers looking up metrics by name on every call
+ * don't pay for it repeatedly.
+ *
+ * @since 4.0
+ */
+public class ReservoirMetricRegistry extends MetricRegistry {
+
+    private static final Suppliers NO_MATCH = new Suppliers(null, null, null);
+
+    private final List<Suppliers> reservoirs;
+    private final Map<String, Suppliers> matches;
+
+    public ReservoirMetricRegistry(List<ReservoirFactory> reservoirs) {
+
+        // the suppliers are created upfront, so looking up an existing metric doesn't allocate
+        this.reservoirs = reservoirs.stream().map(Suppliers::of).toList();
+        this.matches = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public Histogram histogram(String name) {
+        Suppliers suppliers = suppliersFor(name);
+        return suppliers != NO_MATCH
+                ? histogram(name, suppliers.histograms)
+                : super.histogram(name);
+    }
+
+    @Override
+    public Timer timer(String name) {
+        Suppliers suppliers = suppliersFor(name);
+        return suppliers != NO_MATCH
+                ? timer(name, suppliers.timers)
+                : super.timer(name);
+    }
+
+    private Suppliers suppliersFor(String name) {
+        return matches.computeIfAbsent(name, this::findSuppliers);
+    }
+
+    private Suppliers findSuppliers(String name) {
+        for (Suppliers s : reservoirs) {
+            if (s.factory.matches(name)) {
+                return s;
+            }
+        }
+
+        return NO_MATCH;
+    }
+
+    private static final class Suppliers {
+
+        final ReservoirFactory factory;
+        final MetricSupplier<Histogram> histograms;
+        final MetricSupplier<Timer> timers;
+
+        Suppliers(ReservoirFactory factory, MetricSupplier<Histogram> histograms, MetricSupplier<Timer> timers) {
+            this.factory = factory;
+            this.histograms = histograms;
+            this.timers = timers;
+        }
+
+        static Suppliers of(ReservoirFactory factory) {
+            return new Suppliers(
+                    factory,
+                    () -> new Histogram(factory.createReservoir()),
+                    () -> new Timer(factory.createReservoir()));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import io.bootique.annotation.BQConfig;
+import io.bootique.annotation.BQConfigProperty;
+import io.bootique.value.Duration;
+
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @since 4.0
+ */
+@BQConfig("Reservoir that keeps all the values recorded within a sliding time window. Gives exact percentiles " +
+        "for the window, but its memory grows with the update rate.")
+@JsonTypeName("sliding-time-window")
+public class SlidingTimeWindowReservoirFactory extends ReservoirFactory {
+
+    private Duration window;
+
+    @Override
+    public Reservoir createReservoir() {
+        return new SlidingTimeWindowArrayReservoir(resolveWindow().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    java.time.Duration resolveWindow() {
+        return window != null ? window.getDuration() : java.time.Duration.of(1, ChronoUnit.MINUTES);
+    }
+
+    @BQConfigProperty("Length of the window. The default is 1 minute.")
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Binary layout of the shared memory metrics file written by {@link SharedMemoryReporter}. Intended as a reference
+ * for the readers implemented in other languages. All numbers are little-endian, and all longs and doubles are
+ * 8-byte aligned.
+ * <p>
+ * The file starts with a {@link #HEADER_SIZE}-byte header, followed by {@link #OFFSET_CAPACITY capacity} fixed-size
+ * entries of {@link #ENTRY_SIZE} bytes each. Each metric occupies the same entry for as long as the file exists, so
+ * readers may cache entry positions by name. An entry of a metric missing from the latest snapshot has the
+ * {@link #TYPE_EMPTY} type.
+ * <p>
+ * Consistency is ensured with a sequence lock in the header. The writer makes the sequence odd before the update,
+ * and even after it. A reader reads the sequence, copies the data it needs and reads the sequence again. If the two
+ * values differ or are odd, the copy is inconsistent and must be retried.
+ *
+ * @since 4.0
+ */
+public final class SharedMemoryLayout {
+
+    public static final int MAGIC = 0x4D535142; // "BQSM" bytes in little-endian order
+    public static final int VERSION = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int OFFSET_MAGIC = 0;
+    public static final int OFFSET_VERSION = 4;
+    public static final int OFFSET_SEQUENCE = 8;
+    public static final int OFFSET_TIMESTAMP = 16;
+    public static final int OFFSET_PID = 24;
+    public static final int OFFSET_ENTRY_COUNT = 32;
+    public static final int OFFSET_CAPACITY = 36;
+    public static final int OFFSET_ENTRY_SIZE = 40;
+
+    public static final int ENTRY_SIZE = 256;
+    public static final int ENTRY_TYPE = 0;
+    public static final int ENTRY_NAME_LENGTH = 2;
+    public static final int ENTRY_NAME = 8;
+    public static final int MAX_NAME_BYTES = 120;
+
+    // counter value, or the count of a meter, a histogram or a timer
+    public static final int ENTRY_COUNT = 128;
+
+    // gauge value, or the one-minute rate of a meter or a timer
+    public static final int ENTRY_VALUE = 136;
+
+    // summary of a histogram or a timer; timer durations are in nanoseconds
+    public static final int ENTRY_MIN = 144;
+    public static final int ENTRY_MAX = 152;
+    public static final int ENTRY_MEAN = 160;
+    public static final int ENTRY_STDDEV = 168;
+    public static final int ENTRY_P50 = 176;
+    public static final int ENTRY_P75 = 184;
+    public static final int ENTRY_P95 = 192;
+    public static final int ENTRY_P99 = 200;
+    public static final int ENTRY_P999 = 208;
+
+    public static final byte TYPE_EMPTY = 0;
+    public static final byte TYPE_COUNTER = 1;
+    public static final byte TYPE_GAUGE = 2;
+    public static final byte TYPE_HISTOGRAM = 3;
+    public static final byte TYPE_METER = 4;
+    public static final byte TYPE_TIMER = 5;
+
+    // provides atomic and ordered access to the sequence in a direct or a mapped buffer
+    static final VarHandle LONG_HANDLE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private SharedMemoryLayout() {
+    }
+
+    public static int entryOffset(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    public static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+/**
+ * A single metric decoded from a shared memory metrics file. Depending on the metric type, some of the values are
+ * not applicable and are set to zero.
+ *
+ * @since 4.0
+ */
+public final class SharedMemoryMetric {
+
+    public enum Type {
+        COUNTER, GAUGE, HISTOGRAM, METER, TIMER
+    }
+
+    private final String name;
+    private final Type type;
+    private final long count;
+    private final double value;
+    private final double[] summary;
+
+    SharedMemoryMetric(String name, Type type, long count, double value, double[] summary) {
+        this.name = name;
+        this.type = type;
+        this.count = count;
+        this.value = value;
+        this.summary = summary;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns a counter value, or the count of a histogram, a meter or a timer.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a gauge value, or the one-minute rate of a meter or a timer in events per second.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    // summary values of histograms and timers. Timer durations are in nanoseconds
+
+    public double getMin() {
+        return summary[0];
+    }
+
+    public double getMax() {
+        return summary[1];
+    }
+
+    public double getMean() {
+        return summary[2];
+    }
+
+    public double getStdDev() {
+        return summary[3];
+    }
+
+    public double getMedian() {
+        return summary[4];
+    }
+
+    public double get75thPercentile() {
+        return summary[5];
+    }
+
+    public double get95thPercentile() {
+        return summary[6];
+    }
+
+    public double get99thPercentile() {
+        return summary[7];
+    }
+
+    public double get999thPercentile() {
+        return summary[8];
+    }
+
+    @Override
+    public String toString() {
+        return "SharedMemoryMetric{" + name + ", " + type + "}";
+    }
+}
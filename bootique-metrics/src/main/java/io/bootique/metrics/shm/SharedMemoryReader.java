@@ -0,0 +1,202 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import static io.bootique.metrics.shm.SharedMemoryLayout.*;
+
+/**
+ * Reads metrics from a shared memory file published by {@link SharedMemoryReporter}, normally from a sidecar
+ * process. The file is mapped once, and each {@link #read()} copies the used part of it under the sequence lock and
+ * decodes the copy, so the writer is never blocked or slowed down by the readers. Not thread-safe.
+ *
+ * @since 4.0
+ */
+public class SharedMemoryReader {
+
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+
+    // an update normally takes microseconds, so a read is retried right away a few times, before backing off
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final long MIN_PARK_NANOS = 1_000L;
+    private static final long MAX_PARK_NANOS = 1_000_000L;
+
+    private static final SharedMemoryMetric.Type[] TYPES = {
+            null,
+            SharedMemoryMetric.Type.COUNTER,
+            SharedMemoryMetric.Type.GAUGE,
+            SharedMemoryMetric.Type.HISTOGRAM,
+            SharedMemoryMetric.Type.METER,
+            SharedMemoryMetric.Type.TIMER
+    };
+
+    private static final double[] NO_SUMMARY = new double[9];
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long timeoutNanos;
+    private byte[] copy;
+
+    private SharedMemoryReader(MappedByteBuffer buffer, Duration timeout) {
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(OFFSET_CAPACITY);
+        this.timeoutNanos = timeout.toNanos();
+        this.copy = new byte[0];
+    }
+
+    public static SharedMemoryReader open(Path file) throws IOException {
+        return open(file, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Maps the file for reading.
+     *
+     * @param timeout how long to keep retrying the reads that overlap with updates, before giving up. The retries
+     *                back off from spinning to parking the thread, so a slow writer doesn't make the reader burn CPU
+     */
+    public static SharedMemoryReader open(Path file, Duration timeout) throws IOException {
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(OFFSET_MAGIC) != MAGIC) {
+            throw new IOException("Not a shared memory metrics file: " + file);
+        }
+
+        int version = buffer.getInt(OFFSET_VERSION);
+        if (version != VERSION) {
+            throw new IOException("Unsupported shared memory metrics file version " + version + ": " + file);
+        }
+
+        if (buffer.getInt(OFFSET_ENTRY_SIZE) != ENTRY_SIZE
+                || buffer.limit() < fileSize(buffer.getInt(OFFSET_CAPACITY))) {
+            throw new IOException("Corrupted shared memory metrics file: " + file);
+        }
+
+        return new SharedMemoryReader(buffer, timeout);
+    }
+
+    /**
+     * Returns a consistent snapshot of the published metrics.
+     *
+     * @throws IllegalStateException if a consistent snapshot could not be obtained within the timeout
+     */
+    public SharedMemorySnapshot read() {
+
+        long start = System.nanoTime();
+        long parkNanos = MIN_PARK_NANOS;
+
+        for (int attempt = 1; ; attempt++) {
+
+            SharedMemorySnapshot snapshot = tryRead();
+            if (snapshot != null) {
+                return snapshot;
+            }
+
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            if (System.nanoTime() - start > timeoutNanos) {
+                throw new IllegalStateException("Failed to read a consistent snapshot in "
+                        + Duration.ofNanos(timeoutNanos).toMillis() + " ms");
+            }
+
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    // returns null if the read overlapped with an update
+    private SharedMemorySnapshot tryRead() {
+
+        long before = (long) LONG_HANDLE.getAcquire(buffer, OFFSET_SEQUENCE);
+        if ((before & 1) != 0) {
+            return null;
+        }
+
+        int entryCount = Math.min(Math.max(buffer.getInt(OFFSET_ENTRY_COUNT), 0), capacity);
+        int length = entryOffset(entryCount);
+        if (copy.length < length) {
+            copy = new byte[length];
+        }
+
+        buffer.get(0, copy, 0, length);
+
+        // the copy must complete before the sequence is re-read
+        VarHandle.loadLoadFence();
+        long after = (long) LONG_HANDLE.getOpaque(buffer, OFFSET_SEQUENCE);
+        return before == after
+                ? decode(ByteBuffer.wrap(copy, 0, length).order(ByteOrder.LITTLE_ENDIAN), entryCount, before)
+                : null;
+    }
+
+    private static SharedMemorySnapshot decode(ByteBuffer data, int entryCount, long sequence) {
+
+        Map<String, SharedMemoryMetric> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < entryCount; i++) {
+            int offset = entryOffset(i);
+            byte type = data.get(offset + ENTRY_TYPE);
+            if (type <= TYPE_EMPTY || type >= TYPES.length) {
+                continue;
+            }
+
+            int nameLength = Math.clamp(data.getShort(offset + ENTRY_NAME_LENGTH), 0, MAX_NAME_BYTES);
+            String name = new String(data.array(), offset + ENTRY_NAME, nameLength, StandardCharsets.UTF_8);
+
+            double[] summary = type == TYPE_HISTOGRAM || type == TYPE_TIMER
+                    ? readSummary(data, offset)
+                    : NO_SUMMARY;
+
+            metrics.put(name, new SharedMemoryMetric(
+                    name,
+                    TYPES[type],
+                    data.getLong(offset + ENTRY_COUNT),
+                    data.getDouble(offset + ENTRY_VALUE),
+                    summary));
+        }
+
+        return new SharedMemorySnapshot(data.getLong(OFFSET_PID), data.getLong(OFFSET_TIMESTAMP), sequence, metrics);
+    }
+
+    private static double[] readSummary(ByteBuffer data, int offset) {
+        double[] summary = new double[9];
+        for (int i = 0; i < summary.length; i++) {
+            summary[i] = data.getDouble(offset + ENTRY_MIN + i * Double.BYTES);
+        }
+        return summary;
+    }
+}
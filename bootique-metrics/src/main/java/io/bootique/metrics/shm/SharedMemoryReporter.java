@@ -0,0 +1,358 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.bootique.metrics.shm.SharedMemoryLayout.*;
+
+/**
+ * A reporter that publishes registry snapshots to a memory-mapped file with a fixed binary layout described in
+ * {@link SharedMemoryLayout}, similar to the JVM "hsperfdata" files. A sidecar process can map the same file and read
+ * the metrics with {@link SharedMemoryReader} (or an equivalent reader in another language) without any syscalls or
+ * serialization on the app side. Updates are guarded by a sequence lock, so readers never block the writer. The file
+ * is always created anew and (on POSIX file systems) is only accessible to its owner.
+ *
+ * @since 4.0
+ */
+public class SharedMemoryReporter extends ScheduledReporter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryReporter.class);
+
+    // staged doubles per entry: the value, followed by the summary values in the order of the entry layout
+    private static final int STAGED_DOUBLES = 10;
+
+    private final Path file;
+    private final int capacity;
+    private final boolean deleteOnClose;
+    private final MappedByteBuffer buffer;
+
+    // guarded by "this". Entries are assigned to metrics on first appearance and are never reused. The values are
+    // staged per entry before being copied to the file
+    private final Map<String, Integer> entries;
+    private final byte[] stagedTypes;
+    private final long[] stagedCounts;
+    private final double[] stagedDoubles;
+    private int entryCount;
+    private long sequence;
+    private boolean overflowReported;
+
+    public SharedMemoryReporter(
+            MetricRegistry registry,
+            MetricFilter filter,
+            Path file,
+            int capacity,
+            boolean deleteOnClose,
+            ScheduledExecutorService executor,
+            boolean shutdownExecutorOnStop) throws IOException {
+
+        super(registry, "metrics-shared-memory", filter, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, executor, shutdownExecutorOnStop);
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.file = file;
+        this.capacity = capacity;
+        this.deleteOnClose = deleteOnClose;
+        this.entries = new HashMap<>();
+        this.stagedTypes = new byte[capacity];
+        this.stagedCounts = new long[capacity];
+        this.stagedDoubles = new double[capacity * STAGED_DOUBLES];
+        this.buffer = createFile(file, capacity);
+    }
+
+    private static MappedByteBuffer createFile(Path file, int capacity) throws IOException {
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        long size = fileSize(capacity);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Shared memory file is too large: " + size + " bytes. Reduce capacity");
+        }
+
+        // never reuse an existing file, e.g. one left by a crashed process with the same name, as it may be a link
+        // planted by another user. Deleting a link doesn't touch its target, and if another one appears before the
+        // file is created, the creation fails
+        Files.deleteIfExists(file);
+
+        Set<OpenOption> options = Set.of(
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                LinkOption.NOFOLLOW_LINKS);
+
+        FileAttribute<?>[] attributes = file.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? new FileAttribute<?>[]{PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))}
+                : new FileAttribute<?>[0];
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, options, attributes)) {
+
+            // mapping extends the new file to the full size, zero-filled. The mapping stays valid after the channel
+            // is closed
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(OFFSET_VERSION, VERSION);
+        buffer.putLong(OFFSET_PID, ProcessHandle.current().pid());
+        buffer.putInt(OFFSET_CAPACITY, capacity);
+        buffer.putInt(OFFSET_ENTRY_SIZE, ENTRY_SIZE);
+
+        // the magic is written last, so a reader can't see a partially initialized header
+        VarHandle.releaseFence();
+        buffer.putInt(OFFSET_MAGIC, MAGIC);
+        return buffer;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public synchronized void report(
+            SortedMap<String, Gauge> gauges,
+            SortedMap<String, Counter> counters,
+            SortedMap<String, Histogram> histograms,
+            SortedMap<String, Meter> meters,
+            SortedMap<String, Timer> timers) {
+
+        // evaluate the gauges and take the snapshots before starting the write, so that the readers are not kept
+        // retrying while the (potentially slow) metrics are computed
+        Arrays.fill(stagedTypes, 0, entryCount, TYPE_EMPTY);
+
+        for (Map.Entry<String, Gauge> e : gauges.entrySet()) {
+            Object value = e.getValue().getValue();
+            if (value instanceof Number n) {
+                int i = stage(e.getKey(), TYPE_GAUGE);
+                if (i >= 0) {
+                    stagedCounts[i] = 0;
+                    stagedDoubles[i * STAGED_DOUBLES] = n.doubleValue();
+                }
+            }
+        }
+
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            int i = stage(e.getKey(), TYPE_COUNTER);
+            if (i >= 0) {
+                stagedCounts[i] = e.getValue().getCount();
+                stagedDoubles[i * STAGED_DOUBLES] = 0.;
+            }
+        }
+
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            int i = stage(e.getKey(), TYPE_HISTOGRAM);
+            if (i >= 0) {
+                Histogram h = e.getValue();
+                stagedCounts[i] = h.getCount();
+                stagedDoubles[i * STAGED_DOUBLES] = 0.;
+                stageSummary(i, h.getSnapshot());
+            }
+        }
+
+        for (Map.Entry<String, Meter> e : meters.entrySet()) {
+            int i = stage(e.getKey(), TYPE_METER);
+            if (i >= 0) {
+                Meter m = e.getValue();
+                stagedCounts[i] = m.getCount();
+                stagedDoubles[i * STAGED_DOUBLES] = m.getOneMinuteRate();
+            }
+        }
+
+        for (Map.Entry<String, Timer> e : timers.entrySet()) {
+            int i = stage(e.getKey(), TYPE_TIMER);
+            if (i >= 0) {
+                Timer t = e.getValue();
+                stagedCounts[i] = t.getCount();
+                stagedDoubles[i * STAGED_DOUBLES] = t.getOneMinuteRate();
+                stageSummary(i, t.getSnapshot());
+            }
+        }
+
+        long timestamp = System.currentTimeMillis();
+
+        // only copying the staged values while the sequence is odd
+        beginWrite();
+        try {
+            for (int i = 0; i < entryCount; i++) {
+                writeEntry(i);
+            }
+
+            buffer.putInt(OFFSET_ENTRY_COUNT, entryCount);
+            buffer.putLong(OFFSET_TIMESTAMP, timestamp);
+        } finally {
+            endWrite();
+        }
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            if (deleteOnClose) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    LOGGER.warn("Error deleting shared memory metrics file {}", file, e);
+                }
+            }
+        }
+    }
+
+    private void beginWrite() {
+        LONG_HANDLE.setOpaque(buffer, OFFSET_SEQUENCE, ++sequence);
+
+        // no data writes may be reordered before the odd sequence
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite() {
+        LONG_HANDLE.setRelease(buffer, OFFSET_SEQUENCE, ++sequence);
+    }
+
+    private void stageSummary(int index, Snapshot s) {
+        int d = index * STAGED_DOUBLES;
+        stagedDoubles[d + 1] = s.getMin();
+        stagedDoubles[d + 2] = s.getMax();
+        stagedDoubles[d + 3] = s.getMean();
+        stagedDoubles[d + 4] = s.getStdDev();
+        stagedDoubles[d + 5] = s.getMedian();
+        stagedDoubles[d + 6] = s.get75thPercentile();
+        stagedDoubles[d + 7] = s.get95thPercentile();
+        stagedDoubles[d + 8] = s.get99thPercentile();
+        stagedDoubles[d + 9] = s.get999thPercentile();
+    }
+
+    private void writeEntry(int index) {
+        int offset = entryOffset(index);
+        byte type = stagedTypes[index];
+        buffer.put(offset + ENTRY_TYPE, type);
+
+        // the metrics that disappeared from the registry keep their entries, but are marked as empty
+        if (type == TYPE_EMPTY) {
+            return;
+        }
+
+        int d = index * STAGED_DOUBLES;
+        buffer.putLong(offset + ENTRY_COUNT, stagedCounts[index]);
+        buffer.putDouble(offset + ENTRY_VALUE, stagedDoubles[d]);
+
+        if (type == TYPE_HISTOGRAM || type == TYPE_TIMER) {
+            buffer.putDouble(offset + ENTRY_MIN, stagedDoubles[d + 1]);
+            buffer.putDouble(offset + ENTRY_MAX, stagedDoubles[d + 2]);
+            buffer.putDouble(offset + ENTRY_MEAN, stagedDoubles[d + 3]);
+            buffer.putDouble(offset + ENTRY_STDDEV, stagedDoubles[d + 4]);
+            buffer.putDouble(offset + ENTRY_P50, stagedDoubles[d + 5]);
+            buffer.putDouble(offset + ENTRY_P75, stagedDoubles[d + 6]);
+            buffer.putDouble(offset + ENTRY_P95, stagedDoubles[d + 7]);
+            buffer.putDouble(offset + ENTRY_P99, stagedDoubles[d + 8]);
+            buffer.putDouble(offset + ENTRY_P999, stagedDoubles[d + 9]);
+        }
+    }
+
+    // returns the index of the metric entry, assigning a new entry if needed, or -1 if the file is full. The name of
+    // a new entry can be written outside the write window, as the readers don't see the entry until the entry count
+    // is updated
+    private int stage(String name, byte type) {
+
+        Integer index = entries.get(name);
+        if (index == null) {
+            if (entryCount >= capacity) {
+                if (!overflowReported) {
+                    overflowReported = true;
+                    LOGGER.warn("Shared memory metrics file is full ({} entries). Ignoring '{}' and other new metrics",
+                            capacity,
+                            name);
+                }
+                return -1;
+            }
+
+            index = entryCount++;
+            entries.put(name, index);
+            writeName(entryOffset(index), name);
+        }
+
+        stagedTypes[index] = type;
+        return index;
+    }
+
+    private void writeName(int offset, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int len = utf8Prefix(bytes, MAX_NAME_BYTES);
+        if (len < bytes.length) {
+            LOGGER.warn("Metric name is longer than {} bytes and will be truncated: {}", MAX_NAME_BYTES, name);
+        }
+
+        buffer.putShort(offset + ENTRY_NAME_LENGTH, (short) len);
+        buffer.put(offset + ENTRY_NAME, bytes, 0, len);
+    }
+
+    // the length of the longest prefix that doesn't cut a multibyte char in the middle
+    private static int utf8Prefix(byte[] bytes, int maxLen) {
+        if (bytes.length <= maxLen) {
+            return bytes.length;
+        }
+
+        int len = maxLen;
+        while (len > 0 && (bytes[len] & 0xC0) == 0x80) {
+            len--;
+        }
+        return len;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A consistent set of metrics read from a shared memory metrics file.
+ *
+ * @since 4.0
+ */
+public final class SharedMemorySnapshot {
+
+    private final long pid;
+    private final long timestamp;
+    private final long sequence;
+    private final Map<String, SharedMemoryMetric> metrics;
+
+    SharedMemorySnapshot(long pid, long timestamp, long sequence, Map<String, SharedMemoryMetric> metrics) {
+        this.pid = pid;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the id of the process that published the metrics.
+     */
+    public long getPid() {
+        return pid;
+    }
+
+    /**
+     * Returns the time of the last update in milliseconds since epoch, or 0 if the metrics were never published.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the update sequence number. Grows with every update, so can be used to detect stale data.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Collection<SharedMemoryMetric> getMetrics() {
+        return metrics.values();
+    }
+
+    /**
+     * Returns a named metric or null if the metric is not present in the snapshot.
+     */
+    public SharedMemoryMetric getMetric(String name) {
+        return metrics.get(name);
+    }
+
+    public int size() {
+        return metrics.size();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics;
+
+import com.codahale.metrics.MetricFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GlobMetricFilterTest {
+
+    @Test
+    public void matches() {
+        assertTrue(GlobMetricFilter.matches("bq.Metrics.*", "bq.Metrics.TransactionId.IssuedCount"));
+        assertTrue(GlobMetricFilter.matches("*.IssuedCount", "bq.Metrics.TransactionId.IssuedCount"));
+        assertTrue(GlobMetricFilter.matches("bq.*.Issued*", "bq.Metrics.TransactionId.IssuedCount"));
+        assertTrue(GlobMetricFilter.matches("a?c", "abc"));
+        assertTrue(GlobMetricFilter.matches("*", ""));
+        assertTrue(GlobMetricFilter.matches("abc", "abc"));
+
+        assertFalse(GlobMetricFilter.matches("a?c", "ac"));
+        assertFalse(GlobMetricFilter.matches("abc", "abcd"));
+        assertFalse(GlobMetricFilter.matches("*.Count", "bq.Metrics.IssuedCount"));
+        assertFalse(GlobMetricFilter.matches("", "a"));
+    }
+
+    @Test
+    public void of() {
+        assertSame(MetricFilter.ALL, GlobMetricFilter.of(null));
+        assertSame(MetricFilter.ALL, GlobMetricFilter.of(List.of()));
+
+        MetricFilter filter = GlobMetricFilter.of(List.of("a.*", "b"));
+        assertTrue(filter.matches("a.x", null));
+        assertTrue(filter.matches("b", null));
+        assertFalse(filter.matches("bb", null));
+    }
+}
@@ -19,15 +19,34 @@
 
 package io.bootique.metrics;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import io.bootique.BQRuntime;
+import io.bootique.di.Key;
 import io.bootique.junit.BQTest;
 import io.bootique.junit.BQTestFactory;
 import io.bootique.junit.BQTestTool;
+import io.bootique.metrics.history.MetricsHistory;
+import io.bootique.metrics.mdc.AdaptiveStripedTransactionIdGenerator;
+import io.bootique.metrics.mdc.MDCExecutorService;
+import io.bootique.metrics.mdc.MDCScheduledExecutorService;
+import io.bootique.metrics.mdc.StripedTransactionIdGenerator;
+import io.bootique.metrics.mdc.UnsafeTransactionIdGenerator;
+import io.bootique.metrics.mdc.TransactionIdGenerator;
+import io.bootique.metrics.mdc.VirtualThreadTransactionIdGenerator;
 import io.bootique.metrics.reporter.JmxReporterFactory;
+import io.bootique.metrics.reporter.ReporterScheduler;
 import io.bootique.metrics.reporter.Slf4jReporterFactory;
+import io.bootique.metrics.reservoir.HdrHistogramSnapshot;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @BQTest
@@ -52,6 +71,20 @@ public class MetricsModuleIT {
         assertTrue(factory.getReporters().get(2) instanceof Slf4jReporterFactory);
     }
 
+    @Test
+    public void reporterScheduler() {
+        BQRuntime runtime = createRuntime("--config", "classpath:config_reporter_scheduler.yml");
+        ScheduledThreadPoolExecutor executor = (ScheduledThreadPoolExecutor) runtime
+                .getInstance(ReporterScheduler.class)
+                .getExecutor();
+
+        assertEquals(2, executor.getCorePoolSize());
+        assertFalse(executor.isShutdown());
+
+        runtime.shutdown();
+        assertTrue(executor.isShutdown());
+    }
+
     @Test
     public void metricRegistry() {
 
@@ -62,4 +95,110 @@ public class MetricsModuleIT {
         assertNotNull(r1);
         assertSame(r1, r2, "MetricRegistry must be a singleton");
     }
+
+    @Test
+    public void metricsHistory() {
+        BQRuntime runtime = createRuntime("--config", "classpath:config_history.yml");
+        MetricsHistory history = runtime.getInstance(MetricsHistory.class);
+
+        assertEquals(120, history.getCapacity());
+        assertEquals(50, history.getMaxSeries());
+        assertSame(history, runtime.getInstance(MetricsHistory.class));
+    }
+
+    @Test
+    public void metricsHistory_Disabled() {
+        MetricsHistory history = createRuntime().getInstance(MetricsHistory.class);
+        assertEquals(0, history.getCapacity());
+    }
+
+    @Test
+    public void reservoirs() {
+        MetricRegistry registry = createRuntime("--config", "classpath:config_reservoirs.yml")
+                .getInstance(MetricRegistry.class);
+
+        for (int i = 0; i < 10; i++) {
+            registry.histogram("hot.h").update(i);
+            registry.timer("other.t").update(i, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(3, registry.histogram("hot.h").getSnapshot().size());
+        assertEquals(5, registry.timer("other.t").getSnapshot().size());
+
+        Timer hdr = registry.timer("hdr.t");
+        for (int i = 0; i < 10; i++) {
+            hdr.update(i, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(hdr.getSnapshot() instanceof HdrHistogramSnapshot);
+        assertEquals(10, hdr.getSnapshot().size());
+    }
+
+    @Test
+    public void transactionIdGenerator() {
+        TransactionIdGenerator generator = createRuntime().getInstance(TransactionIdGenerator.class);
+        assertEquals(AdaptiveStripedTransactionIdGenerator.class, generator.getClass());
+    }
+
+    @Test
+    public void transactionIdGenerator_Metrics() {
+        BQRuntime runtime = createRuntime();
+        TransactionIdGenerator generator = runtime.getInstance(TransactionIdGenerator.class);
+        MetricRegistry registry = runtime.getInstance(MetricRegistry.class);
+
+        generator.nextId();
+        generator.nextId();
+
+        Gauge<?> issued = registry.getGauges().get("bq.Metrics.TransactionId.IssuedCount");
+        assertNotNull(issued);
+        assertEquals(2L, issued.getValue());
+        assertNotNull(registry.getTimers().get("bq.Metrics.TransactionId.Resets"));
+    }
+
+    @Test
+    public void transactionIdGenerator_Virtual() {
+        TransactionIdGenerator generator = createRuntime("--config", "classpath:config_txid_virtual.yml")
+                .getInstance(TransactionIdGenerator.class);
+        assertEquals(VirtualThreadTransactionIdGenerator.class, generator.getClass());
+    }
+
+    @Test
+    public void transactionIdGenerator_Striped() {
+        TransactionIdGenerator generator = createRuntime("--config", "classpath:config_txid_striped.yml")
+                .getInstance(TransactionIdGenerator.class);
+        assertEquals(StripedTransactionIdGenerator.class, generator.getClass());
+        assertTrue(generator.nextId().endsWith("-0000000a"));
+    }
+
+    @Test
+    public void transactionIdGenerator_Unsafe() {
+        TransactionIdGenerator generator = createRuntime("--config", "classpath:config_txid_unsafe.yml")
+                .getInstance(TransactionIdGenerator.class);
+        assertEquals(UnsafeTransactionIdGenerator.class, generator.getClass());
+        assertTrue(generator.nextId().endsWith("-000000ff"));
+    }
+
+    @Test
+    public void propagateTransactionId() {
+        BQRuntime runtime = testFactory.app()
+                .module(MetricsModule.class)
+                .module(b -> {
+                    b.bind(ExecutorService.class).toInstance(Executors.newSingleThreadExecutor());
+                    b.bind(ScheduledExecutorService.class, "s").toInstance(Executors.newSingleThreadScheduledExecutor());
+                    MetricsModule.extend(b)
+                            .propagateTransactionId(Key.get(ExecutorService.class))
+                            .propagateTransactionIdScheduled(Key.get(ScheduledExecutorService.class, "s"));
+                })
+                .createRuntime();
+
+        ExecutorService executor = runtime.getInstance(ExecutorService.class);
+        ScheduledExecutorService scheduled = runtime.getInstance(Key.get(ScheduledExecutorService.class, "s"));
+        try {
+            assertTrue(executor instanceof MDCExecutorService);
+            assertTrue(scheduled instanceof MDCScheduledExecutorService);
+        } finally {
+            executor.shutdownNow();
+            scheduled.shutdownNow();
+        }
+    }
 }
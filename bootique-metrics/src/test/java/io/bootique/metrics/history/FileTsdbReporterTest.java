@@ -0,0 +1,179 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import io.bootique.metrics.GlobMetricFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileTsdbReporterTest {
+
+    @TempDir
+    Path dir;
+
+    private long now;
+
+    private FileTsdbReporter reporter(MetricRegistry registry, MetricFilter filter, int maxSeries) {
+        return new FileTsdbReporter(
+                registry,
+                filter,
+                dir.resolve("tsdb"),
+                Duration.ofHours(1),
+                Duration.ofHours(3),
+                maxSeries,
+                false,
+                null,
+                true) {
+
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void query() {
+        MetricRegistry registry = new MetricRegistry();
+        AtomicInteger value = new AtomicInteger();
+        registry.register("g", (Gauge<Integer>) value::incrementAndGet);
+
+        now = Duration.ofDays(1000).toMillis();
+        try (FileTsdbReporter reporter = reporter(registry, MetricFilter.ALL, 10)) {
+            FileTsdb tsdb = reporter.getTsdb();
+            assertTrue(tsdb.query("g", 0, Long.MAX_VALUE).isEmpty());
+
+            long start = now;
+            for (int i = 0; i < 5; i++) {
+                reporter.report();
+                now += 10_000;
+            }
+
+            HistorySeries series = tsdb.query("g", 0, Long.MAX_VALUE);
+            assertEquals(5, series.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(start + i * 10_000, series.getTimestamp(i));
+                assertEquals(i + 1., series.getValue(i));
+            }
+
+            HistorySeries range = tsdb.query("g", start + 10_000, start + 30_000);
+            assertEquals(3, range.size());
+            assertEquals(2., range.getValue(0));
+
+            assertTrue(tsdb.query("no_such_series", 0, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    public void rollAndRetention() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c1").inc();
+
+        long hour = Duration.ofHours(1).toMillis();
+        now = 1000 * hour;
+
+        try (FileTsdbReporter reporter = reporter(registry, MetricFilter.ALL, 10)) {
+            FileTsdb tsdb = reporter.getTsdb();
+
+            // 6 hours, 2 snapshots per hour
+            for (int i = 0; i < 12; i++) {
+                if (i == 6) {
+                    registry.counter("c2").inc(5);
+                }
+
+                reporter.report();
+                now += hour / 2;
+            }
+
+            // the last segment is within 3 hours of the last snapshot, and the ones started before it are expired
+            List<Path> segments = tsdb.getSegments();
+            assertEquals(4, segments.size(), () -> segments.toString());
+
+            HistorySeries c1 = tsdb.query("c1", 0, Long.MAX_VALUE);
+            assertEquals(8, c1.size());
+            assertEquals(1003 * hour - hour, c1.getTimestamp(0));
+            assertEquals(1., c1.getValue(7));
+
+            HistorySeries c2 = tsdb.query("c2", 0, Long.MAX_VALUE);
+            assertEquals(6, c2.size());
+            assertEquals(5., c2.getValue(0));
+
+            assertEquals(Set.of("c1", "c2"), tsdb.getSeriesNames());
+        }
+
+        // the files are readable after the reporter is closed. Closing the reporter took the final snapshot, that
+        // started a new segment and expired one more old segment
+        FileTsdb offline = new FileTsdb(dir.resolve("tsdb"));
+        HistorySeries c1 = offline.query("c1", Duration.ofDays(1_000_000));
+        assertEquals(7, c1.size());
+        assertEquals(1006 * hour, c1.getTimestamp(6));
+    }
+
+    @Test
+    public void series() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.meter("m").mark(3);
+        registry.histogram("h").update(7);
+        registry.timer("t").update(Duration.ofMillis(5));
+        registry.counter("x.excluded").inc();
+
+        now = Duration.ofDays(1000).toMillis();
+        try (FileTsdbReporter reporter = reporter(registry, GlobMetricFilter.of(List.of("m", "h", "t")), 100)) {
+            reporter.report();
+
+            FileTsdb tsdb = reporter.getTsdb();
+            assertEquals(Set.of(
+                    "m.count", "m.m1_rate",
+                    "h.count", "h.p50", "h.p99", "h.max",
+                    "t.count", "t.m1_rate", "t.p50", "t.p99", "t.max"), tsdb.getSeriesNames());
+
+            assertEquals(3., tsdb.query("m.count", 0, Long.MAX_VALUE).getValue(0));
+            assertEquals(7., tsdb.query("h.max", 0, Long.MAX_VALUE).getValue(0));
+            assertEquals(5., tsdb.query("t.max", 0, Long.MAX_VALUE).getValue(0), 0.001);
+        }
+    }
+
+    @Test
+    public void maxSeries() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a").inc();
+        registry.counter("b").inc();
+        registry.counter("c").inc();
+
+        now = Duration.ofDays(1000).toMillis();
+        try (FileTsdbReporter reporter = reporter(registry, MetricFilter.ALL, 2)) {
+            reporter.report();
+            reporter.report();
+
+            assertEquals(Set.of("a", "b"), reporter.getTsdb().getSeriesNames());
+            assertEquals(2, reporter.getTsdb().query("b", 0, Long.MAX_VALUE).size());
+        }
+    }
+}
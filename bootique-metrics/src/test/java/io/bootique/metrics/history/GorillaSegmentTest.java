@@ -0,0 +1,181 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GorillaSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        Path file = dir.resolve("s.seg");
+        Random random = new Random(7);
+
+        double[] specials = {0., -0., 1., -1., Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.1, 1e-300};
+
+        int ticks = 500;
+        long start = 1_700_000_000_000L;
+        long[] timestamps = new long[ticks];
+        double[][] values = new double[ticks][];
+
+        long t = start;
+        for (int i = 0; i < ticks; i++) {
+
+            // jitter of different magnitude to exercise all delta-of-delta buckets
+            t += 10_000 + switch (i % 5) {
+                case 0 -> 0;
+                case 1 -> random.nextInt(50);
+                case 2 -> random.nextInt(500) - 250;
+                case 3 -> random.nextInt(4000) - 2000;
+                default -> random.nextInt(1_000_000);
+            };
+
+            timestamps[i] = t;
+
+            // the last series appears midway
+            values[i] = i < 100
+                    ? new double[]{42., random.nextDouble() * 1000, specials[i % specials.length], i * 3}
+                    : new double[]{42., random.nextDouble() * 1000, specials[i % specials.length], i * 3,
+                    i % 2 == 0 ? 1. : random.nextGaussian()};
+        }
+
+        String[] names = {"constant", "random", "specials", "counter", "late"};
+        try (GorillaSegmentWriter writer = GorillaSegmentWriter.create(file, start, 10, false)) {
+            for (int i = 0; i < ticks; i++) {
+                writer.beginTick();
+                for (int j = 0; j < values[i].length; j++) {
+                    writer.record(writer.seriesId(names[j]), values[i][j]);
+                }
+                writer.endTick(timestamps[i]);
+            }
+        }
+
+        GorillaSegmentReader reader = GorillaSegmentReader.open(file);
+        assertEquals(start, reader.getStart());
+
+        int[] read = new int[1];
+        reader.read((timestamp, tickValues, seriesCount) -> {
+            int i = read[0]++;
+            assertEquals(timestamps[i], timestamp, "tick " + i);
+            assertEquals(values[i].length, seriesCount, "tick " + i);
+            for (int j = 0; j < seriesCount; j++) {
+                assertEquals(
+                        Double.doubleToRawLongBits(values[i][j]),
+                        Double.doubleToRawLongBits(tickValues[j]),
+                        "tick " + i + ", series " + j);
+            }
+        });
+
+        assertEquals(ticks, read[0]);
+        assertEquals(List.of(names), reader.getSeriesNames());
+    }
+
+    @Test
+    public void compression() throws IOException {
+
+        Path file = dir.resolve("s.seg");
+        try (GorillaSegmentWriter writer = GorillaSegmentWriter.create(file, 0, 100, false)) {
+            for (int tick = 0; tick < 1000; tick++) {
+                writer.beginTick();
+                for (int i = 0; i < 100; i++) {
+                    writer.record(writer.seriesId("s" + i), i);
+                }
+                writer.endTick(tick * 10_000L);
+            }
+
+            // unchanged values at a regular interval take about a bit per sample, plus the record framing
+            long samples = 1000 * 100;
+            assertTrue(writer.getSize() < samples / 8 + 1000 * 4 + 100 * 16, "Segment is too large: " + writer.getSize());
+        }
+    }
+
+    @Test
+    public void read_Truncated() throws IOException {
+
+        Path file = dir.resolve("s.seg");
+        try (GorillaSegmentWriter writer = GorillaSegmentWriter.create(file, 0, 10, false)) {
+            for (int tick = 0; tick < 3; tick++) {
+                writer.beginTick();
+                writer.record(writer.seriesId("a"), tick);
+                writer.endTick(tick * 1000L);
+            }
+        }
+
+        // simulate a crash in the middle of writing the last tick
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        List<Double> values = new ArrayList<>();
+        GorillaSegmentReader.open(file).read((t, v, c) -> values.add(v[0]));
+        assertEquals(List.of(0., 1.), values);
+    }
+
+    @Test
+    public void read_ZeroPaddedTail() throws IOException {
+
+        Path file = dir.resolve("s.seg");
+        try (GorillaSegmentWriter writer = GorillaSegmentWriter.create(file, 0, 10, false)) {
+            for (int tick = 0; tick < 2; tick++) {
+                writer.beginTick();
+                writer.record(writer.seriesId("a"), tick);
+                writer.endTick(tick * 1000L);
+            }
+        }
+
+        // simulate a crash after the file was extended, but before the data was written
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(64));
+        }
+
+        List<Double> values = new ArrayList<>();
+        GorillaSegmentReader.open(file).read((t, v, c) -> values.add(v[0]));
+        assertEquals(List.of(0., 1.), values);
+    }
+
+    @Test
+    public void create_Exists() throws IOException {
+        Path file = Files.createFile(dir.resolve("s.seg"));
+        assertThrows(IOException.class, () -> GorillaSegmentWriter.create(file, 0, 10, false));
+    }
+
+    @Test
+    public void open_NotSegment() throws IOException {
+        Path file = Files.writeString(dir.resolve("s.seg"), "not a segment file");
+        assertThrows(IOException.class, () -> GorillaSegmentReader.open(file));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.history;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import io.bootique.metrics.GlobMetricFilter;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsHistoryTest {
+
+    private static MetricsHistory history(MetricRegistry registry, MetricFilter filter, int capacity, int maxSeries) {
+        return new MetricsHistory(registry, filter, capacity, maxSeries, null, true);
+    }
+
+    @Test
+    public void query() {
+        MetricRegistry registry = new MetricRegistry();
+        AtomicInteger value = new AtomicInteger();
+        registry.register("g", (Gauge<Integer>) value::incrementAndGet);
+
+        try (MetricsHistory history = history(registry, MetricFilter.ALL, 3, 10)) {
+            assertTrue(history.query("g", Duration.ofMinutes(1)).isEmpty());
+
+            for (int i = 0; i < 5; i++) {
+                history.report();
+            }
+
+            // only the last 3 snapshots are kept
+            HistorySeries series = history.query("g", Duration.ofMinutes(1));
+            assertEquals(3, series.size());
+            assertEquals(3., series.getValue(0));
+            assertEquals(4., series.getValue(1));
+            assertEquals(5., series.getValue(2));
+            assertTrue(series.getTimestamp(0) <= series.getTimestamp(2));
+
+            assertTrue(history.query("g", 0, 1).isEmpty());
+            assertTrue(history.query("no_such_series", Duration.ofMinutes(1)).isEmpty());
+        }
+    }
+
+    @Test
+    public void query_SeriesAddedLater() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c1").inc();
+
+        try (MetricsHistory history = history(registry, MetricFilter.ALL, 10, 10)) {
+            history.report();
+            history.report();
+
+            registry.counter("c2").inc(5);
+            history.report();
+
+            assertEquals(3, history.query("c1", Duration.ofMinutes(1)).size());
+
+            HistorySeries c2 = history.query("c2", Duration.ofMinutes(1));
+            assertEquals(1, c2.size());
+            assertEquals(5., c2.getValue(0));
+
+            // removed metrics leave gaps
+            registry.remove("c1");
+            history.report();
+            assertEquals(3, history.query("c1", Duration.ofMinutes(1)).size());
+            assertEquals(2, history.query("c2", Duration.ofMinutes(1)).size());
+        }
+    }
+
+    @Test
+    public void series() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.meter("m").mark();
+        registry.histogram("h").update(7);
+        registry.timer("t").update(3, TimeUnit.MILLISECONDS);
+        registry.counter("excluded").inc();
+
+        try (MetricsHistory history = history(registry, GlobMetricFilter.of(List.of("m", "h", "t*")), 10, 100)) {
+            history.report();
+
+            assertEquals(Set.of(
+                    "m.count", "m.m1_rate",
+                    "h.count", "h.p50", "h.p99", "h.max",
+                    "t.count", "t.m1_rate", "t.p50", "t.p99", "t.max"), history.getSeriesNames());
+
+            assertEquals(7., history.query("h.max", Duration.ofMinutes(1)).getValue(0));
+            assertEquals(3., history.query("t.p50", Duration.ofMinutes(1)).getValue(0), 0.000001);
+        }
+    }
+
+    @Test
+    public void maxSeries() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a").inc();
+        registry.counter("b").inc();
+        registry.counter("c").inc();
+
+        try (MetricsHistory history = history(registry, MetricFilter.ALL, 10, 2)) {
+            history.report();
+            assertEquals(Set.of("a", "b"), history.getSeriesNames());
+        }
+    }
+
+    @Test
+    public void disabled() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a").inc();
+
+        try (MetricsHistory history = history(registry, MetricFilter.ALL, 0, 0)) {
+            history.report();
+            assertTrue(history.getSeriesNames().isEmpty());
+            assertTrue(history.query("a", Duration.ofMinutes(1)).isEmpty());
+        }
+    }
+}
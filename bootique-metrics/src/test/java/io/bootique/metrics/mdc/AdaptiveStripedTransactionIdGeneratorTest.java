@@ -0,0 +1,188 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveStripedTransactionIdGeneratorTest {
+
+    @Test
+    public void ceilingPowerOfTwo() {
+        assertEquals(1, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(-1));
+        assertEquals(1, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(1));
+        assertEquals(2, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(2));
+        assertEquals(4, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(3));
+        assertEquals(64, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(64));
+        assertEquals(128, AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(65));
+    }
+
+    @Test
+    public void nextId() {
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(4);
+
+        String id1 = generator.nextId();
+        assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, id1.length());
+
+        String id2 = generator.nextId();
+        assertNotEquals(id1, id2);
+
+        // no contention, so a single stripe
+        assertEquals(1, generator.getStripesCount());
+        assertEquals(
+                id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN),
+                id2.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN));
+    }
+
+    @Test
+    public void counterStart_AboveThreshold() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveStripedTransactionIdGenerator(1, UnsafeTransactionIdGenerator.RESET_THRESHOLD));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveStripedTransactionIdGenerator(1, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void nextId_Overflow() {
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(1);
+        int len = UnsafeTransactionIdGenerator.STRING_LENGTH;
+
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> generator.nextId(new char[len], 1));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> generator.nextId(new char[len], -1));
+        assertThrows(BufferOverflowException.class, () -> generator.nextId(CharBuffer.allocate(len - 1)));
+        assertThrows(BufferOverflowException.class, () -> generator.nextId(ByteBuffer.allocate(len - 1)));
+
+        // the space must be checked before taking a counter, so no IDs are wasted
+        assertEquals(0, generator.getIssuedCount());
+    }
+
+    @Test
+    public void nextId_Reset() {
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(1, UnsafeTransactionIdGenerator.RESET_THRESHOLD - 1);
+
+        String id1 = generator.nextId();
+        String id2 = generator.nextId();
+
+        // the reset is synchronous
+        String id3 = generator.nextId();
+
+        assertEquals(
+                id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN),
+                id2.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN));
+        assertNotEquals(
+                id2.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN),
+                id3.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN));
+    }
+
+    @Test
+    public void getMetrics_Reset() {
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(2, UnsafeTransactionIdGenerator.RESET_THRESHOLD - 1);
+        Map<String, Metric> metrics = generator.getMetrics();
+
+        assertEquals(0L, ((Gauge<?>) metrics.get("IssuedCount")).getValue());
+        assertEquals(0L, ((Gauge<?>) metrics.get("Stripe.1.IssuedCount")).getValue());
+
+        generator.nextId();
+        generator.nextId();
+        generator.nextId();
+
+        assertEquals(1, ((Timer) metrics.get("Resets")).getCount());
+        assertEquals(3L, ((Gauge<?>) metrics.get("IssuedCount")).getValue());
+        assertEquals(1L, ((Gauge<?>) metrics.get("Stripe.0.IssuedCount")).getValue());
+        assertEquals(0L, ((Gauge<?>) metrics.get("CasFailures")).getValue());
+        assertEquals(1, ((Gauge<?>) metrics.get("StripesCount")).getValue());
+    }
+
+    @Test
+    public void reserveIds_Reset() {
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(1, UnsafeTransactionIdGenerator.RESET_THRESHOLD - 5);
+
+        TransactionIdBlock block = generator.reserveIds(10);
+        String id1 = block.nextId();
+        String id2 = generator.nextId();
+
+        assertNotEquals(
+                id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN),
+                id2.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN));
+    }
+
+    @Test
+    public void nextId_Concurrent() throws Exception {
+
+        int threads = 8;
+        int idsPerThread = 50_000;
+
+        AdaptiveStripedTransactionIdGenerator generator = new AdaptiveStripedTransactionIdGenerator(threads);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future[threads];
+            for (int i = 0; i < threads; i++) {
+                futures[i] = pool.submit(() -> {
+                    start.await();
+                    char[] buffer = new char[UnsafeTransactionIdGenerator.STRING_LENGTH];
+                    for (int j = 0; j < idsPerThread; j++) {
+
+                        // mix String and buffer APIs
+                        if (j % 2 == 0) {
+                            ids.add(generator.nextId());
+                        } else {
+                            generator.nextId(buffer, 0);
+                            ids.add(new String(buffer));
+                        }
+                    }
+
+                    TransactionIdBlock block = generator.reserveIds(idsPerThread);
+                    while (block.remaining() > 0) {
+                        ids.add(block.nextId());
+                    }
+                    return null;
+                });
+            }
+
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(threads * idsPerThread * 2, ids.size(), "Duplicate IDs generated");
+        assertTrue(generator.getStripesCount() <= threads);
+    }
+}
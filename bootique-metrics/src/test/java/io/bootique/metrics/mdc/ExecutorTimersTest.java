@@ -0,0 +1,119 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutorTimersTest {
+
+    @AfterEach
+    public void after() {
+        TransactionIdMDC.clearId();
+    }
+
+    @Test
+    public void of() {
+        MetricRegistry registry = new MetricRegistry();
+        ExecutorTimers timers = ExecutorTimers.of(registry, "x");
+
+        assertSame(timers.getQueueTime(), registry.getTimers().get("bq.Metrics.Executor.x.QueueTime"));
+        assertSame(timers.getRunTime(), registry.getTimers().get("bq.Metrics.Executor.x.RunTime"));
+    }
+
+    @Test
+    public void runnable() {
+        ExecutorTimers timers = ExecutorTimers.of(new MetricRegistry(), "x");
+
+        TransactionIdMDC.setId("_TXID_");
+        String[] seen = new String[1];
+        Runnable r = TransactionIdMDC.runnable(() -> seen[0] = TransactionIdMDC.getId(), timers);
+        TransactionIdMDC.clearId();
+
+        r.run();
+        assertEquals("_TXID_", seen[0]);
+        assertNull(TransactionIdMDC.getId());
+        assertEquals(1, timers.getQueueTime().getCount());
+        assertEquals(1, timers.getRunTime().getCount());
+    }
+
+    @Test
+    public void callable_NoTxId() throws Exception {
+        ExecutorTimers timers = ExecutorTimers.of(new MetricRegistry(), "x");
+
+        Callable<String> c = TransactionIdMDC.callable(TransactionIdMDC::getId, timers);
+        assertNull(c.call());
+        assertEquals(1, timers.getRunTime().getCount());
+    }
+
+    @Test
+    public void supplier_Exception() {
+        ExecutorTimers timers = ExecutorTimers.of(new MetricRegistry(), "x");
+
+        Supplier<String> s = TransactionIdMDC.supplier(() -> {
+            throw new IllegalStateException("_test_");
+        }, timers);
+
+        assertThrows(IllegalStateException.class, s::get);
+        assertEquals(1, timers.getQueueTime().getCount());
+        assertEquals(1, timers.getRunTime().getCount());
+    }
+
+    @Test
+    public void executorService() throws InterruptedException, ExecutionException {
+        ExecutorTimers timers = ExecutorTimers.of(new MetricRegistry(), "x");
+        ExecutorService pool = TransactionIdMDC.executorService(Executors.newSingleThreadExecutor(), timers);
+
+        try {
+            CountDownLatch unblock = new CountDownLatch(1);
+
+            // the first task blocks the only thread, so the second one has to wait in the queue
+            pool.submit(() -> {
+                unblock.await();
+                return null;
+            });
+
+            TransactionIdMDC.setId("_TXID_");
+            Future<String> queued = pool.submit(TransactionIdMDC::getId);
+            Thread.sleep(50);
+            unblock.countDown();
+
+            assertEquals("_TXID_", queued.get());
+
+            List<Future<String>> all = pool.invokeAll(List.of(TransactionIdMDC::getId));
+            assertEquals("_TXID_", all.get(0).get());
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(3, timers.getQueueTime().getCount());
+        assertEquals(3, timers.getRunTime().getCount());
+
+        // the queued task waited at least as long as the sleep above
+        assertTrue(timers.getQueueTime().getSnapshot().getMax() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
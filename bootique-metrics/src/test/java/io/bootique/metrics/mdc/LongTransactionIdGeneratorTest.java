@@ -0,0 +1,98 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongTransactionIdGeneratorTest {
+
+    @Test
+    public void nextId() {
+        LongTransactionIdGenerator generator = new LongTransactionIdGenerator(0xab12L);
+
+        String id1 = generator.nextId();
+        assertEquals(LongTransactionIdGenerator.STRING_LENGTH, id1.length());
+        assertTrue(id1.endsWith("-000000000000ab12"), id1);
+
+        String id2 = generator.nextId();
+        assertTrue(id2.endsWith("-000000000000ab13"), id2);
+        assertEquals(id1.substring(0, 8), id2.substring(0, 8));
+    }
+
+    @Test
+    public void nextId_NoIntOverflow() {
+        LongTransactionIdGenerator generator = new LongTransactionIdGenerator(Integer.MAX_VALUE);
+        assertTrue(generator.nextId().endsWith("-000000007fffffff"));
+        assertTrue(generator.nextId().endsWith("-0000000080000000"));
+    }
+
+    @Test
+    public void nextId_Buffers() {
+        LongTransactionIdGenerator generator = new LongTransactionIdGenerator(-1L);
+        String id = generator.nextId();
+        String base = id.substring(0, 8);
+        assertEquals(base + "ffffffffffffffff", id);
+
+        char[] chars = new char[LongTransactionIdGenerator.STRING_LENGTH];
+        generator.nextId(chars, 0);
+        assertEquals(base + "0000000000000000", new String(chars));
+
+        CharBuffer charBuffer = CharBuffer.allocate(LongTransactionIdGenerator.STRING_LENGTH);
+        generator.nextId(charBuffer);
+        assertEquals(base + "0000000000000001", charBuffer.flip().toString());
+
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(LongTransactionIdGenerator.STRING_LENGTH);
+        generator.nextId(byteBuffer);
+        assertEquals(base + "0000000000000002", StandardCharsets.US_ASCII.decode(byteBuffer.flip()).toString());
+    }
+
+    @Test
+    public void nextId_Buffers_Overflow() {
+        LongTransactionIdGenerator generator = new LongTransactionIdGenerator(0L);
+        int len = LongTransactionIdGenerator.STRING_LENGTH;
+
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> generator.nextId(new char[len], 1));
+        assertThrows(BufferOverflowException.class, () -> generator.nextId(CharBuffer.allocate(len - 1)));
+        assertThrows(BufferOverflowException.class, () -> generator.nextId(ByteBuffer.allocate(len - 1)));
+        assertEquals(0, generator.getIssuedCount());
+
+        TransactionIdBlock block = generator.reserveIds(2);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> block.nextId(new char[len], 1));
+        assertEquals(2, block.remaining());
+    }
+
+    @Test
+    public void striped() {
+        TransactionIdGenerator generator = new LongTransactionIdGeneratorFactory().createGenerator();
+        assertTrue(generator instanceof LongTransactionIdGenerator);
+
+        LongTransactionIdGeneratorFactory factory = new LongTransactionIdGeneratorFactory();
+        factory.setStripes(3);
+        String id = factory.createGenerator().nextId();
+        assertEquals(LongTransactionIdGenerator.STRING_LENGTH, id.length());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MDCExecutorServiceTest {
+
+    private ScheduledExecutorService pool;
+
+    @BeforeEach
+    public void before() {
+        pool = TransactionIdMDC.scheduledExecutorService(Executors.newScheduledThreadPool(2));
+    }
+
+    @AfterEach
+    public void after() {
+        pool.shutdownNow();
+        TransactionIdMDC.clearId();
+    }
+
+    @Test
+    public void execute() throws InterruptedException {
+        AtomicReference<String> txId = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        TransactionIdMDC.setId("_TXID_");
+        pool.execute(() -> {
+            txId.set(TransactionIdMDC.getId());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals("_TXID_", txId.get());
+    }
+
+    @Test
+    public void submit() throws ExecutionException, InterruptedException {
+        TransactionIdMDC.setId("_TXID_");
+        assertEquals("_TXID_", pool.submit(TransactionIdMDC::getId).get());
+
+        TransactionIdMDC.clearId();
+        assertNull(pool.submit(TransactionIdMDC::getId).get());
+    }
+
+    @Test
+    public void submit_Binary() throws ExecutionException, InterruptedException {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        TransactionIdMDC.setId(id);
+        assertSame(id, pool.submit(TransactionIdMDC::getTransactionId).get());
+    }
+
+    @Test
+    public void invokeAll() throws ExecutionException, InterruptedException {
+        TransactionIdMDC.setId("_TXID_");
+
+        List<Callable<String>> tasks = List.of(TransactionIdMDC::getId, TransactionIdMDC::getId);
+        List<Future<String>> results = pool.invokeAll(tasks);
+        assertEquals(2, results.size());
+        assertEquals("_TXID_", results.get(0).get());
+        assertEquals("_TXID_", results.get(1).get());
+
+        assertEquals("_TXID_", pool.invokeAny(tasks));
+    }
+
+    @Test
+    public void schedule() throws ExecutionException, InterruptedException {
+        TransactionIdMDC.setId("_TXID_");
+        assertEquals("_TXID_", pool.schedule(TransactionIdMDC::getId, 1, TimeUnit.MILLISECONDS).get());
+    }
+
+    @Test
+    public void scheduleAtFixedRate() throws InterruptedException {
+        BlockingQueue<String> txIds = new LinkedBlockingQueue<>();
+
+        TransactionIdMDC.setId("_TXID_");
+        pool.scheduleAtFixedRate(() -> txIds.add(String.valueOf(TransactionIdMDC.getId())), 0, 1, TimeUnit.MILLISECONDS);
+        TransactionIdMDC.clearId();
+
+        assertEquals("_TXID_", txIds.poll(5, TimeUnit.SECONDS));
+        assertEquals("_TXID_", txIds.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void noDoubleWrapping() {
+        assertSame(pool, TransactionIdMDC.scheduledExecutorService(pool));
+        assertSame(pool, TransactionIdMDC.executorService(pool));
+
+        TransactionIdMDC.setId("_TXID_");
+        Runnable r = TransactionIdMDC.runnable(() -> {
+        });
+        assertSame(r, TransactionIdMDC.runnable(r));
+
+        Callable<String> c = TransactionIdMDC.callable(() -> "a");
+        assertSame(c, TransactionIdMDC.callable(c));
+    }
+}
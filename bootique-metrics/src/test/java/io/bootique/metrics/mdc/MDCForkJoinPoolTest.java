@@ -0,0 +1,164 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MDCForkJoinPoolTest {
+
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void before() {
+        pool = TransactionIdMDC.forkJoinPool(4);
+    }
+
+    @AfterEach
+    public void after() {
+        pool.shutdownNow();
+        TransactionIdMDC.clearId();
+    }
+
+    @Test
+    public void recursiveTask() {
+        TransactionIdMDC.setId("_TXID_");
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        assertEquals(1024, pool.invoke(new CountTask(0, 1024, seen)));
+        assertEquals(Set.of("_TXID_"), seen);
+    }
+
+    @Test
+    public void recursiveTask_CommonPool() {
+        TransactionIdMDC.setId("_TXID_");
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        assertEquals(1024, ForkJoinPool.commonPool().invoke(new CountTask(0, 1024, seen)));
+        assertEquals(Set.of("_TXID_"), seen);
+    }
+
+    @Test
+    public void recursiveAction_RestoresOuterId() {
+        TransactionIdMDC.setId("_INNER_");
+        MDCRecursiveAction inner = new MDCRecursiveAction() {
+            @Override
+            protected void compute() {
+                assertEquals("_INNER_", TransactionIdMDC.getId());
+            }
+        };
+
+        TransactionIdMDC.setId("_OUTER_");
+        String afterInner = pool.invoke(new MDCRecursiveTask<>() {
+            @Override
+            protected String compute() {
+                inner.invoke();
+                return TransactionIdMDC.getId();
+            }
+        });
+
+        assertEquals("_OUTER_", afterInner);
+        assertTrue(inner.isCompletedNormally());
+    }
+
+    @Test
+    public void plainTask() {
+        TransactionIdMDC.setId("_TXID_");
+
+        RecursiveTask<String> task = new RecursiveTask<>() {
+            @Override
+            protected String compute() {
+                return TransactionIdMDC.getId();
+            }
+        };
+
+        assertEquals("_TXID_", pool.invoke(task));
+        assertEquals("_TXID_", task.join());
+    }
+
+    @Test
+    public void submit() throws ExecutionException, InterruptedException {
+        TransactionIdMDC.setId("_TXID_");
+        assertEquals("_TXID_", pool.submit(TransactionIdMDC::getId).get());
+
+        BlockingQueue<String> ids = new LinkedBlockingQueue<>();
+        pool.execute(() -> ids.add(TransactionIdMDC.getId()));
+        assertEquals("_TXID_", ids.poll(5, TimeUnit.SECONDS));
+
+        List<Future<String>> all = pool.invokeAll(List.of(TransactionIdMDC::getId, TransactionIdMDC::getId));
+        assertEquals("_TXID_", all.get(0).get());
+        assertEquals("_TXID_", all.get(1).get());
+
+        // the worker threads are clean after the tasks
+        TransactionIdMDC.clearId();
+        assertNull(pool.submit(TransactionIdMDC::getId).get());
+    }
+
+    @Test
+    public void parallelStream() {
+        TransactionIdMDC.setId("_TXID_");
+
+        Set<String> ids = IntStream.range(0, 1000).boxed().parallel()
+                .map(TransactionIdMDC.function(i -> TransactionIdMDC.getId()))
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("_TXID_"), ids);
+
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 1000).boxed().parallel().forEach(TransactionIdMDC.consumer(i -> seen.add(TransactionIdMDC.getId())));
+        assertEquals(Set.of("_TXID_"), seen);
+
+        // the caller ID is intact
+        assertEquals("_TXID_", TransactionIdMDC.getId());
+    }
+
+    static class CountTask extends MDCRecursiveTask<Integer> {
+
+        private final int from;
+        private final int to;
+        private final Set<String> seen;
+
+        CountTask(int from, int to, Set<String> seen) {
+            this.from = from;
+            this.to = to;
+            this.seen = seen;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= 16) {
+                seen.add(String.valueOf(TransactionIdMDC.getId()));
+                return to - from;
+            }
+
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(from, mid, seen);
+            left.fork();
+            return new CountTask(mid, to, seen).compute() + left.join();
+        }
+    }
+}
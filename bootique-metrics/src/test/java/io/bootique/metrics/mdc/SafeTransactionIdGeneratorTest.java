@@ -19,8 +19,13 @@
 
 package io.bootique.metrics.mdc;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
 import org.junit.jupiter.api.Test;
 
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class SafeTransactionIdGeneratorTest {
@@ -59,6 +64,44 @@ public class SafeTransactionIdGeneratorTest {
                 id2.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN));
     }
 
+    @Test
+    public void reserveIds() {
+        SafeTransactionIdGenerator generator = new SafeTransactionIdGenerator();
+
+        TransactionIdBlock block = generator.reserveIds(UnsafeTransactionIdGenerator.MAX_BLOCK_SIZE);
+        assertEquals(UnsafeTransactionIdGenerator.MAX_BLOCK_SIZE, block.remaining());
+        assertNotEquals(block.nextId(), generator.nextId());
+
+        assertThrows(IllegalArgumentException.class, () -> generator.reserveIds(UnsafeTransactionIdGenerator.MAX_BLOCK_SIZE + 1));
+    }
+
+    @Test
+    public void getMetrics() throws InterruptedException {
+
+        SafeTransactionIdGenerator generator = new SafeTransactionIdGenerator(UnsafeTransactionIdGenerator.RESET_THRESHOLD - 1);
+        Map<String, Metric> metrics = generator.getMetrics();
+
+        Gauge<?> issued = (Gauge<?>) metrics.get("IssuedCount");
+        Timer resets = (Timer) metrics.get("Resets");
+
+        assertEquals(0L, issued.getValue());
+        assertEquals(0, resets.getCount());
+
+        generator.nextId();
+        generator.nextId();
+        generator.nextId();
+        Thread.sleep(500);
+
+        // each new counter starts close to the threshold too, so there may be more than one reset
+        assertTrue(resets.getCount() > 0);
+        assertEquals(3L, issued.getValue());
+
+        generator.nextId();
+        assertEquals(4L, issued.getValue());
+        Gauge<?> thresholdUsage = (Gauge<?>) metrics.get("ThresholdUsage");
+        assertTrue((Double) thresholdUsage.getValue() > 0.99);
+    }
+
     @Test
     public void nextId_Overflow() throws InterruptedException {
 
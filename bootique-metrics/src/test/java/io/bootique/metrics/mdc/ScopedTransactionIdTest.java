@@ -0,0 +1,144 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScopedTransactionIdTest {
+
+    @AfterEach
+    public void after() {
+        TransactionIdMDC.lazyRendering = false;
+        TransactionIdMDC.clearId();
+    }
+
+    @Test
+    public void run() {
+        TransactionId id = TransactionId.of("_TXID_");
+        AtomicReference<TransactionId> scoped = new AtomicReference<>();
+
+        assertFalse(ScopedTransactionId.isBound());
+        ScopedTransactionId.run(id, () -> scoped.set(ScopedTransactionId.get()));
+
+        assertSame(id, scoped.get());
+        assertFalse(ScopedTransactionId.isBound());
+        assertNull(ScopedTransactionId.get());
+    }
+
+    @Test
+    public void run_Nested() {
+        TransactionId outer = TransactionId.of("_OUTER_");
+        TransactionId inner = TransactionId.of("_INNER_");
+
+        ScopedTransactionId.run(outer, () -> {
+            ScopedTransactionId.run(inner, () -> {
+                assertSame(inner, ScopedTransactionId.get());
+                assertEquals("_INNER_", MDC.get(TransactionIdMDC.MDC_KEY));
+            });
+
+            assertSame(outer, ScopedTransactionId.get());
+            assertEquals("_OUTER_", MDC.get(TransactionIdMDC.MDC_KEY));
+        });
+
+        assertNull(ScopedTransactionId.get());
+        assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+    }
+
+    @Test
+    public void run_Exception() {
+        TransactionId id = TransactionId.of("_TXID_");
+        assertThrows(IllegalStateException.class, () -> ScopedTransactionId.run(id, () -> {
+            throw new IllegalStateException("_test_");
+        }));
+
+        assertNull(ScopedTransactionId.get());
+        assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+    }
+
+    @Test
+    public void call() throws Exception {
+        TransactionId id = TransactionId.of("_TXID_");
+        assertEquals("_TXID_", ScopedTransactionId.call(id, TransactionIdMDC::getId));
+
+        Exception e = assertThrows(Exception.class, () -> ScopedTransactionId.call(id, () -> {
+            throw new Exception("_test_");
+        }));
+        assertEquals("_test_", e.getMessage());
+    }
+
+    @Test
+    public void mdc_Eager() {
+        TransactionIdMDC.setId("_OUTER_");
+
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        ScopedTransactionId.run(id, () -> {
+            assertEquals(id.toString(), MDC.get(TransactionIdMDC.MDC_KEY));
+            assertSame(id, TransactionIdMDC.getTransactionId());
+        });
+
+        assertEquals("_OUTER_", MDC.get(TransactionIdMDC.MDC_KEY));
+    }
+
+    @Test
+    public void mdc_Lazy() {
+        TransactionIdMDC.lazyRendering = true;
+
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        ScopedTransactionId.run(id, () -> {
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+            assertFalse(id.isRendered());
+
+            // emulating a log event
+            TransactionIdMDC.renderPendingId();
+            assertEquals(id.toString(), MDC.get(TransactionIdMDC.MDC_KEY));
+        });
+
+        assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+    }
+
+    @Test
+    public void propagateToExecutor() throws ExecutionException, InterruptedException {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        ExecutorService pool = TransactionIdMDC.executorService(Executors.newSingleThreadExecutor());
+
+        try {
+            AtomicReference<TransactionId> propagated = new AtomicReference<>();
+            ScopedTransactionId.run(id, () -> {
+                try {
+                    propagated.set(pool.submit(TransactionIdMDC::getTransactionId).get());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            assertSame(id, propagated.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
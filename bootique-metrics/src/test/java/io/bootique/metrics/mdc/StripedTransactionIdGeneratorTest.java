@@ -0,0 +1,52 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedTransactionIdGeneratorTest {
+
+    @Test
+    public void getMetrics() {
+
+        StripedTransactionIdGenerator generator = new StripedTransactionIdGenerator(4);
+        Map<String, Metric> metrics = generator.getMetrics();
+
+        assertTrue(metrics.containsKey("Stripe.0.IssuedCount"));
+        assertTrue(metrics.containsKey("Stripe.3.Resets"));
+
+        Gauge<?> issued = (Gauge<?>) metrics.get("IssuedCount");
+        Gauge<?> usage = (Gauge<?>) metrics.get("ThresholdUsage");
+        assertEquals(0L, issued.getValue());
+
+        generator.nextId();
+        generator.nextId();
+        generator.nextTransactionId();
+
+        // the aggregate gauges are live and keep tracking the stripes after the metrics were collected
+        assertEquals(3L, issued.getValue());
+        assertTrue((Double) usage.getValue() > 0.);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeOrderedTransactionIdGeneratorTest {
+
+    static final long T0 = TimeOrderedTransactionIdGenerator.EPOCH + 1_000_000L;
+
+    @Test
+    public void nextId() {
+        AtomicLong clock = new AtomicLong(T0);
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(5, clock::get);
+
+        String id1 = generator.nextId();
+        String id2 = generator.nextId();
+
+        // 1_000_000 << 22 | 5 << 12 | seq
+        assertEquals("000003d090005000", id1);
+        assertEquals("000003d090005001", id2);
+        assertEquals(T0, TimeOrderedTransactionIdGenerator.getTimestamp(id1));
+
+        clock.set(T0 + 1);
+        String id3 = generator.nextId();
+        assertEquals("000003d090405000", id3);
+        assertEquals(T0 + 1, TimeOrderedTransactionIdGenerator.getTimestamp(id3));
+    }
+
+    @Test
+    public void nextId_SequenceOverflow() {
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(1023, () -> T0);
+
+        String last = null;
+        for (int i = 0; i < 4097; i++) {
+            String id = generator.nextId();
+            if (last != null) {
+                assertTrue(id.compareTo(last) > 0, "IDs must be increasing");
+            }
+            last = id;
+        }
+
+        // borrowed the next millisecond
+        assertEquals(T0 + 1, TimeOrderedTransactionIdGenerator.getTimestamp(last));
+    }
+
+    @Test
+    public void nextId_ClockGoesBack() {
+        AtomicLong clock = new AtomicLong(T0);
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(0, clock::get);
+
+        String id1 = generator.nextId();
+        clock.set(T0 - 1000);
+        String id2 = generator.nextId();
+
+        assertTrue(id2.compareTo(id1) > 0, "IDs must be increasing");
+    }
+
+    @Test
+    public void restart_LastTimestamp() {
+        AtomicLong clock = new AtomicLong(T0);
+        TimeOrderedTransactionIdGenerator g1 = new TimeOrderedTransactionIdGenerator(3, clock::get);
+
+        // borrow a few milliseconds from the future
+        g1.reserveIds(3 * 4096);
+        String lastId = g1.nextId();
+        long lastTimestamp = g1.getLastTimestamp();
+        assertEquals(T0 + 3, lastTimestamp);
+        assertEquals(lastTimestamp, TimeOrderedTransactionIdGenerator.getTimestamp(lastId));
+
+        // restart with the clock that didn't catch up
+        TimeOrderedTransactionIdGenerator g2 = new TimeOrderedTransactionIdGenerator(3, lastTimestamp, clock::get);
+        String id = g2.nextId();
+        assertTrue(id.compareTo(lastId) > 0, "IDs must be increasing across restarts");
+        assertEquals(T0 + 4, TimeOrderedTransactionIdGenerator.getTimestamp(id));
+    }
+
+    @Test
+    public void getLastTimestamp_Fresh() {
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(3, () -> T0);
+
+        // nothing was issued at T0 yet
+        assertEquals(T0 - 1, generator.getLastTimestamp());
+        generator.nextId();
+        assertEquals(T0, generator.getLastTimestamp());
+    }
+
+    @Test
+    public void nextId_Buffer() {
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(5, () -> T0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(TimeOrderedTransactionIdGenerator.STRING_LENGTH);
+        assertEquals(TimeOrderedTransactionIdGenerator.STRING_LENGTH, generator.nextId(buffer));
+        assertEquals("000003d090005000", StandardCharsets.US_ASCII.decode(buffer.flip()).toString());
+
+        char[] chars = new char[TimeOrderedTransactionIdGenerator.STRING_LENGTH];
+        generator.nextId(chars, 0);
+        assertEquals("000003d090005001", new String(chars));
+    }
+
+    @Test
+    public void reserveIds() {
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(5, () -> T0);
+
+        generator.nextId();
+        TransactionIdBlock block = generator.reserveIds(4096);
+        assertEquals("000003d090405001", generator.nextId());
+
+        List<String> ids = new ArrayList<>();
+        while (block.remaining() > 0) {
+            ids.add(block.nextId());
+        }
+
+        assertEquals("000003d090005001", ids.get(0));
+        assertEquals("000003d090005fff", ids.get(4094));
+        assertEquals("000003d090405000", ids.get(4095));
+    }
+
+    @Test
+    public void getMinId() {
+        TimeOrderedTransactionIdGenerator generator = new TimeOrderedTransactionIdGenerator(5, () -> T0);
+        String min = TimeOrderedTransactionIdGenerator.getMinId(T0);
+        assertEquals("000003d090000000", min);
+        assertTrue(generator.nextId().compareTo(min) > 0);
+    }
+
+    @Test
+    public void invalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedTransactionIdGenerator(1024));
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedTransactionIdGenerator(-1));
+    }
+}
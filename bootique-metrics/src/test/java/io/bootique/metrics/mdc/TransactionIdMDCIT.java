@@ -23,16 +23,20 @@ import io.bootique.BQRuntime;
 import io.bootique.Bootique;
 import io.bootique.junit.BQApp;
 import io.bootique.junit.BQTest;
+import ch.qos.logback.classic.LoggerContext;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.*;
 
 @BQTest
 public class TransactionIdMDCIT {
@@ -156,4 +160,245 @@ public class TransactionIdMDCIT {
 
         assertEquals("_OTHER_TXID_", txId.get());
     }
+
+    @Test
+    public void runnable_Binary() throws ExecutionException, InterruptedException {
+        AtomicReference<TransactionId> txId = new AtomicReference<>();
+
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        TransactionIdMDC.setId(id);
+        Runnable toTest = TransactionIdMDC.runnable(() -> {
+            LOGGER.info("within tx");
+            txId.set(TransactionIdMDC.getTransactionId());
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            pool.submit(toTest).get();
+        } finally {
+            pool.shutdown();
+            TransactionIdMDC.clearId();
+        }
+
+        // propagated as is
+        assertSame(id, txId.get());
+    }
+
+    @Test
+    public void setId_Binary_Eager() {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+            assertTrue(id.isRendered());
+            assertEquals(id.toString(), MDC.get(TransactionIdMDC.MDC_KEY));
+            assertSame(id, TransactionIdMDC.getTransactionId());
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+
+        assertNull(TransactionIdMDC.getTransactionId());
+    }
+
+    @Test
+    public void setId_Binary_Lazy() {
+        assertTrue(TransactionIdTurboFilter.install());
+
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+            assertFalse(id.isRendered());
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+            assertSame(id, TransactionIdMDC.getTransactionId());
+
+            // disabled level, no rendering
+            LOGGER.trace("within tx");
+            assertFalse(id.isRendered());
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+
+            LOGGER.info("within tx");
+            assertTrue(id.isRendered());
+            assertEquals(id.toString(), MDC.get(TransactionIdMDC.MDC_KEY));
+            assertSame(id, TransactionIdMDC.getTransactionId());
+        } finally {
+            TransactionIdMDC.clearId();
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+            context.getTurboFilterList().removeIf(f -> {
+                if (f instanceof TransactionIdTurboFilter) {
+                    f.stop();
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        assertFalse(TransactionIdMDC.lazyRendering);
+    }
+
+    @Test
+    public void getId_RendersPending() {
+        TransactionIdMDC.lazyRendering = true;
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+            assertEquals(id.toString(), TransactionIdMDC.getId());
+            assertEquals(id.toString(), MDC.get(TransactionIdMDC.MDC_KEY));
+        } finally {
+            TransactionIdMDC.lazyRendering = false;
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void setId_Binary_MDCCleared() {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+            assertEquals(id.toString(), TransactionIdMDC.getId());
+
+            // e.g. a servlet filter or a pooled thread framework clearing the MDC between requests
+            MDC.clear();
+
+            assertNull(TransactionIdMDC.getId());
+            assertNull(TransactionIdMDC.getTransactionId());
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+
+            Runnable r = () -> {
+            };
+            assertSame(r, TransactionIdMDC.runnable(r));
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void getId_RendersPending_MDCCleared() {
+        TransactionIdMDC.lazyRendering = true;
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+            assertEquals(id.toString(), TransactionIdMDC.getId());
+
+            // once rendered into the MDC, the ID is no longer pending and is gone with the MDC
+            MDC.remove(TransactionIdMDC.MDC_KEY);
+            assertNull(TransactionIdMDC.getId());
+            assertNull(TransactionIdMDC.getTransactionId());
+        } finally {
+            TransactionIdMDC.lazyRendering = false;
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void getId_Pending_MDCCleared() {
+        TransactionIdMDC.lazyRendering = true;
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        try {
+            TransactionIdMDC.setId(id);
+
+            // the pending ID must be discarded with the MDC, and never rendered on that thread later
+            MDC.clear();
+            assertNull(TransactionIdMDC.getTransactionId());
+            assertNull(TransactionIdMDC.getId());
+
+            TransactionIdMDC.renderPendingId();
+            assertNull(MDC.get(TransactionIdMDC.MDC_KEY));
+            assertFalse(TransactionIdMDC.hasId());
+
+            // a captured ID must be installed on the cleared thread
+            AtomicReference<String> seen = new AtomicReference<>();
+            new MDCRunnable(() -> seen.set(TransactionIdMDC.getId()), TransactionId.of("_CAPTURED_")).run();
+            assertEquals("_CAPTURED_", seen.get());
+        } finally {
+            TransactionIdMDC.lazyRendering = false;
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void getId_Pending_MarkerCopied() throws Exception {
+        TransactionIdMDC.lazyRendering = true;
+        try {
+            TransactionIdMDC.setId(new UnsafeTransactionIdGenerator(0).nextTransactionId());
+            Map<String, String> context = MDC.getCopyOfContextMap();
+
+            // a marker copied to another thread must not revive the stale binary ID of that thread
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                TransactionId stale = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+                TransactionId seen = executor.submit(() -> {
+                    TransactionIdMDC.setId(stale);
+                    MDC.setContextMap(context);
+                    try {
+                        return TransactionIdMDC.getTransactionId();
+                    } finally {
+                        TransactionIdMDC.clearId();
+                    }
+                }).get();
+
+                assertNull(seen);
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            TransactionIdMDC.lazyRendering = false;
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void setId_StringOverridesBinary() {
+        try {
+            TransactionIdMDC.setId(new UnsafeTransactionIdGenerator(0).nextTransactionId());
+            TransactionIdMDC.setId("_TXID_");
+            assertEquals(TransactionId.of("_TXID_"), TransactionIdMDC.getTransactionId());
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void setId_Text_KeepsStringState() {
+        try {
+            TransactionIdMDC.setId(TransactionId.of("_TXID_"));
+            assertEquals("_TXID_", MDC.get(TransactionIdMDC.MDC_KEY));
+            assertNull(TransactionIdMDC.getCurrentBinaryId());
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void function_StringId_SameId() {
+        String outer = new String("_TXID_");
+        try {
+            TransactionIdMDC.setId(outer);
+            Function<String, String> f = TransactionIdMDC.function(s -> MDC.get(TransactionIdMDC.MDC_KEY));
+
+            // the caller thread processing its own element must not re-set the ID
+            assertSame(outer, f.apply("x"));
+            assertSame(outer, MDC.get(TransactionIdMDC.MDC_KEY));
+            assertNull(TransactionIdMDC.getCurrentBinaryId());
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+    }
+
+    @Test
+    public void consumer_StringId_RestoresOuterString() {
+        try {
+            TransactionIdMDC.setId("_INNER_");
+            AtomicReference<String> seen = new AtomicReference<>();
+            Consumer<String> c = TransactionIdMDC.consumer(s -> seen.set(TransactionIdMDC.getId()));
+
+            TransactionIdMDC.setId("_OUTER_");
+            c.accept("x");
+
+            assertEquals("_INNER_", seen.get());
+            assertEquals("_OUTER_", MDC.get(TransactionIdMDC.MDC_KEY));
+            assertNull(TransactionIdMDC.getCurrentBinaryId());
+        } finally {
+            TransactionIdMDC.clearId();
+        }
+    }
 }
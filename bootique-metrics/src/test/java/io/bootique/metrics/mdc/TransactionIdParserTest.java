@@ -0,0 +1,108 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdParserTest {
+
+    private final TransactionIdParser parser = new TransactionIdParser(32);
+
+    @Test
+    public void parse_Valid() {
+        TransactionId id = parser.parse("req-42:a.b_c+d/e=");
+        assertNotNull(id);
+        assertEquals("req-42:a.b_c+d/e=", id.toString());
+
+        assertTrue(parser.isValid("req-42:a.b_c+d/e="));
+    }
+
+    @Test
+    public void parse_Invalid() {
+        assertNull(parser.parse(null));
+        assertNull(parser.parse(""));
+        assertNull(parser.parse("a b"));
+        assertNull(parser.parse("a\nb"));
+        assertNull(parser.parse("aéb"));
+        assertNull(parser.parse("x".repeat(33)));
+
+        assertFalse(parser.isValid(null));
+        assertFalse(parser.isValid("a%20b"));
+        assertFalse(parser.isValid("x".repeat(33)));
+    }
+
+    @Test
+    public void parse_LocalIdsAsBinary() {
+        TransactionIdGenerator[] generators = {
+                new UnsafeTransactionIdGenerator(-5),
+                new LongTransactionIdGenerator(),
+                new TimeOrderedTransactionIdGenerator()
+        };
+
+        for (TransactionIdGenerator g : generators) {
+            TransactionId generated = g.nextTransactionId();
+            String text = generated.toString();
+
+            TransactionId parsed = parser.parse(new StringBuilder(text));
+            assertFalse(parsed.isRendered(), "Expected a binary ID for " + text);
+            assertEquals(generated, parsed);
+            assertEquals(text, parsed.toString());
+
+            byte[] bytes = ("X:" + text + ":X").getBytes(StandardCharsets.US_ASCII);
+            TransactionId parsedBytes = parser.parse(bytes, 2, text.length());
+            assertFalse(parsedBytes.isRendered(), "Expected a binary ID for " + text);
+            assertEquals(generated, parsedBytes);
+        }
+    }
+
+    @Test
+    public void parse_UppercaseHexAsText() {
+        // uppercase hex would not render back to the same text from the binary form
+        TransactionId id = parser.parse("0123456789ABCDEF");
+        assertTrue(id.isRendered());
+        assertEquals("0123456789ABCDEF", id.toString());
+    }
+
+    @Test
+    public void parse_Bytes() {
+        byte[] bytes = "__gw-id-1__".getBytes(StandardCharsets.US_ASCII);
+        assertEquals("gw-id-1", parser.parse(bytes, 2, 7).toString());
+
+        assertNull(parser.parse(bytes, 0, 0));
+        assertNull(parser.parse(new byte[]{'a', (byte) 0xE9, 'b'}, 0, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> parser.parse(bytes, 5, 10));
+    }
+
+    @Test
+    public void parseOrGenerate() {
+        TransactionIdGenerator generator = new LongTransactionIdGenerator();
+
+        assertEquals("upstream-1", parser.parseOrGenerate("upstream-1", generator).toString());
+
+        TransactionId generated = parser.parseOrGenerate("bad id", generator);
+        assertEquals(LongTransactionIdGenerator.STRING_LENGTH, generated.length());
+
+        byte[] bytes = "bad id".getBytes(StandardCharsets.US_ASCII);
+        assertNotEquals(generated, parser.parseOrGenerate(bytes, 0, bytes.length, generator));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdSamplerTest {
+
+    @AfterEach
+    public void clearId() {
+        TransactionIdMDC.clearId();
+    }
+
+    @Test
+    public void invalidRate() {
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdSampler(-0.1));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdSampler(1.1));
+        assertThrows(IllegalArgumentException.class, () -> new TransactionIdSampler(Double.NaN));
+    }
+
+    @Test
+    public void hash_BinaryMatchesText() {
+        TransactionIdGenerator[] generators = {
+                new UnsafeTransactionIdGenerator(Integer.MIN_VALUE),
+                new LongTransactionIdGenerator(),
+                new TimeOrderedTransactionIdGenerator()
+        };
+
+        for (TransactionIdGenerator g : generators) {
+            TransactionId id = g.nextTransactionId();
+            long hash = TransactionIdSampler.hash(id);
+            assertFalse(id.isRendered(), "Hashing must not render the ID");
+
+            assertEquals(TransactionIdSampler.hash(id.toString()), hash);
+            assertEquals(hash, TransactionIdSampler.hash(TransactionId.of(id.toString())));
+        }
+    }
+
+    @Test
+    public void sample_AllOrNone() {
+        TransactionIdSampler all = new TransactionIdSampler(1.);
+        TransactionIdSampler none = new TransactionIdSampler(0.);
+
+        TransactionIdGenerator generator = new LongTransactionIdGenerator();
+        for (int i = 0; i < 1000; i++) {
+            String id = generator.nextId();
+            assertTrue(all.sample(id));
+            assertFalse(none.sample(id));
+        }
+    }
+
+    @Test
+    public void sample_Rate() {
+        TransactionIdSampler sampler = new TransactionIdSampler(0.01);
+        TransactionIdSampler nested = new TransactionIdSampler(0.001);
+
+        TransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0);
+
+        int sampled = 0;
+        for (int i = 0; i < 100_000; i++) {
+            TransactionId id = generator.nextTransactionId();
+            long hash = TransactionIdSampler.hash(id);
+
+            if (sampler.sampleHash(hash)) {
+                sampled++;
+            } else {
+                assertFalse(nested.sampleHash(hash), "Lower rate samples must be a subset of the higher rate samples");
+            }
+        }
+
+        // sequential IDs must be spread evenly
+        assertTrue(sampled > 800 && sampled < 1200, "Unexpected sampled count: " + sampled);
+    }
+
+    @Test
+    public void sample_Current() throws Exception {
+        TransactionIdSampler sampler = new TransactionIdSampler(0.5);
+        assertFalse(sampler.sample());
+
+        TransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0);
+        for (int i = 0; i < 100; i++) {
+            TransactionId id = generator.nextTransactionId();
+            boolean expected = sampler.sample(id.toString());
+
+            TransactionIdMDC.setId(id);
+            assertEquals(expected, sampler.sample());
+
+            TransactionIdMDC.setId(id.toString());
+            assertEquals(expected, sampler.sample());
+
+            assertEquals(expected, ScopedTransactionId.call(id, sampler::sample));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionIdTest {
+
+    @Test
+    public void toString_MatchesStringIds() {
+        UnsafeTransactionIdGenerator unsafe = new UnsafeTransactionIdGenerator(0xab12);
+        assertEquals(next(unsafe.nextId(), 1), unsafe.nextTransactionId().toString());
+
+        LongTransactionIdGenerator longGenerator = new LongTransactionIdGenerator(0x10L);
+        assertEquals(next(longGenerator.nextId(), 1), longGenerator.nextTransactionId().toString());
+
+        TimeOrderedTransactionIdGenerator time = new TimeOrderedTransactionIdGenerator(5, () -> TimeOrderedTransactionIdGenerator.EPOCH + 1000);
+        assertEquals(next(time.nextId(), 1), time.nextTransactionId().toString());
+    }
+
+    @Test
+    public void toString_Lazy() {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        assertFalse(id.isRendered());
+
+        String s = id.toString();
+        assertTrue(id.isRendered());
+        assertSame(s, id.toString());
+    }
+
+    @Test
+    public void of() {
+        TransactionId id = TransactionId.of("_TXID_");
+        assertTrue(id.isRendered());
+        assertEquals(6, id.length());
+        assertEquals("_TXID_", id.toString());
+        assertEquals(TransactionId.of("_TXID_"), id);
+    }
+
+    @Test
+    public void defaultGenerator() {
+        TransactionIdGenerator generator = () -> "_TXID_";
+        assertEquals(TransactionId.of("_TXID_"), generator.nextTransactionId());
+    }
+
+    @Test
+    public void writeTo() {
+        TransactionId id = new LongTransactionIdGenerator(0xab12L).nextTransactionId();
+        int len = LongTransactionIdGenerator.STRING_LENGTH;
+        assertEquals(len, id.length());
+
+        char[] chars = new char[len + 2];
+        assertEquals(len, id.writeTo(chars, 2));
+
+        CharBuffer charBuffer = CharBuffer.allocate(len);
+        assertEquals(len, id.writeTo(charBuffer));
+
+        // byte order must not affect the output
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(len).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(len, id.writeTo(byteBuffer));
+
+        // nothing was rendered so far
+        assertFalse(id.isRendered());
+
+        String s = id.toString();
+        assertTrue(s.endsWith("-000000000000ab12"), s);
+        assertEquals(s, new String(chars, 2, len));
+        assertEquals(s, charBuffer.flip().toString());
+        assertEquals(s, StandardCharsets.US_ASCII.decode(byteBuffer.flip()).toString());
+    }
+
+    @Test
+    public void writeTo_Overflow() {
+        TransactionId id = new UnsafeTransactionIdGenerator(0).nextTransactionId();
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> id.writeTo(new char[20], 5));
+        assertThrows(java.nio.BufferOverflowException.class, () -> id.writeTo(ByteBuffer.allocate(15)));
+    }
+
+    @Test
+    public void equalsHashCode() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(7);
+        TransactionId id1 = generator.toTransactionId(7);
+        TransactionId id2 = generator.toTransactionId(7);
+        TransactionId id3 = generator.toTransactionId(8);
+
+        assertEquals(id1, id2);
+        assertEquals(id1.hashCode(), id2.hashCode());
+        assertNotEquals(id1, id3);
+
+        // comparison doesn't render the IDs
+        assertFalse(id1.isRendered());
+        assertFalse(id2.isRendered());
+    }
+
+    // increments the last hex digit of the ID, assuming no carry
+    private static String next(String id, int delta) {
+        int last = id.length() - 1;
+        return id.substring(0, last) + Character.forDigit(Character.digit(id.charAt(last), 16) + delta, 16);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnsafeTransactionIdGeneratorTest {
+
+    @Test
+    public void nextId() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0xab12);
+
+        String id1 = generator.nextId();
+        assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, id1.length());
+        assertTrue(id1.endsWith("-0000ab12"), id1);
+
+        String id2 = generator.nextId();
+        assertTrue(id2.endsWith("-0000ab13"), id2);
+    }
+
+    @Test
+    public void nextId_Negative() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(-2);
+        assertTrue(generator.nextId().endsWith("-fffffffe"));
+        assertTrue(generator.nextId().endsWith("-ffffffff"));
+        assertTrue(generator.nextId().endsWith("-00000000"));
+    }
+
+    @Test
+    public void nextId_CharArray() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(Integer.MIN_VALUE);
+        String id1 = generator.nextId();
+
+        char[] buffer = new char[UnsafeTransactionIdGenerator.STRING_LENGTH + 2];
+        buffer[0] = '[';
+        buffer[buffer.length - 1] = ']';
+
+        assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, generator.nextId(buffer, 1));
+        String id2 = new String(buffer);
+
+        assertEquals("[" + id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN) + "80000001]", id2);
+    }
+
+    @Test
+    public void nextId_CharArray_Overflow() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0);
+        char[] buffer = new char[UnsafeTransactionIdGenerator.STRING_LENGTH];
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> generator.nextId(buffer, 1));
+        assertEquals(0, buffer[0], "Nothing must be written on overflow");
+        assertEquals(0, generator.getIssuedCount(), "No ID must be wasted on overflow");
+
+        TransactionIdBlock block = generator.reserveIds(2);
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> block.nextId(buffer, 1));
+        assertEquals(2, block.remaining());
+    }
+
+    @Test
+    public void nextId_CharBuffer() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(15);
+        String id1 = generator.nextId();
+
+        CharBuffer buffer = CharBuffer.allocate(100);
+        buffer.put("txid=");
+
+        assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, generator.nextId(buffer));
+        assertEquals(5 + UnsafeTransactionIdGenerator.STRING_LENGTH, buffer.position());
+
+        buffer.flip();
+        assertEquals("txid=" + id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN) + "00000010", buffer.toString());
+    }
+
+    @Test
+    public void nextId_ByteBuffer() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(15);
+        String id1 = generator.nextId();
+
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(100), ByteBuffer.allocateDirect(100)}) {
+            buffer.put((byte) 'x');
+
+            assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, generator.nextId(buffer));
+            assertEquals(1 + UnsafeTransactionIdGenerator.STRING_LENGTH, buffer.position());
+
+            buffer.flip();
+            String id = StandardCharsets.US_ASCII.decode(buffer).toString();
+            assertTrue(id.startsWith("x" + id1.substring(0, UnsafeTransactionIdGenerator.COUNTER_STRING_LEN)), id);
+        }
+    }
+
+    @Test
+    public void reserveIds() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0x10);
+
+        TransactionIdBlock block = generator.reserveIds(3);
+        assertEquals(3, block.remaining());
+
+        // the generator counter must skip the reserved range
+        assertTrue(generator.nextId().endsWith("-00000013"));
+
+        assertTrue(block.nextId().endsWith("-00000010"));
+
+        char[] chars = new char[UnsafeTransactionIdGenerator.STRING_LENGTH];
+        block.nextId(chars, 0);
+        assertTrue(new String(chars).endsWith("-00000011"));
+
+        ByteBuffer bytes = ByteBuffer.allocate(UnsafeTransactionIdGenerator.STRING_LENGTH);
+        block.nextId(bytes);
+        assertTrue(StandardCharsets.US_ASCII.decode(bytes.flip()).toString().endsWith("-00000012"));
+
+        assertEquals(0, block.remaining());
+        assertThrows(NoSuchElementException.class, block::nextId);
+    }
+
+    @Test
+    public void reserveIds_InvalidSize() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0);
+        assertThrows(IllegalArgumentException.class, () -> generator.reserveIds(0));
+    }
+
+    @Test
+    public void reserveIds_Default() {
+        TransactionIdGenerator generator = () -> "x";
+
+        TransactionIdBlock block = generator.reserveIds(2);
+        assertEquals("x", block.nextId());
+        assertEquals("x", block.nextId());
+        assertThrows(NoSuchElementException.class, block::nextId);
+    }
+
+    @Test
+    public void nextId_ByteBuffer_Overflow() {
+        UnsafeTransactionIdGenerator generator = new UnsafeTransactionIdGenerator(0);
+        ByteBuffer buffer = ByteBuffer.allocate(UnsafeTransactionIdGenerator.STRING_LENGTH - 1);
+        assertThrows(BufferOverflowException.class, () -> generator.nextId(buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(0, generator.getIssuedCount(), "No ID must be wasted on overflow");
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.bootique.metrics.mdc;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadTransactionIdGeneratorTest {
+
+    @Test
+    public void nextId() {
+        VirtualThreadTransactionIdGenerator generator = new VirtualThreadTransactionIdGenerator(4);
+
+        String id1 = generator.nextId();
+        assertEquals(UnsafeTransactionIdGenerator.STRING_LENGTH, id1.length());
+
+        String id2 = generator.nextId();
+        assertNotEquals(id1, id2);
+    }
+
+    @Test
+    public void noThreadLocals() throws Exception {
+        VirtualThreadTransactionIdGenerator generator = new VirtualThreadTransactionIdGenerator(4);
+
+        // replace the probes of the superclass with a ThreadLocal that fails on access
+        Field probes = AdaptiveStripedTransactionIdGenerator.class.getDeclaredField("probes");
+        probes.setAccessible(true);
+        probes.set(generator, new ThreadLocal<>() {
+            @Override
+            public Object get() {
+                throw new AssertionError("ThreadLocal accessed");
+            }
+        });
+
+        generator.nextId();
+        generator.nextId(new char[UnsafeTransactionIdGenerator.STRING_LENGTH], 0);
+        generator.nextId(CharBuffer.allocate(UnsafeTransactionIdGenerator.STRING_LENGTH));
+        generator.nextId(ByteBuffer.allocate(UnsafeTransactionIdGenerator.STRING_LENGTH));
+        generator.nextTransactionId();
+        generator.reserveIds(10);
+    }
+
+    @Test
+    public void nextId_VirtualThreadPerTask() throws Exception {
+
+        int tasks = 100_000;
+        VirtualThreadTransactionIdGenerator generator = new VirtualThreadTransactionIdGenerator();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                futures.add(pool.submit(() -> ids.add(generator.nextId())));
+            }
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        }
+
+        assertEquals(tasks, ids.size(), "Duplicate IDs generated");
+        assertTrue(generator.getStripesCount() <= AdaptiveStripedTransactionIdGenerator.ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+    }
+}
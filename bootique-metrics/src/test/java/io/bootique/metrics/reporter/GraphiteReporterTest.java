@@ -0,0 +1,179 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GraphiteReporterTest {
+
+    private ServerSocket server;
+    private MetricRegistry registry;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        server.setSoTimeout(2000);
+        registry = new MetricRegistry();
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    private GraphiteReporter createReporter(GraphiteReporter.Format format, int port, int chunkSize, int maxChunks) throws IOException {
+        return new GraphiteReporter(
+                registry,
+                "127.0.0.1",
+                port,
+                format,
+                "app",
+                500,
+                chunkSize,
+                maxChunks,
+                50,
+                200,
+                1000,
+                null,
+                true);
+    }
+
+    @Test
+    public void report_Plaintext() throws IOException {
+        registry.counter("c").inc(3);
+        registry.register("g", (Gauge<Double>) () -> -0.5);
+
+        try (GraphiteReporter reporter = createReporter(GraphiteReporter.Format.PLAINTEXT, server.getLocalPort(), 1024, 4)) {
+            reporter.report();
+
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(2000);
+                byte[] buffer = new byte[1024];
+                int len = socket.getInputStream().read(buffer);
+                String[] lines = new String(buffer, 0, len, StandardCharsets.US_ASCII).split("\n");
+
+                assertEquals(2, lines.length);
+                assertTrue(lines[0].matches("app\\.g -0\\.5 \\d+"), lines[0]);
+                assertTrue(lines[1].matches("app\\.c\\.count 3 \\d+"), lines[1]);
+            }
+        }
+    }
+
+    @Test
+    public void report_Pickle() throws IOException {
+        registry.counter("c").inc(3);
+        registry.timer("t").update(2, TimeUnit.MILLISECONDS);
+
+        try (GraphiteReporter reporter = createReporter(GraphiteReporter.Format.PICKLE, server.getLocalPort(), 256, 16)) {
+            reporter.report();
+
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(2000);
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+
+                // timer metrics don't fit into a single 256 byte chunk, so expecting at least 2 frames
+                for (int i = 0; i < 2; i++) {
+                    int len = in.readInt();
+                    byte[] frame = new byte[len];
+                    in.readFully(frame);
+
+                    String pickle = new String(frame, StandardCharsets.US_ASCII);
+                    assertTrue(pickle.startsWith("(l(S'app."), pickle);
+                    assertTrue(pickle.endsWith("'\ntta."), pickle);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void report_Unavailable() throws IOException {
+        registry.counter("c").inc(3);
+
+        int port = server.getLocalPort();
+        server.close();
+
+        try (GraphiteReporter reporter = createReporter(GraphiteReporter.Format.PLAINTEXT, port, 64, 2)) {
+            GraphiteConnection connection = reporter.getConnection();
+
+            reporter.report();
+            assertFalse(connection.isConnected());
+            assertEquals(1, connection.getBacklogSize());
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(100), connection.getBackoffNanos());
+
+            // within the backoff period, no reconnect attempt
+            reporter.report();
+            reporter.report();
+            assertEquals(2, connection.getBacklogSize(), "Backlog must be bounded");
+            assertEquals(1, connection.getDroppedChunks());
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(100), connection.getBackoffNanos());
+        }
+    }
+
+    @Test
+    public void report_Reconnect() throws Exception {
+        registry.counter("c").inc(3);
+
+        try (GraphiteReporter reporter = createReporter(GraphiteReporter.Format.PLAINTEXT, server.getLocalPort(), 1024, 4)) {
+
+            reporter.report();
+            Socket s1 = server.accept();
+            s1.close();
+
+            // the first write after the peer closed may still succeed, so keep reporting until the failure is detected
+            GraphiteConnection connection = reporter.getConnection();
+            for (int i = 0; i < 20 && connection.isConnected(); i++) {
+                reporter.report();
+                Thread.sleep(20);
+            }
+            assertFalse(connection.isConnected());
+
+            // wait for the backoff to expire, and reconnect
+            Thread.sleep(150);
+            reporter.report();
+
+            try (Socket s2 = server.accept()) {
+                s2.setSoTimeout(2000);
+                byte[] buffer = new byte[1024];
+                int len = s2.getInputStream().read(buffer);
+                assertTrue(new String(buffer, 0, len, StandardCharsets.US_ASCII).startsWith("app.c.count 3 "));
+            }
+
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(50), connection.getBackoffNanos());
+        }
+    }
+
+    @Test
+    public void sanitize() {
+        assertEquals("a_b_c_d", GraphiteReporter.sanitize("a b'c\\d"));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrometheusReporterTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private MetricRegistry registry;
+    private PrometheusReporter reporter;
+
+    @BeforeEach
+    public void startReporter() throws IOException {
+        registry = new MetricRegistry();
+        registry.counter("c").inc(3);
+
+        reporter = new PrometheusReporter(registry, new InetSocketAddress("127.0.0.1", 0), "/metrics", true, 0);
+        reporter.start();
+    }
+
+    @AfterEach
+    public void stopReporter() {
+        reporter.close();
+    }
+
+    private HttpRequest.Builder request() {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + reporter.getAddress().getPort() + "/metrics"));
+    }
+
+    @Test
+    public void scrape() throws Exception {
+        HttpResponse<String> response = client.send(request().build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(PrometheusReporter.CONTENT_TYPE, response.headers().firstValue("Content-Type").orElse(null));
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+        assertEquals("# TYPE c gauge\nc 3\n", response.body());
+    }
+
+    @Test
+    public void scrape_Gzip() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            HttpResponse<InputStream> response = client.send(
+                    request().header("Accept-Encoding", "gzip").build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+
+            assertEquals(200, response.statusCode());
+            assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+
+            try (InputStream in = new GZIPInputStream(response.body())) {
+                assertEquals("# TYPE c gauge\nc " + (3 + i) + "\n", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+            }
+
+            registry.counter("c").inc();
+        }
+    }
+
+    @Test
+    public void scrape_NotModified() throws Exception {
+        HttpResponse<String> r1 = client.send(request().build(), HttpResponse.BodyHandlers.ofString());
+        String etag = r1.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> r2 = client.send(request().header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, r2.statusCode());
+        assertEquals("", r2.body());
+
+        registry.counter("c").inc();
+
+        HttpResponse<String> r3 = client.send(request().header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, r3.statusCode());
+        assertNotEquals(etag, r3.headers().firstValue("ETag").orElseThrow());
+        assertEquals("# TYPE c gauge\nc 4\n", r3.body());
+    }
+
+    @Test
+    public void scrape_NotModified_Gzip() throws Exception {
+        HttpResponse<String> plain = client.send(request().build(), HttpResponse.BodyHandlers.ofString());
+        String plainEtag = plain.headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<byte[]> gzipped = client.send(
+                request().header("Accept-Encoding", "gzip").build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        String gzippedEtag = gzipped.headers().firstValue("ETag").orElseThrow();
+        assertNotEquals(plainEtag, gzippedEtag);
+
+        // a cached plain body must not be revalidated for a gzip request and vice versa
+        HttpResponse<byte[]> r1 = client.send(
+                request().header("Accept-Encoding", "gzip").header("If-None-Match", plainEtag).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, r1.statusCode());
+        assertEquals("gzip", r1.headers().firstValue("Content-Encoding").orElse(null));
+
+        HttpResponse<String> r2 = client.send(request().header("If-None-Match", gzippedEtag).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, r2.statusCode());
+        assertEquals("# TYPE c gauge\nc 3\n", r2.body());
+
+        HttpResponse<byte[]> r3 = client.send(
+                request().header("Accept-Encoding", "gzip").header("If-None-Match", gzippedEtag).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, r3.statusCode());
+    }
+
+    @Test
+    public void scrape_MethodNotAllowed() throws Exception {
+        HttpResponse<String> response = client.send(
+                request().POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(405, response.statusCode());
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertTrue(PrometheusReporter.acceptsGzip("gzip"));
+        assertTrue(PrometheusReporter.acceptsGzip("deflate, gzip"));
+        assertFalse(PrometheusReporter.acceptsGzip("identity"));
+        assertFalse(PrometheusReporter.acceptsGzip(null));
+    }
+}
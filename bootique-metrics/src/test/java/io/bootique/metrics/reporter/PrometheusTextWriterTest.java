@@ -0,0 +1,133 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrometheusTextWriterTest {
+
+    private static String render(PrometheusTextWriter writer, MetricRegistry registry) {
+        ExpositionBuffer buffer = new ExpositionBuffer(16);
+        writer.write(registry, buffer);
+        return new String(buffer.array(), 0, buffer.size(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void sanitize() {
+        assertEquals("bq_Metrics_TransactionId_IssuedCount", PrometheusTextWriter.sanitize("bq.Metrics.TransactionId.IssuedCount"));
+        assertEquals("_1a_b:c", PrometheusTextWriter.sanitize("1a-b:c"));
+        assertEquals("_", PrometheusTextWriter.sanitize(""));
+    }
+
+    @Test
+    public void write() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c.1").inc(-3);
+        registry.meter("m").mark(5);
+        registry.register("g.d", (Gauge<Double>) () -> 1.5);
+        registry.register("g.b", (Gauge<Boolean>) () -> true);
+        registry.register("g.s", (Gauge<String>) () -> "not a number");
+        registry.histogram("h").update(10);
+        registry.timer("t").update(2, TimeUnit.SECONDS);
+
+        String expected = """
+                # TYPE g_b gauge
+                g_b 1
+                # TYPE g_d gauge
+                g_d 1.5
+                # TYPE c_1 gauge
+                c_1 -3
+                # TYPE h summary
+                h{quantile="0.5"} 10
+                h{quantile="0.75"} 10
+                h{quantile="0.95"} 10
+                h{quantile="0.98"} 10
+                h{quantile="0.99"} 10
+                h{quantile="0.999"} 10
+                h_count 1
+                # TYPE m_total counter
+                m_total 5
+                # TYPE t summary
+                t{quantile="0.5"} 2
+                t{quantile="0.75"} 2
+                t{quantile="0.95"} 2
+                t{quantile="0.98"} 2
+                t{quantile="0.99"} 2
+                t{quantile="0.999"} 2
+                t_count 1
+                """;
+
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        assertEquals(expected, render(writer, registry));
+
+        // cached names must produce the same output
+        assertEquals(expected, render(writer, registry));
+    }
+
+    @Test
+    public void write_NameCollisions() {
+        MetricRegistry registry = new MetricRegistry();
+        registry.register("a.b", (Gauge<Integer>) () -> 1);
+        registry.register("a_b", (Gauge<Integer>) () -> 2);
+        registry.register("h_count", (Gauge<Integer>) () -> 3);
+        registry.counter("a-b").inc(4);
+        registry.histogram("h").update(10);
+
+        String expected = """
+                # TYPE a_b gauge
+                a_b 1
+                # TYPE h_count gauge
+                h_count 3
+                """;
+
+        PrometheusTextWriter writer = new PrometheusTextWriter();
+        assertEquals(expected, render(writer, registry));
+        assertEquals(expected, render(writer, registry));
+    }
+
+    @Test
+    public void writeNumbers() {
+        ExpositionBuffer buffer = new ExpositionBuffer(1);
+        buffer.writeLong(0).write((byte) ' ')
+                .writeLong(-120).write((byte) ' ')
+                .writeLong(Long.MAX_VALUE).write((byte) ' ')
+                .writeLong(Long.MIN_VALUE).write((byte) ' ')
+                .writeDouble(2.).write((byte) ' ')
+                .writeDouble(0.25).write((byte) ' ')
+                .writeDouble(1e20).write((byte) ' ')
+                .writeDouble(Double.NaN).write((byte) ' ')
+                .writeDouble(Double.NEGATIVE_INFINITY).write((byte) ' ')
+                .writeDouble(-0.0015).write((byte) ' ')
+                .writeDouble(1. / 3).write((byte) ' ')
+                .writeDouble(1234567.5).write((byte) ' ')
+                .writeDouble(2.5e-7).write((byte) ' ')
+                .writeDouble(Double.MAX_VALUE);
+
+        assertEquals("0 -120 9223372036854775807 -9223372036854775808 2 0.25 1.0E20 NaN -Inf " +
+                        "-0.0015 0.333333333333333 1234567.5 2.5E-7 1.79769313486231E308",
+                new String(buffer.array(), 0, buffer.size(), StandardCharsets.US_ASCII));
+    }
+}
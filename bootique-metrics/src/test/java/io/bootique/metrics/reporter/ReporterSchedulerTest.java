@@ -0,0 +1,160 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import io.bootique.log.DefaultBootLogger;
+import io.bootique.shutdown.DefaultShutdownManager;
+import io.bootique.shutdown.ShutdownManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReporterSchedulerTest {
+
+    private final ReporterScheduler scheduler = new ReporterScheduler(Executors.newSingleThreadScheduledExecutor());
+
+    @AfterEach
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void schedule_SharedSnapshot() throws InterruptedException {
+        MetricRegistry registry = new MetricRegistry();
+
+        AtomicInteger gaugeCalls = new AtomicInteger();
+        registry.gauge("g", () -> (Gauge<Integer>) gaugeCalls::incrementAndGet);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        TestReporter r1 = new TestReporter(registry, latch);
+        TestReporter r2 = new TestReporter(registry, latch);
+
+        scheduler.schedule(registry, r1, Duration.ofMillis(50));
+        scheduler.schedule(registry, r2, Duration.ofMillis(50));
+        assertEquals(1, scheduler.getGroupsCount());
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        scheduler.shutdown();
+
+        // both reporters must have seen the same value in each tick
+        assertEquals(r1.lastValue, r2.lastValue);
+        assertTrue(gaugeCalls.get() <= Math.max(r1.reports.get(), r2.reports.get()));
+    }
+
+    @Test
+    public void schedule_DifferentPeriods() {
+        MetricRegistry registry = new MetricRegistry();
+
+        scheduler.schedule(registry, new TestReporter(registry, null), Duration.ofSeconds(1));
+        scheduler.schedule(registry, new TestReporter(registry, null), Duration.ofSeconds(2));
+        assertEquals(2, scheduler.getGroupsCount());
+    }
+
+    @Test
+    public void schedule_InvalidPeriod() {
+        MetricRegistry registry = new MetricRegistry();
+        assertThrows(IllegalArgumentException.class,
+                () -> scheduler.schedule(registry, new TestReporter(registry, null), Duration.ZERO));
+    }
+
+    @Test
+    public void unschedule() {
+        MetricRegistry registry = new MetricRegistry();
+
+        TestReporter r1 = new TestReporter(registry, null);
+        TestReporter r2 = new TestReporter(registry, null);
+
+        scheduler.schedule(registry, r1, Duration.ofSeconds(1));
+        scheduler.schedule(registry, r2, Duration.ofSeconds(1));
+
+        scheduler.unschedule(r1);
+        assertEquals(1, scheduler.getGroupsCount());
+
+        scheduler.unschedule(r2);
+        assertEquals(0, scheduler.getGroupsCount());
+    }
+
+    @Test
+    public void start() {
+        MetricRegistry registry = new MetricRegistry();
+        ShutdownManager shutdownManager = new DefaultShutdownManager(Duration.ofSeconds(1), new DefaultBootLogger(false));
+
+        TestReporter reporter = new TestReporter(registry, null);
+        assertSame(reporter, scheduler.start(registry, reporter, Duration.ofSeconds(1), shutdownManager));
+        assertEquals(1, scheduler.getGroupsCount());
+
+        shutdownManager.shutdown();
+        assertEquals(0, scheduler.getGroupsCount());
+    }
+
+    @Test
+    public void report_ExceptionSuppressed() throws InterruptedException {
+        MetricRegistry registry = new MetricRegistry();
+
+        CountDownLatch reported = new CountDownLatch(2);
+        scheduler.schedule(registry, new TestReporter(registry, null) {
+            @Override
+            public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters, SortedMap<String, Timer> timers) {
+                reported.countDown();
+                throw new RuntimeException("Test");
+            }
+        }, Duration.ofMillis(20));
+
+        // the task keeps running after an exception
+        assertTrue(reported.await(1, TimeUnit.SECONDS));
+    }
+
+    static class TestReporter extends ScheduledReporter {
+
+        final CountDownLatch latch;
+        final AtomicInteger reports;
+        volatile Object lastValue;
+
+        TestReporter(MetricRegistry registry, CountDownLatch latch) {
+            super(registry, "test", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+            this.latch = latch;
+            this.reports = new AtomicInteger();
+        }
+
+        @Override
+        public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms, SortedMap<String, Meter> meters, SortedMap<String, Timer> timers) {
+            lastValue = gauges.get("g").getValue();
+            reports.incrementAndGet();
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+    }
+}
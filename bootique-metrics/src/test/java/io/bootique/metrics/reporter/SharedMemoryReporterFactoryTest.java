@@ -0,0 +1,71 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import io.bootique.log.DefaultBootLogger;
+import io.bootique.shutdown.DefaultShutdownManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedMemoryReporterFactoryTest {
+
+    static final DefaultShutdownManager shutdownManager = new DefaultShutdownManager(
+            java.time.Duration.ZERO,
+            new DefaultBootLogger(false));
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void resolveFile_Default() {
+        Path file = new SharedMemoryReporterFactory(shutdownManager).resolveFile();
+        assertEquals("bootique-metrics_" + System.getProperty("user.name"), file.getParent().getFileName().toString());
+        assertEquals(ProcessHandle.current().pid() + ".shm", file.getFileName().toString());
+    }
+
+    @Test
+    public void createUserDirectory() throws IOException {
+        Path userDir = dir.resolve("u");
+        SharedMemoryReporterFactory.createUserDirectory(userDir);
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(userDir));
+    }
+
+    @Test
+    public void createUserDirectory_Exists() throws IOException {
+        Path userDir = Files.createDirectory(dir.resolve("u"),
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxr-xr-x")));
+
+        SharedMemoryReporterFactory.createUserDirectory(userDir);
+        assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(userDir));
+    }
+
+    @Test
+    public void createUserDirectory_Link() throws IOException {
+        Path target = Files.createDirectory(dir.resolve("target"));
+        Path userDir = Files.createSymbolicLink(dir.resolve("u"), target);
+        assertThrows(IOException.class, () -> SharedMemoryReporterFactory.createUserDirectory(userDir));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reporter;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatsdReporterTest {
+
+    private DatagramChannel listener;
+    private MetricRegistry registry;
+
+    @BeforeEach
+    public void startListener() throws IOException {
+        listener = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        listener.socket().setSoTimeout(2000);
+        registry = new MetricRegistry();
+    }
+
+    @AfterEach
+    public void stopListener() throws IOException {
+        listener.close();
+    }
+
+    private StatsdReporter createReporter(String prefix, Map<String, String> tags, int maxPacketSize) throws IOException {
+        return new StatsdReporter(
+                registry,
+                (InetSocketAddress) listener.getLocalAddress(),
+                prefix,
+                tags,
+                maxPacketSize,
+                null,
+                true);
+    }
+
+    private List<String> receive(int packets) throws IOException {
+        List<String> result = new ArrayList<>();
+        byte[] buffer = new byte[65536];
+
+        for (int i = 0; i < packets; i++) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            listener.socket().receive(packet);
+            result.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.US_ASCII));
+        }
+
+        return result;
+    }
+
+    @Test
+    public void report() throws IOException {
+        registry.counter("c").inc(3);
+        registry.register("g.d", (Gauge<Double>) () -> 0.25);
+        registry.register("g.s", (Gauge<String>) () -> "not a number");
+        registry.meter("m").mark(2);
+
+        try (StatsdReporter reporter = createReporter("app", null, 1432)) {
+            reporter.report();
+        }
+
+        String packet = receive(1).get(0);
+        List<String> lines = List.of(packet.split("\n"));
+
+        assertEquals("app.g.d:0.25|g", lines.get(0));
+        assertEquals("app.c:3|g", lines.get(1));
+        assertEquals("app.m.count:2|g", lines.get(2));
+        assertTrue(lines.get(3).startsWith("app.m.m1_rate:"), lines.get(3));
+        assertEquals(6, lines.size());
+    }
+
+    @Test
+    public void report_NegativeAndTags() throws IOException {
+        registry.counter("c").dec(5);
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("env", "prod");
+        tags.put("canary", "");
+
+        try (StatsdReporter reporter = createReporter(null, tags, 1432)) {
+            reporter.report();
+        }
+
+        assertEquals("c:0|g|#env:prod,canary\nc:-5|g|#env:prod,canary", receive(1).get(0));
+    }
+
+    @Test
+    public void report_Batching() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            registry.counter("counter." + (100 + i)).inc(i);
+        }
+
+        try (StatsdReporter reporter = createReporter(null, null, 100)) {
+            reporter.report();
+        }
+
+        // each line is "counter.1xx:N|g", i.e. 15 or 16 bytes, so 5 or 6 lines per 100 byte packet
+        int lines = 0;
+        int packets = 0;
+        try {
+            while (lines < 100) {
+                String packet = receive(1).get(0);
+                assertTrue(packet.length() <= 100, "Packet is too big: " + packet.length());
+                assertFalse(packet.endsWith("\n"));
+
+                lines += packet.split("\n").length;
+                packets++;
+            }
+        } catch (SocketTimeoutException e) {
+            fail("Received only " + lines + " lines");
+        }
+
+        assertEquals(100, lines);
+        assertTrue(packets >= 17 && packets <= 20, "Unexpected packets count: " + packets);
+    }
+
+    @Test
+    public void report_NoListener() throws IOException {
+        registry.counter("c").inc();
+
+        InetSocketAddress address = (InetSocketAddress) listener.getLocalAddress();
+        listener.close();
+
+        try (StatsdReporter reporter = new StatsdReporter(registry, address, null, null, 1432, null, true)) {
+
+            // must not throw
+            reporter.report();
+            reporter.report();
+        }
+    }
+
+    @Test
+    public void sanitize() {
+        assertEquals("a.b_c_d_e_f_g", StatsdReporter.sanitize("a.b:c|d@e#f g"));
+    }
+
+    @Test
+    public void fixedFormat() {
+        ExpositionBuffer buffer = new ExpositionBuffer(16);
+        buffer.writeFixed(0.05, 6).write((byte) ' ')
+                .writeFixed(-1.004, 6).write((byte) ' ')
+                .writeFixed(12., 6).write((byte) ' ')
+                .writeFixed(-0.0000001, 6).write((byte) ' ')
+                .writeFixed(1.1234567, 6);
+
+        assertEquals("0.05 -1.004 12 0 1.123457", new String(buffer.array(), 0, buffer.size(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void encodeTags() {
+        assertEquals("", StatsdReporter.encodeTags(null));
+        assertEquals("|#a:b", StatsdReporter.encodeTags(Map.of("a", "b")));
+    }
+}
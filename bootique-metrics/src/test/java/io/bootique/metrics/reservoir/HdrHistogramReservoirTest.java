@@ -0,0 +1,182 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HdrHistogramReservoirTest {
+
+    private final AtomicLong tick = new AtomicLong();
+    private final Clock clock = new Clock() {
+        @Override
+        public long getTick() {
+            return tick.get();
+        }
+    };
+
+    private HdrHistogramReservoir reservoir(int stripes) {
+        return new HdrHistogramReservoir(3, stripes, Duration.ofSeconds(1), clock);
+    }
+
+    @Test
+    public void snapshot() {
+        HdrHistogramReservoir reservoir = reservoir(4);
+        for (int i = 1; i <= 1000; i++) {
+            reservoir.update(i);
+        }
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1000, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 0.5);
+        assertEquals(500, snapshot.getMedian(), 1);
+        assertEquals(990, snapshot.get99thPercentile(), 1);
+        assertEquals(1000, snapshot.getValues().length);
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValue(1.1));
+    }
+
+    @Test
+    public void snapshot_Empty() {
+        Snapshot snapshot = reservoir(1).getSnapshot();
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0., snapshot.getMean());
+        assertEquals(0., snapshot.getStdDev());
+        assertEquals(0., snapshot.get99thPercentile());
+        assertEquals(0, snapshot.getValues().length);
+    }
+
+    @Test
+    public void snapshot_Interval() {
+        HdrHistogramReservoir reservoir = reservoir(2);
+        reservoir.update(5);
+
+        Snapshot s1 = reservoir.getSnapshot();
+        assertEquals(1, s1.size());
+
+        // within the snapshot interval, the snapshot is reused
+        reservoir.update(7);
+        tick.addAndGet(Duration.ofMillis(500).toNanos());
+        assertSame(s1, reservoir.getSnapshot());
+
+        // after the interval, the snapshot contains only the new values
+        tick.addAndGet(Duration.ofMillis(600).toNanos());
+        Snapshot s2 = reservoir.getSnapshot();
+        assertEquals(1, s2.size());
+        assertEquals(7, s2.getMax());
+
+        tick.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertEquals(0, reservoir.getSnapshot().size());
+    }
+
+    @Test
+    public void size() {
+        HdrHistogramReservoir reservoir = reservoir(2);
+        reservoir.update(5);
+        assertEquals(0, reservoir.size());
+
+        assertEquals(1, reservoir.getSnapshot().size());
+        reservoir.update(7);
+
+        // size doesn't start a new interval, even after the snapshot interval has passed
+        tick.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertEquals(1, reservoir.size());
+        assertEquals(7, reservoir.getSnapshot().getMax());
+    }
+
+    @Test
+    public void update_Negative() {
+        HdrHistogramReservoir reservoir = reservoir(1);
+        reservoir.update(-5);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(0, snapshot.getMax());
+    }
+
+    @Test
+    public void update_LargeValues() {
+        HdrHistogramReservoir reservoir = reservoir(1);
+        reservoir.update(Duration.ofMinutes(5).toNanos());
+        reservoir.update(1);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+        assertEquals(Duration.ofMinutes(5).toNanos(), snapshot.getMax(), Duration.ofMinutes(5).toNanos() / 1000.);
+    }
+
+    @Test
+    public void update_Concurrent() throws InterruptedException {
+        HdrHistogramReservoir reservoir = reservoir(4);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    reservoir.update(j);
+                }
+            });
+            threads[i].start();
+        }
+
+        long total = 0;
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        // swap the buffers a few times to check that no values are lost between the intervals
+        for (int i = 0; i < 3; i++) {
+            tick.addAndGet(Duration.ofSeconds(2).toNanos());
+            total += reservoir.getSnapshot().size();
+        }
+
+        assertEquals(80_000, total);
+    }
+
+    @Test
+    public void stripes_NotPowerOf2() {
+        assertThrows(IllegalArgumentException.class, () -> reservoir(3));
+    }
+
+    @Test
+    public void factory() {
+        HdrHistogramReservoirFactory factory = new HdrHistogramReservoirFactory();
+        factory.setStripes(5);
+        assertEquals(8, factory.resolveStripes());
+
+        factory.setStripes(1);
+        assertEquals(1, factory.resolveStripes());
+
+        factory.setStripes(0);
+        int defaultStripes = factory.resolveStripes();
+        assertTrue(defaultStripes >= 1 && defaultStripes <= 8);
+        assertEquals(1, Integer.bitCount(defaultStripes));
+
+        factory.setSignificantDigits(6);
+        assertThrows(IllegalArgumentException.class, factory::createReservoir);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.reservoir;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservoirMetricRegistryTest {
+
+    private static UniformReservoirFactory uniform(int size, String... metrics) {
+        UniformReservoirFactory factory = new UniformReservoirFactory();
+        factory.setSize(size);
+        factory.setMetrics(List.of(metrics));
+        return factory;
+    }
+
+    private static int sampleSize(Histogram histogram) {
+        for (int i = 0; i < 10; i++) {
+            histogram.update(i);
+        }
+        return histogram.getSnapshot().size();
+    }
+
+    private static int sampleSize(Timer timer) {
+        for (int i = 0; i < 10; i++) {
+            timer.update(Duration.ofMillis(i));
+        }
+        return timer.getSnapshot().size();
+    }
+
+    @Test
+    public void histogram() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(3, "a.*"), uniform(5, "*")));
+
+        assertEquals(3, sampleSize(registry.histogram("a.x")));
+        assertEquals(5, sampleSize(registry.histogram("b.x")));
+    }
+
+    @Test
+    public void histogram_FirstMatchWins() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(5, "*"), uniform(3, "a.*")));
+        assertEquals(5, sampleSize(registry.histogram("a.x")));
+    }
+
+    @Test
+    public void histogram_NoMatch() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(3, "a.*")));
+        assertEquals(10, sampleSize(registry.histogram("b.x")));
+    }
+
+    @Test
+    public void histogram_Existing() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(3, "a.*")));
+
+        Histogram h = registry.histogram("a.x");
+        assertSame(h, registry.histogram("a.x"));
+        assertSame(h, registry.getHistograms().get("a.x"));
+    }
+
+    @Test
+    public void timer() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(3, "a.*")));
+
+        Timer t = registry.timer("a.x");
+        assertEquals(3, sampleSize(t));
+        assertSame(t, registry.timer("a.x"));
+        assertEquals(10, sampleSize(registry.timer("b.x")));
+    }
+
+    @Test
+    public void timer_WrongType() {
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(uniform(3, "a.*")));
+        registry.histogram("a.x");
+        assertThrows(IllegalArgumentException.class, () -> registry.timer("a.x"));
+    }
+
+    @Test
+    public void lockFreeDecaying() {
+        LockFreeDecayingReservoirFactory factory = new LockFreeDecayingReservoirFactory();
+        factory.setSize(4);
+
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(factory));
+        assertEquals(4, sampleSize(registry.timer("x")));
+    }
+
+    @Test
+    public void slidingTimeWindow() {
+        SlidingTimeWindowReservoirFactory factory = new SlidingTimeWindowReservoirFactory();
+        factory.setMetrics(List.of("x"));
+
+        ReservoirMetricRegistry registry = new ReservoirMetricRegistry(List.of(factory));
+        assertEquals(10, sampleSize(registry.histogram("x")));
+    }
+}
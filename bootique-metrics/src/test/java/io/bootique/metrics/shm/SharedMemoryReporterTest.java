@@ -0,0 +1,271 @@
+/*
+ * Licensed to ObjectStyle LLC under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ObjectStyle LLC licenses
+ * this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.bootique.metrics.shm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import io.bootique.metrics.GlobMetricFilter;
+import io.bootique.metrics.reporter.ReporterScheduler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SharedMemoryReporterTest {
+
+    @TempDir
+    Path dir;
+
+    private SharedMemoryReporter reporter(MetricRegistry registry, int capacity) throws IOException {
+        return new SharedMemoryReporter(registry, MetricFilter.ALL, dir.resolve("m.shm"), capacity, true, null, true);
+    }
+
+    @Test
+    public void layout() throws IOException {
+        try (SharedMemoryReporter reporter = reporter(new MetricRegistry(), 4)) {
+            byte[] bytes = Files.readAllBytes(reporter.getFile());
+            assertEquals(SharedMemoryLayout.fileSize(4), bytes.length);
+            assertEquals("BQSM", new String(bytes, 0, 4, StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void read() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c").inc(5);
+        registry.register("g", (Gauge<Double>) () -> 2.5);
+        registry.register("g.notNumber", (Gauge<String>) () -> "x");
+        registry.histogram("h").update(7);
+        registry.meter("m").mark(3);
+        registry.timer("t").update(Duration.ofMillis(2));
+
+        try (SharedMemoryReporter reporter = reporter(registry, 10)) {
+            SharedMemoryReader reader = SharedMemoryReader.open(reporter.getFile());
+
+            SharedMemorySnapshot empty = reader.read();
+            assertEquals(0, empty.size());
+            assertEquals(0, empty.getTimestamp());
+
+            reporter.report();
+            SharedMemorySnapshot snapshot = reader.read();
+            assertEquals(ProcessHandle.current().pid(), snapshot.getPid());
+            assertTrue(snapshot.getTimestamp() > 0);
+            assertEquals(5, snapshot.size());
+
+            SharedMemoryMetric c = snapshot.getMetric("c");
+            assertEquals(SharedMemoryMetric.Type.COUNTER, c.getType());
+            assertEquals(5, c.getCount());
+
+            SharedMemoryMetric g = snapshot.getMetric("g");
+            assertEquals(SharedMemoryMetric.Type.GAUGE, g.getType());
+            assertEquals(2.5, g.getValue());
+
+            assertNull(snapshot.getMetric("g.notNumber"));
+
+            SharedMemoryMetric h = snapshot.getMetric("h");
+            assertEquals(SharedMemoryMetric.Type.HISTOGRAM, h.getType());
+            assertEquals(1, h.getCount());
+            assertEquals(7., h.getMax());
+            assertEquals(7., h.get99thPercentile());
+
+            SharedMemoryMetric m = snapshot.getMetric("m");
+            assertEquals(SharedMemoryMetric.Type.METER, m.getType());
+            assertEquals(3, m.getCount());
+
+            SharedMemoryMetric t = snapshot.getMetric("t");
+            assertEquals(SharedMemoryMetric.Type.TIMER, t.getType());
+            assertEquals(1, t.getCount());
+            assertEquals(Duration.ofMillis(2).toNanos(), t.getMax());
+        }
+    }
+
+    @Test
+    public void read_RemovedMetric() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("c1").inc();
+        registry.counter("c2").inc(2);
+
+        try (SharedMemoryReporter reporter = reporter(registry, 10)) {
+            SharedMemoryReader reader = SharedMemoryReader.open(reporter.getFile());
+
+            reporter.report();
+            long sequence = reader.read().getSequence();
+
+            registry.remove("c1");
+            reporter.report();
+
+            SharedMemorySnapshot snapshot = reader.read();
+            assertTrue(snapshot.getSequence() > sequence);
+            assertNull(snapshot.getMetric("c1"));
+            assertEquals(2, snapshot.getMetric("c2").getCount());
+
+            // a returning metric reuses its entry
+            registry.counter("c1").inc(3);
+            reporter.report();
+            assertEquals(3, reader.read().getMetric("c1").getCount());
+        }
+    }
+
+    @Test
+    public void capacity() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("a").inc();
+        registry.counter("b").inc();
+        registry.counter("c").inc();
+
+        try (SharedMemoryReporter reporter = reporter(registry, 2)) {
+            reporter.report();
+
+            SharedMemorySnapshot snapshot = SharedMemoryReader.open(reporter.getFile()).read();
+            assertEquals(2, snapshot.size());
+            assertNotNull(snapshot.getMetric("a"));
+            assertNotNull(snapshot.getMetric("b"));
+        }
+    }
+
+    @Test
+    public void longName() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("x".repeat(119) + "é").inc();
+
+        try (SharedMemoryReporter reporter = reporter(registry, 2)) {
+            reporter.report();
+
+            // the multibyte char that doesn't fit is dropped entirely
+            SharedMemorySnapshot snapshot = SharedMemoryReader.open(reporter.getFile()).read();
+            assertNotNull(snapshot.getMetric("x".repeat(119)));
+        }
+    }
+
+    @Test
+    public void deleteOnClose() throws IOException {
+        Path file;
+        try (SharedMemoryReporter reporter = reporter(new MetricRegistry(), 2)) {
+            file = reporter.getFile();
+            assertTrue(Files.exists(file));
+        }
+
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void create_ReplacesExistingFile() throws IOException {
+        Path target = Files.writeString(dir.resolve("target.txt"), "not to be overwritten");
+        Path file = Files.createSymbolicLink(dir.resolve("m.shm"), target);
+
+        try (SharedMemoryReporter reporter = reporter(new MetricRegistry(), 2)) {
+            assertFalse(Files.isSymbolicLink(file));
+            assertEquals("not to be overwritten", Files.readString(target));
+            assertEquals(SharedMemoryLayout.fileSize(2), Files.size(reporter.getFile()));
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(reporter.getFile()));
+        }
+    }
+
+    @Test
+    public void open_NotMetricsFile() throws IOException {
+        Path file = Files.writeString(dir.resolve("x.shm"), "not a metrics file");
+        assertThrows(IOException.class, () -> SharedMemoryReader.open(file));
+    }
+
+    @Test
+    public void read_Concurrent() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+
+        // the reporter writes both counters in a single update, so a reader must never see them differ
+        registry.counter("a");
+        registry.counter("b");
+
+        try (SharedMemoryReporter reporter = reporter(registry, 10)) {
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+
+            Thread writer = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        registry.counter("a").inc();
+                        registry.counter("b").inc();
+                        reporter.report();
+                    }
+                } catch (Throwable t) {
+                    error.set(t);
+                }
+            });
+
+            writer.start();
+            try {
+                SharedMemoryReader reader = SharedMemoryReader.open(reporter.getFile());
+                long last = -1;
+                for (int i = 0; i < 20_000; i++) {
+                    SharedMemorySnapshot snapshot = reader.read();
+                    SharedMemoryMetric a = snapshot.getMetric("a");
+                    SharedMemoryMetric b = snapshot.getMetric("b");
+                    if (a != null) {
+                        assertEquals(a.getCount(), b.getCount());
+                        assertTrue(a.getCount() >= last);
+                        last = a.getCount();
+                    }
+                }
+            } finally {
+                stop.set(true);
+                writer.join();
+            }
+
+            assertNull(error.get());
+        }
+    }
+
+    @Test
+    public void schedule_Filter() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        registry.counter("keep.c").inc();
+        registry.counter("drop.c").inc();
+
+        ReporterScheduler scheduler = new ReporterScheduler(Executors.newSingleThreadScheduledExecutor());
+        MetricFilter filter = GlobMetricFilter.of(List.of("keep.*"));
+        try (SharedMemoryReporter reporter = new SharedMemoryReporter(
+                registry, filter, dir.resolve("m.shm"), 4, true, scheduler.getExecutor(), false)) {
+
+            scheduler.schedule(registry, reporter, Duration.ofMillis(10), filter);
+
+            SharedMemoryReader reader = SharedMemoryReader.open(reporter.getFile());
+            SharedMemorySnapshot snapshot = reader.read();
+            for (int i = 0; i < 100 && snapshot.getTimestamp() == 0; i++) {
+                Thread.sleep(10);
+                snapshot = reader.read();
+            }
+
+            assertEquals(1, snapshot.size());
+            assertNotNull(snapshot.getMetric("keep.c"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+}